@@ -0,0 +1,33 @@
+package com.keshane.blitz;
+
+/**
+ * Enumerates the known results of a position from the point of view of the player to move, as found by
+ * {@link Game#adjudicate()}.
+ */
+public enum Adjudication {
+    /**
+     * The player to move wins with best play.
+     */
+    WIN,
+    /**
+     * The game is drawn with best play.
+     */
+    DRAW,
+    /**
+     * The player to move loses with best play.
+     */
+    LOSS,
+    /**
+     * The position is not one whose result is known.
+     */
+    UNKNOWN;
+
+    /**
+     * Whether the result of the position is known.
+     *
+     * @return true unless this is {@link #UNKNOWN}
+     */
+    public boolean isKnown() {
+        return this != UNKNOWN;
+    }
+}
@@ -0,0 +1,241 @@
+package com.keshane.blitz;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Knows whether each position of an endgame of king and one piece against a lone king is won, packed into one bit
+ * per position.
+ * <p>
+ * The side with the piece is called the strong side and is taken to be white, with its pawn moving up the board;
+ * positions with black as the strong side are looked up with the board flipped. A position is identified by which side
+ * is to move and the squares of the strong king, the weak king and the piece. The lone king can never win, so a
+ * position that isn't won is drawn, or isn't a legal position at all.
+ * <p>
+ * The table is generated by retrograde analysis: starting from the checkmates, positions are marked as won when the
+ * strong side has a move to a won position or the weak side has only moves to won positions, until no more positions
+ * change.
+ */
+final class Bitbase {
+    private static final int POSITIONS = 2 * 64 * 64 * 64;
+    private static final int STRONG_TO_MOVE = 0;
+    private static final int WEAK_TO_MOVE = 1;
+
+    private static final byte UNKNOWN = 0;
+    private static final byte WIN = 1;
+    private static final byte INVALID = 2;
+
+    private final Role role;
+    /**
+     * Bit {@code index % 64} of word {@code index / 64} is set when the position with that index is won.
+     */
+    private final long[] wins;
+
+    private Bitbase(Role role, long[] wins) {
+        this.role = role;
+        this.wins = wins;
+    }
+
+    Role getRole() {
+        return role;
+    }
+
+    /**
+     * Look up whether a position is won for the strong side.
+     *
+     * @param isStrongToMove whether the strong side is to move
+     * @param strongKing     the index of the strong king's square, with the strong side playing up the board
+     * @param weakKing       the index of the weak king's square
+     * @param piece          the index of the piece's square
+     * @return whether the strong side wins
+     */
+    boolean isWin(boolean isStrongToMove, int strongKing, int weakKing, int piece) {
+        int index = indexOf(isStrongToMove ? STRONG_TO_MOVE : WEAK_TO_MOVE, strongKing, weakKing, piece);
+        return (wins[index >>> 6] & 1L << index) != 0;
+    }
+
+    /**
+     * Generate the table for an endgame.
+     *
+     * @param role   the role of the strong side's piece: pawn, rook or queen
+     * @param queens the queen table, used when a pawn promotes, or null when the role isn't a pawn
+     * @param rooks  the rook table, used when a pawn promotes, or null when the role isn't a pawn
+     * @return the generated table
+     */
+    static Bitbase generate(Role role, Bitbase queens, Bitbase rooks) {
+        if (role != Role.PAWN && role != Role.ROOK && role != Role.QUEEN) {
+            throw new IllegalArgumentException("No bitbase for " + role);
+        }
+        byte[] states = new byte[POSITIONS];
+        for (int index = 0; index < POSITIONS; index++) {
+            if (!isValid(role, index)) {
+                states[index] = INVALID;
+            }
+        }
+
+        boolean isChanged = true;
+        while (isChanged) {
+            isChanged = false;
+            for (int index = 0; index < POSITIONS; index++) {
+                if (states[index] != UNKNOWN) {
+                    continue;
+                }
+                boolean isWin = sideToMove(index) == STRONG_TO_MOVE
+                    ? hasWinningMove(role, index, states, queens, rooks)
+                    : hasOnlyLosingMoves(role, index, states);
+                if (isWin) {
+                    states[index] = WIN;
+                    isChanged = true;
+                }
+            }
+        }
+
+        long[] wins = new long[POSITIONS / 64];
+        for (int index = 0; index < POSITIONS; index++) {
+            if (states[index] == WIN) {
+                wins[index >>> 6] |= 1L << index;
+            }
+        }
+        return new Bitbase(role, wins);
+    }
+
+    private static boolean isValid(Role role, int index) {
+        int strongKing = strongKingOf(index);
+        int weakKing = weakKingOf(index);
+        int piece = pieceOf(index);
+        if (strongKing == weakKing || strongKing == piece || weakKing == piece
+            || (Bitboard.kingAttacks(Square.fromIndex(strongKing)) & 1L << weakKing) != 0) {
+            return false;
+        }
+        if (role == Role.PAWN && (piece < 8 || piece >= 56)) {
+            return false;
+        }
+        // the side that just moved can't have left the weak king in check
+        return sideToMove(index) == WEAK_TO_MOVE || !isWeakKingAttacked(role, strongKing, weakKing, piece);
+    }
+
+    /**
+     * Checks whether the strong side can move to a position that is won.
+     */
+    private static boolean hasWinningMove(Role role, int index, byte[] states, Bitbase queens, Bitbase rooks) {
+        int strongKing = strongKingOf(index);
+        int weakKing = weakKingOf(index);
+        int piece = pieceOf(index);
+
+        long kingMoves = Bitboard.kingAttacks(Square.fromIndex(strongKing)) & ~(1L << piece)
+            & ~Bitboard.kingAttacks(Square.fromIndex(weakKing));
+        for (; kingMoves != 0; kingMoves &= kingMoves - 1) {
+            int destination = Long.numberOfTrailingZeros(kingMoves);
+            if (states[indexOf(WEAK_TO_MOVE, destination, weakKing, piece)] == WIN) {
+                return true;
+            }
+        }
+
+        long occupied = 1L << strongKing | 1L << weakKing | 1L << piece;
+        if (role != Role.PAWN) {
+            long pieceMoves = Bitboard.attacks(role, Color.WHITE, Square.fromIndex(piece), occupied) & ~occupied;
+            for (; pieceMoves != 0; pieceMoves &= pieceMoves - 1) {
+                int destination = Long.numberOfTrailingZeros(pieceMoves);
+                if (states[indexOf(WEAK_TO_MOVE, strongKing, weakKing, destination)] == WIN) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        int push = piece + 8;
+        if ((occupied & 1L << push) != 0) {
+            return false;
+        }
+        if (push >= 56) {
+            // a rook promotion wins some positions in which a queen promotion stalemates
+            return queens.isWin(false, strongKing, weakKing, push) || rooks.isWin(false, strongKing, weakKing, push);
+        }
+        if (states[indexOf(WEAK_TO_MOVE, strongKing, weakKing, push)] == WIN) {
+            return true;
+        }
+        int doublePush = push + 8;
+        return piece < 16 && (occupied & 1L << doublePush) == 0
+            && states[indexOf(WEAK_TO_MOVE, strongKing, weakKing, doublePush)] == WIN;
+    }
+
+    /**
+     * Checks whether the weak side is checkmated or can only move to positions that are won for the strong side.
+     */
+    private static boolean hasOnlyLosingMoves(Role role, int index, byte[] states) {
+        int strongKing = strongKingOf(index);
+        int weakKing = weakKingOf(index);
+        int piece = pieceOf(index);
+
+        long kingMoves = Bitboard.kingAttacks(Square.fromIndex(weakKing))
+            & ~Bitboard.kingAttacks(Square.fromIndex(strongKing));
+        boolean hasMove = false;
+        for (; kingMoves != 0; kingMoves &= kingMoves - 1) {
+            int destination = Long.numberOfTrailingZeros(kingMoves);
+            if (isWeakKingAttacked(role, strongKing, destination, piece == destination ? -1 : piece)) {
+                continue;
+            }
+            hasMove = true;
+            // capturing the piece leaves two lone kings, and any other unresolved reply may still hold the draw
+            if (destination == piece || states[indexOf(STRONG_TO_MOVE, strongKing, destination, piece)] != WIN) {
+                return false;
+            }
+        }
+        // without a move, the weak side is either checkmated or stalemated
+        return hasMove || isWeakKingAttacked(role, strongKing, weakKing, piece);
+    }
+
+    /**
+     * Checks whether the weak king on a square is attacked by the strong side's piece.
+     *
+     * @param piece the index of the piece's square or -1 if the piece has been captured
+     */
+    private static boolean isWeakKingAttacked(Role role, int strongKing, int weakKing, int piece) {
+        if (piece < 0) {
+            return false;
+        }
+        // the weak king doesn't block attacks on the squares behind it
+        long occupied = 1L << strongKing | 1L << piece;
+        return (Bitboard.attacks(role, Color.WHITE, Square.fromIndex(piece), occupied) & 1L << weakKing) != 0;
+    }
+
+    private static int indexOf(int sideToMove, int strongKing, int weakKing, int piece) {
+        return sideToMove << 18 | strongKing << 12 | weakKing << 6 | piece;
+    }
+
+    private static int sideToMove(int index) {
+        return index >>> 18;
+    }
+
+    private static int strongKingOf(int index) {
+        return index >>> 12 & 63;
+    }
+
+    private static int weakKingOf(int index) {
+        return index >>> 6 & 63;
+    }
+
+    private static int pieceOf(int index) {
+        return index & 63;
+    }
+
+    void writeTo(DataOutputStream output) throws IOException {
+        output.writeInt(role.ordinal());
+        for (long word : wins) {
+            output.writeLong(word);
+        }
+    }
+
+    static Bitbase readFrom(DataInputStream input) throws IOException {
+        int roleOrdinal = input.readInt();
+        if (roleOrdinal < 0 || roleOrdinal >= Role.values().length) {
+            throw new IOException("Not a bitbase: unknown role " + roleOrdinal);
+        }
+        long[] wins = new long[POSITIONS / 64];
+        for (int i = 0; i < wins.length; i++) {
+            wins[i] = input.readLong();
+        }
+        return new Bitbase(Role.values()[roleOrdinal], wins);
+    }
+}
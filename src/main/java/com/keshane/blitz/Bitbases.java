@@ -0,0 +1,144 @@
+package com.keshane.blitz;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Holds the endgame bitbases used by {@link Game#adjudicate()} for king and pawn, king and rook, and king and queen
+ * against a lone king.
+ * <p>
+ * Each bitbase is generated the first time it's needed, which takes a moment, or all at once with
+ * {@link #generateAll()} at startup. They can also be saved with {@link #writeTo(OutputStream)} and loaded from that
+ * cache with {@link #readFrom(InputStream)} instead of being generated again.
+ */
+public final class Bitbases {
+    /**
+     * Marks the start of a saved set of bitbases.
+     */
+    private static final int MAGIC = 0x4B42_4231;
+
+    private static volatile Bitbase queens;
+    private static volatile Bitbase rooks;
+    private static volatile Bitbase pawns;
+
+    private Bitbases() {
+        // no instances
+    }
+
+    /**
+     * Generate every bitbase that hasn't been generated or loaded yet.
+     */
+    public static void generateAll() {
+        getBitbase(Role.PAWN);
+    }
+
+    /**
+     * Save every bitbase, generating any that are missing.
+     *
+     * @param output where to write the bitbases, which is left open
+     * @throws IOException if the bitbases can't be written
+     */
+    public static void writeTo(OutputStream output) throws IOException {
+        DataOutputStream dataOutput = new DataOutputStream(output);
+        dataOutput.writeInt(MAGIC);
+        getBitbase(Role.QUEEN).writeTo(dataOutput);
+        getBitbase(Role.ROOK).writeTo(dataOutput);
+        getBitbase(Role.PAWN).writeTo(dataOutput);
+        dataOutput.flush();
+    }
+
+    /**
+     * Load bitbases saved by {@link #writeTo(OutputStream)}, replacing any already generated.
+     *
+     * @param input where to read the bitbases from, which is left open
+     * @throws IOException if the bitbases can't be read or weren't saved by this class
+     */
+    public static synchronized void readFrom(InputStream input) throws IOException {
+        DataInputStream dataInput = new DataInputStream(input);
+        if (dataInput.readInt() != MAGIC) {
+            throw new IOException("Not a saved set of bitbases");
+        }
+        Bitbase queenBitbase = Bitbase.readFrom(dataInput);
+        Bitbase rookBitbase = Bitbase.readFrom(dataInput);
+        Bitbase pawnBitbase = Bitbase.readFrom(dataInput);
+        if (queenBitbase.getRole() != Role.QUEEN || rookBitbase.getRole() != Role.ROOK
+            || pawnBitbase.getRole() != Role.PAWN) {
+            throw new IOException("Saved bitbases are out of order");
+        }
+        queens = queenBitbase;
+        rooks = rookBitbase;
+        pawns = pawnBitbase;
+    }
+
+    /**
+     * Find the result of a position from the bitbases.
+     * <p>
+     * Positions with only the two kings, or with a single bishop or knight besides them, are draws without needing
+     * a bitbase.
+     *
+     * @param board        the pieces of the position, which must be a legal position
+     * @param playerToMove the color whose turn it is
+     * @return the result for the player to move or {@link Adjudication#UNKNOWN} if no bitbase covers the position
+     */
+    static Adjudication probe(Board board, Color playerToMove) {
+        long occupancy = board.getOccupancy();
+        int pieceCount = Long.bitCount(occupancy);
+        if (pieceCount == 2) {
+            return Adjudication.DRAW;
+        }
+        if (pieceCount != 3) {
+            return Adjudication.UNKNOWN;
+        }
+
+        Square kingOrPiece = null;
+        Piece piece = null;
+        for (long remaining = occupancy; remaining != 0; remaining &= remaining - 1) {
+            kingOrPiece = Bitboard.first(remaining);
+            piece = board.getPieceOn(kingOrPiece);
+            if (piece.getRole() != Role.KING) {
+                break;
+            }
+        }
+        Role role = piece.getRole();
+        if (role == Role.BISHOP || role == Role.KNIGHT) {
+            // a single minor piece can't force checkmate
+            return Adjudication.DRAW;
+        }
+
+        Color strongColor = piece.getColor();
+        // the bitbases are from white's side, so black's positions are flipped vertically
+        int flip = strongColor == Color.WHITE ? 0 : 56;
+        int strongKing = board.getKingLocation(strongColor).ordinal() ^ flip;
+        int weakKing = board.getKingLocation(strongColor.opposite()).ordinal() ^ flip;
+        boolean isStrongToMove = playerToMove == strongColor;
+        if (!getBitbase(role).isWin(isStrongToMove, strongKing, weakKing, kingOrPiece.ordinal() ^ flip)) {
+            return Adjudication.DRAW;
+        }
+        return isStrongToMove ? Adjudication.WIN : Adjudication.LOSS;
+    }
+
+    private static Bitbase getBitbase(Role role) {
+        Bitbase bitbase = role == Role.QUEEN ? queens : role == Role.ROOK ? rooks : pawns;
+        if (bitbase == null) {
+            bitbase = generate(role);
+        }
+        return bitbase;
+    }
+
+    private static synchronized Bitbase generate(Role role) {
+        if (queens == null) {
+            queens = Bitbase.generate(Role.QUEEN, null, null);
+        }
+        if (rooks == null) {
+            rooks = Bitbase.generate(Role.ROOK, null, null);
+        }
+        if (role == Role.PAWN && pawns == null) {
+            // pawns promote into the queen and rook endgames, so those are generated first
+            pawns = Bitbase.generate(Role.PAWN, queens, rooks);
+        }
+        return role == Role.QUEEN ? queens : role == Role.ROOK ? rooks : pawns;
+    }
+}
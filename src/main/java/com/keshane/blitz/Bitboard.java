@@ -0,0 +1,207 @@
+package com.keshane.blitz;
+
+/**
+ * Contains precomputed attack tables and helpers for sets of squares packed into a {@code long}.
+ * <p>
+ * Bit {@code n} of a bitboard stands for the {@link Square} whose ordinal is {@code n}, so A1 is the lowest bit and
+ * H8 is the highest.
+ */
+final class Bitboard {
+    private static final Direction[] SLIDING_DIRECTIONS = new Direction[]{Direction.NORTH, Direction.EAST,
+        Direction.SOUTH, Direction.WEST, Direction.NORTHEAST, Direction.SOUTHEAST, Direction.SOUTHWEST,
+        Direction.NORTHWEST};
+    private static final Direction[] KNIGHT_DIRECTIONS = new Direction[]{Direction.NORTH_NORTHEAST,
+        Direction.EAST_NORTHEAST, Direction.EAST_SOUTHEAST, Direction.SOUTH_SOUTHEAST, Direction.SOUTH_SOUTHWEST,
+        Direction.WEST_SOUTHWEST, Direction.WEST_NORTHWEST, Direction.NORTH_NORTHWEST};
+
+    /**
+     * Index of the first of the diagonal directions in {@link #SLIDING_DIRECTIONS}.
+     */
+    private static final int FIRST_DIAGONAL = 4;
+
+    private static final long[] KNIGHT_ATTACKS = new long[64];
+    private static final long[] KING_ATTACKS = new long[64];
+    /**
+     * Squares attacked by a pawn, indexed by the pawn's {@link Color} ordinal and then by its square.
+     */
+    private static final long[][] PAWN_ATTACKS = new long[2][64];
+    /**
+     * Squares reached from a square in each of the {@link #SLIDING_DIRECTIONS} on an empty board, not including the
+     * square itself.
+     */
+    private static final long[][] RAYS = new long[8][64];
+    /**
+     * Whether each of the {@link #SLIDING_DIRECTIONS} goes towards higher square ordinals.
+     */
+    private static final boolean[] IS_ASCENDING = new boolean[8];
+    /**
+     * Squares strictly between two squares on the same line, or nothing if they don't share a line.
+     */
+    private static final long[][] BETWEEN = new long[64][64];
+    /**
+     * The whole line (edge to edge) passing through two squares, or nothing if they don't share a line.
+     */
+    private static final long[][] LINE = new long[64][64];
+
+    static {
+        for (Square square : Square.values()) {
+            int index = square.ordinal();
+            for (Direction direction : KNIGHT_DIRECTIONS) {
+                KNIGHT_ATTACKS[index] |= offset(square, direction.file, direction.rank);
+            }
+            for (Direction direction : SLIDING_DIRECTIONS) {
+                KING_ATTACKS[index] |= offset(square, direction.file, direction.rank);
+            }
+            PAWN_ATTACKS[Color.WHITE.ordinal()][index] = offset(square, 1, 1) | offset(square, -1, 1);
+            PAWN_ATTACKS[Color.BLACK.ordinal()][index] = offset(square, 1, -1) | offset(square, -1, -1);
+
+            for (int i = 0; i < SLIDING_DIRECTIONS.length; i++) {
+                Direction direction = SLIDING_DIRECTIONS[i];
+                IS_ASCENDING[i] = direction.rank * 8 + direction.file > 0;
+                int file = square.file + direction.file;
+                int rank = square.rank + direction.rank;
+                while (file >= 0 && file < 8 && rank >= 0 && rank < 8) {
+                    RAYS[i][index] |= of(Square.of(file, rank));
+                    file += direction.file;
+                    rank += direction.rank;
+                }
+            }
+        }
+
+        for (Square first : Square.values()) {
+            for (int i = 0; i < SLIDING_DIRECTIONS.length; i++) {
+                long ray = RAYS[i][first.ordinal()];
+                long opposite = RAYS[(i + 2) % 4 + (i / 4) * 4][first.ordinal()];
+                for (long remaining = ray; remaining != 0; remaining &= remaining - 1) {
+                    int second = Long.numberOfTrailingZeros(remaining);
+                    BETWEEN[first.ordinal()][second] = ray & ~RAYS[i][second] & ~(1L << second);
+                    LINE[first.ordinal()][second] = ray | opposite | of(first);
+                }
+            }
+        }
+    }
+
+    private Bitboard() {
+        // no instances
+    }
+
+    /**
+     * Get the bitboard containing only the specified square.
+     */
+    static long of(Square square) {
+        return 1L << square.ordinal();
+    }
+
+    private static long offset(Square origin, int fileOffset, int rankOffset) {
+        int file = origin.file + fileOffset;
+        int rank = origin.rank + rankOffset;
+        if (file < 0 || file > 7 || rank < 0 || rank > 7) {
+            return 0L;
+        }
+        return of(Square.of(file, rank));
+    }
+
+    static long knightAttacks(Square square) {
+        return KNIGHT_ATTACKS[square.ordinal()];
+    }
+
+    static long kingAttacks(Square square) {
+        return KING_ATTACKS[square.ordinal()];
+    }
+
+    /**
+     * Get the squares a pawn of the specified color standing on the square can capture on.
+     */
+    static long pawnAttacks(Color pawnColor, Square square) {
+        return PAWN_ATTACKS[pawnColor.ordinal()][square.ordinal()];
+    }
+
+    static long rookAttacks(Square square, long occupancy) {
+        return slidingAttacks(square.ordinal(), occupancy, 0, FIRST_DIAGONAL);
+    }
+
+    static long bishopAttacks(Square square, long occupancy) {
+        return slidingAttacks(square.ordinal(), occupancy, FIRST_DIAGONAL, SLIDING_DIRECTIONS.length);
+    }
+
+    static long queenAttacks(Square square, long occupancy) {
+        return slidingAttacks(square.ordinal(), occupancy, 0, SLIDING_DIRECTIONS.length);
+    }
+
+    /**
+     * Get the squares attacked by a piece with the specified role and color standing on a square.
+     *
+     * @param occupancy the occupied squares, which block sliding pieces
+     */
+    static long attacks(Role role, Color color, Square square, long occupancy) {
+        switch (role) {
+            case PAWN:
+                return pawnAttacks(color, square);
+            case KNIGHT:
+                return knightAttacks(square);
+            case BISHOP:
+                return bishopAttacks(square, occupancy);
+            case ROOK:
+                return rookAttacks(square, occupancy);
+            case QUEEN:
+                return queenAttacks(square, occupancy);
+            case KING:
+                return kingAttacks(square);
+            default:
+                throw new IllegalArgumentException("Unknown role: " + role);
+        }
+    }
+
+    /**
+     * Get the squares strictly between two squares that share a rank, file or diagonal.
+     *
+     * @return the squares in between or an empty bitboard if the squares don't share a line
+     */
+    static long between(Square first, Square second) {
+        return BETWEEN[first.ordinal()][second.ordinal()];
+    }
+
+    /**
+     * Checks whether three squares lie on the same rank, file or diagonal.
+     */
+    static boolean areAligned(Square first, Square second, Square third) {
+        return (LINE[first.ordinal()][second.ordinal()] & of(third)) != 0;
+    }
+
+    /**
+     * Get the squares on the file with the specified 0-based index.
+     */
+    static long fileMask(int file) {
+        return 0x0101010101010101L << file;
+    }
+
+    /**
+     * Get the squares on the rank with the specified 0-based index.
+     */
+    static long rankMask(int rank) {
+        return 0xFFL << (8 * rank);
+    }
+
+    /**
+     * Get the square of the lowest set bit.
+     */
+    static Square first(long bitboard) {
+        return Square.fromIndex(Long.numberOfTrailingZeros(bitboard));
+    }
+
+    private static long slidingAttacks(int index, long occupancy, int firstDirection, int lastDirection) {
+        long attacks = 0L;
+        for (int i = firstDirection; i < lastDirection; i++) {
+            long ray = RAYS[i][index];
+            long blockers = ray & occupancy;
+            if (blockers != 0) {
+                // everything past the nearest blocker is hidden behind it
+                int blocker = IS_ASCENDING[i] ? Long.numberOfTrailingZeros(blockers)
+                    : 63 - Long.numberOfLeadingZeros(blockers);
+                ray ^= RAYS[i][blocker];
+            }
+            attacks |= ray;
+        }
+        return attacks;
+    }
+}
@@ -6,6 +6,8 @@ import java.util.Map;
 import java.util.Set;
 
 public class Board {
+    private static final Piece[] PIECES = Piece.values();
+
     /**
      * Keeps track of the pieces by square.
      */
@@ -17,6 +19,28 @@ public class Board {
      */
     private Map<Piece, Set<Square>> pieceLocations;
 
+    /**
+     * Keeps track of the locations of pieces by piece type as {@link Bitboard}s, indexed by {@link Piece} ordinal.
+     */
+    private final long[] pieceBitboards = new long[Piece.values().length];
+
+    /**
+     * Keeps track of the squares occupied by each color as {@link Bitboard}s, indexed by {@link Color} ordinal.
+     */
+    private final long[] colorBitboards = new long[Color.values().length];
+
+    /**
+     * The XOR of the {@link Zobrist} key of every piece on its square, kept up to date as pieces move.
+     */
+    private long pieceHash;
+
+    /**
+     * The sums of the {@link Evaluation} scores of every piece on its square, from white's point of view, and of the
+     * phases of the pieces, kept up to date as pieces move.
+     */
+    private int middlegameScore;
+    private int endgameScore;
+    private int phase;
 
     Board(String fenBoardPosition) {
         pieceLocations = new EnumMap<>(Piece.class);
@@ -38,11 +62,16 @@ public class Board {
         // for each piece, clear out the old locations and add the new locations
         // The pieceLocations field in a Board contains an entry for every piece, so all pieces will be updated in
         // the loop.
-        for (Map.Entry<Piece, Set<Square>> newPieceLocation : otherBoard.pieceLocations.entrySet()) {
-            pieceLocations.get(newPieceLocation.getKey()).clear();
-            pieceLocations.get(newPieceLocation.getKey()).addAll(newPieceLocation.getValue());
-
+        for (Piece piece : PIECES) {
+            pieceLocations.get(piece).clear();
+            pieceLocations.get(piece).addAll(otherBoard.pieceLocations.get(piece));
         }
+        System.arraycopy(otherBoard.pieceBitboards, 0, pieceBitboards, 0, pieceBitboards.length);
+        System.arraycopy(otherBoard.colorBitboards, 0, colorBitboards, 0, colorBitboards.length);
+        pieceHash = otherBoard.pieceHash;
+        middlegameScore = otherBoard.middlegameScore;
+        endgameScore = otherBoard.endgameScore;
+        phase = otherBoard.phase;
     }
 
     private void parseFen(String fenBoardPosition) {
@@ -62,6 +91,7 @@ public class Board {
                 }
                 occupiedSquares.put(Square.of(file, rank), piece);
                 pieceLocations.get(piece).add(Square.of(file, rank));
+                toggleBitboards(piece, Square.of(file, rank));
                 file += 1;
             } else if (pieceFen == '/') {
                 file = 0;
@@ -80,10 +110,84 @@ public class Board {
         return EnumSet.copyOf(pieceLocations.get(piece));
     }
 
+    /**
+     * Get the location of the king of the specified color without copying the set of its locations.
+     *
+     * @param color the color of the king to find
+     * @return the {@link Square} the king is on
+     */
+    Square getKingLocation(Color color) {
+        return Bitboard.first(pieceBitboards[Piece.from(color, Role.KING).ordinal()]);
+    }
+
     public Piece getPieceOn(Square square) {
         return occupiedSquares.get(square);
     }
 
+    /**
+     * Get the squares occupied by the specified piece.
+     *
+     * @return a {@link Bitboard} of the piece's locations
+     */
+    long getBitboard(Piece piece) {
+        return pieceBitboards[piece.ordinal()];
+    }
+
+    /**
+     * Get the squares occupied by the pieces of the specified color.
+     *
+     * @return a {@link Bitboard} of the color's pieces
+     */
+    long getOccupancy(Color color) {
+        return colorBitboards[color.ordinal()];
+    }
+
+    /**
+     * Get the squares occupied by any piece.
+     *
+     * @return a {@link Bitboard} of every piece
+     */
+    long getOccupancy() {
+        return colorBitboards[0] | colorBitboards[1];
+    }
+
+    /**
+     * Get the hash of the pieces on the board, without the rest of the position.
+     *
+     * @return the XOR of the {@link Zobrist} key of every piece on its square
+     */
+    long getPieceHash() {
+        return pieceHash;
+    }
+
+    int getMiddlegameScore() {
+        return middlegameScore;
+    }
+
+    int getEndgameScore() {
+        return endgameScore;
+    }
+
+    /**
+     * Get the game phase of the pieces on the board.
+     *
+     * @return {@link Evaluation#MAX_PHASE} with every minor and major piece on the board, down to 0 without any
+     */
+    int getPhase() {
+        return phase;
+    }
+
+    private void toggleBitboards(Piece piece, Square square) {
+        long squareBit = Bitboard.of(square);
+        int sign = (pieceBitboards[piece.ordinal()] & squareBit) == 0 ? 1 : -1;
+        middlegameScore += sign * Evaluation.middlegameScore(piece, square);
+        endgameScore += sign * Evaluation.endgameScore(piece, square);
+        phase += sign * Evaluation.phase(piece);
+        pieceBitboards[piece.ordinal()] ^= squareBit;
+        colorBitboards[piece.getColor().ordinal()] ^= squareBit;
+        pieceHash ^= Zobrist.pieceSquareKey(piece, square);
+    }
+
     void move(Square source, Square destination) {
         if (source == null || destination == null) {
             throw new IllegalArgumentException("Square to move from and to cannot be null.");
@@ -101,7 +205,10 @@ public class Board {
 
         if (pieceAtDestination != null) {
             pieceLocations.get(pieceAtDestination).remove(destination);
+            toggleBitboards(pieceAtDestination, destination);
         }
+        toggleBitboards(movingPiece, source);
+        toggleBitboards(movingPiece, destination);
     }
 
     void remove(Square target) {
@@ -117,6 +224,7 @@ public class Board {
         occupiedSquares.remove(target);
 
         pieceLocations.get(pieceToRemove).remove(target);
+        toggleBitboards(pieceToRemove, target);
     }
 
     void place(Piece piece, Square target) {
@@ -131,6 +239,7 @@ public class Board {
         occupiedSquares.put(target, piece);
 
         pieceLocations.get(piece).add(target);
+        toggleBitboards(piece, target);
 
     }
 
@@ -0,0 +1,110 @@
+package com.keshane.blitz;
+
+/**
+ * Holds what is needed to tell whether a move gives check, computed once per position.
+ * <p>
+ * A direct check is found by looking up the destination in the squares from which the moving piece's role attacks
+ * the enemy king. A discovered check is found by looking up the source in the mover's pieces that stand alone between
+ * one of the mover's sliding pieces and the enemy king. Both are single bit tests, so only castles, en passants and
+ * promotions - which move or remove more than one piece - need to look at the board again.
+ */
+final class CheckInfo {
+    private final Color attacker;
+    private final Square enemyKingSquare;
+    /**
+     * The squares from which a piece of the attacker would attack the enemy king, indexed by {@link Role} ordinal.
+     */
+    private final long[] checkSquares = new long[Role.values().length];
+    /**
+     * The attacker's pieces that would uncover a check from one of its sliding pieces by moving off the line.
+     */
+    private final long discoveredCheckCandidates;
+
+    /**
+     * Construct the CheckInfo for the moves of the specified player.
+     *
+     * @param attacker the player whose moves are going to be checked
+     * @param board    the position the moves are made from
+     */
+    CheckInfo(Color attacker, Board board) {
+        this.attacker = attacker;
+        enemyKingSquare = board.getKingLocation(attacker.opposite());
+        long occupancy = board.getOccupancy();
+
+        // a pawn checks from the squares that an enemy pawn on the king's square would capture on
+        checkSquares[Role.PAWN.ordinal()] = Bitboard.pawnAttacks(attacker.opposite(), enemyKingSquare);
+        checkSquares[Role.KNIGHT.ordinal()] = Bitboard.knightAttacks(enemyKingSquare);
+        checkSquares[Role.BISHOP.ordinal()] = Bitboard.bishopAttacks(enemyKingSquare, occupancy);
+        checkSquares[Role.ROOK.ordinal()] = Bitboard.rookAttacks(enemyKingSquare, occupancy);
+        checkSquares[Role.QUEEN.ordinal()] =
+            checkSquares[Role.BISHOP.ordinal()] | checkSquares[Role.ROOK.ordinal()];
+        // a king can never give check by itself
+
+        long orthogonalSliders = board.getBitboard(Piece.from(attacker, Role.ROOK))
+            | board.getBitboard(Piece.from(attacker, Role.QUEEN));
+        long diagonalSliders = board.getBitboard(Piece.from(attacker, Role.BISHOP))
+            | board.getBitboard(Piece.from(attacker, Role.QUEEN));
+        long snipers = (Bitboard.rookAttacks(enemyKingSquare, 0L) & orthogonalSliders)
+            | (Bitboard.bishopAttacks(enemyKingSquare, 0L) & diagonalSliders);
+
+        long candidates = 0L;
+        for (; snipers != 0; snipers &= snipers - 1) {
+            long blockers = Bitboard.between(enemyKingSquare, Bitboard.first(snipers)) & occupancy;
+            if (Long.bitCount(blockers) == 1 && (blockers & board.getOccupancy(attacker)) != 0) {
+                candidates |= blockers;
+            }
+        }
+        discoveredCheckCandidates = candidates;
+    }
+
+    /**
+     * Checks whether the specified move of the attacker puts the enemy king in check.
+     *
+     * @param move  a move of the attacker that may or may not be legal
+     * @param board the position the move is made from
+     * @return true if the enemy king is in check after the move
+     */
+    boolean givesCheck(Move move, Board board) {
+        Square source = move.getSource();
+        Square destination = move.getDestination();
+
+        if (move instanceof Castle) {
+            // only the rook can give check, and the king may have been blocking it
+            Castle castle = (Castle) move;
+            long occupancy = (board.getOccupancy() ^ Bitboard.of(source) ^ Bitboard.of(castle.getRookSource()))
+                | Bitboard.of(destination) | Bitboard.of(castle.getRookDestination());
+            return (Bitboard.rookAttacks(castle.getRookDestination(), occupancy) & Bitboard.of(enemyKingSquare)) != 0;
+        }
+
+        if ((discoveredCheckCandidates & Bitboard.of(source)) != 0
+            && !Bitboard.areAligned(source, destination, enemyKingSquare)) {
+            return true;
+        }
+
+        if (move instanceof Promotion) {
+            // the pawn leaving its square may open a line from the promoted piece to the king
+            Role promotedRole = ((Promotion) move).getPromotedPiece().getRole();
+            long occupancy = board.getOccupancy() ^ Bitboard.of(source);
+            return (Bitboard.attacks(promotedRole, attacker, destination, occupancy)
+                & Bitboard.of(enemyKingSquare)) != 0;
+        }
+
+        if ((checkSquares[move.getMovingPiece().getRole().ordinal()] & Bitboard.of(destination)) != 0) {
+            return true;
+        }
+
+        if (move instanceof EnPassant) {
+            // the captured pawn may have been the only piece between a sliding piece and the king
+            Square capturedPieceLocation = ((EnPassant) move).getCapturedPieceLocation();
+            long occupancy = (board.getOccupancy() ^ Bitboard.of(source) ^ Bitboard.of(capturedPieceLocation))
+                | Bitboard.of(destination);
+            long orthogonalSliders = board.getBitboard(Piece.from(attacker, Role.ROOK))
+                | board.getBitboard(Piece.from(attacker, Role.QUEEN));
+            long diagonalSliders = board.getBitboard(Piece.from(attacker, Role.BISHOP))
+                | board.getBitboard(Piece.from(attacker, Role.QUEEN));
+            return (Bitboard.rookAttacks(enemyKingSquare, occupancy) & orthogonalSliders) != 0
+                || (Bitboard.bishopAttacks(enemyKingSquare, occupancy) & diagonalSliders) != 0;
+        }
+        return false;
+    }
+}
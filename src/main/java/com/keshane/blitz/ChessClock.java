@@ -0,0 +1,178 @@
+package com.keshane.blitz;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Keeps the remaining time of both players of a {@link Game}, to the nanosecond.
+ * <p>
+ * Only the clock of the player to move runs. When a move is made, the time it took less the delay is taken off the
+ * mover's clock, the increment is added to it and the other clock starts. The clock doesn't check itself: the time
+ * at which the running side runs out is published by {@link #getDeadline()} for a timer to watch, and the game checks
+ * it before every move.
+ */
+public final class ChessClock {
+    private final TimeControl timeControl;
+    private final LongSupplier nanoTime;
+    private long whiteRemainingNanos;
+    private long blackRemainingNanos;
+    private boolean isWhiteRunning;
+    /**
+     * When the running side's turn started, by {@link #nanoTime}.
+     */
+    private long turnStartNanos;
+    private boolean isRunning;
+    /**
+     * When the running side runs out of time, by {@link #nanoTime}, or {@link Long#MAX_VALUE} if the clock is stopped.
+     */
+    private volatile long deadline = Long.MAX_VALUE;
+
+    /**
+     * Construct a stopped clock that measures time with {@link System#nanoTime()}.
+     *
+     * @param timeControl the time each player gets
+     */
+    public ChessClock(TimeControl timeControl) {
+        this(timeControl, System::nanoTime);
+    }
+
+    /**
+     * Construct a stopped clock that measures time with the specified source.
+     *
+     * @param timeControl the time each player gets
+     * @param nanoTime    gives the current time in nanoseconds, from any fixed origin
+     */
+    ChessClock(TimeControl timeControl, LongSupplier nanoTime) {
+        if (timeControl == null) {
+            throw new IllegalArgumentException("Time control cannot be null.");
+        }
+        this.timeControl = timeControl;
+        this.nanoTime = nanoTime;
+        whiteRemainingNanos = timeControl.getBaseNanos();
+        blackRemainingNanos = timeControl.getBaseNanos();
+    }
+
+    /**
+     * Start the clock of the specified side.
+     *
+     * @param isWhiteToMove whether white's clock is started, otherwise black's
+     */
+    synchronized void start(boolean isWhiteToMove) {
+        isWhiteRunning = isWhiteToMove;
+        turnStartNanos = nanoTime.getAsLong();
+        isRunning = true;
+        updateDeadline();
+    }
+
+    /**
+     * End the running side's turn and start the other side's clock.
+     *
+     * @return false if the running side had already run out of time, in which case the clock is stopped instead
+     */
+    synchronized boolean press() {
+        if (!isRunning) {
+            return true;
+        }
+        long now = nanoTime.getAsLong();
+        long remaining = getRemainingNanos(isWhiteRunning, now);
+        if (remaining <= 0) {
+            charge(now);
+            stop();
+            return false;
+        }
+        charge(now);
+        if (isWhiteRunning) {
+            whiteRemainingNanos += timeControl.getIncrementNanos();
+        }
+        else {
+            blackRemainingNanos += timeControl.getIncrementNanos();
+        }
+        isWhiteRunning = !isWhiteRunning;
+        turnStartNanos = now;
+        updateDeadline();
+        return true;
+    }
+
+    /**
+     * Stop the clock, keeping the time used so far in the current turn.
+     */
+    synchronized void stop() {
+        if (isRunning) {
+            charge(nanoTime.getAsLong());
+            isRunning = false;
+        }
+        deadline = Long.MAX_VALUE;
+    }
+
+    /**
+     * Whether the running side has run out of time.
+     */
+    public synchronized boolean isFlagged() {
+        return isRunning && getRemainingNanos(isWhiteRunning, nanoTime.getAsLong()) <= 0;
+    }
+
+    public synchronized boolean isRunning() {
+        return isRunning;
+    }
+
+    public synchronized boolean isWhiteRunning() {
+        return isWhiteRunning;
+    }
+
+    /**
+     * Get the time white has left, counting the current turn if white's clock is running.
+     *
+     * @return the remaining time in nanoseconds, which is not positive once white has run out
+     */
+    public synchronized long getWhiteRemainingNanos() {
+        return getRemainingNanos(true, nanoTime.getAsLong());
+    }
+
+    /**
+     * Get the time black has left, counting the current turn if black's clock is running.
+     *
+     * @return the remaining time in nanoseconds, which is not positive once black has run out
+     */
+    public synchronized long getBlackRemainingNanos() {
+        return getRemainingNanos(false, nanoTime.getAsLong());
+    }
+
+    /**
+     * Get the time at which the running side runs out, without locking.
+     *
+     * @return the time by the clock's time source or {@link Long#MAX_VALUE} if the clock is stopped
+     */
+    long getDeadline() {
+        return deadline;
+    }
+
+    private long getRemainingNanos(boolean isWhite, long now) {
+        long remaining = isWhite ? whiteRemainingNanos : blackRemainingNanos;
+        if (isRunning && isWhite == isWhiteRunning) {
+            remaining -= getChargedNanos(now);
+        }
+        return remaining;
+    }
+
+    /**
+     * Take the time of the current turn so far off the running side's clock.
+     */
+    private void charge(long now) {
+        long charged = getChargedNanos(now);
+        if (isWhiteRunning) {
+            whiteRemainingNanos -= charged;
+        }
+        else {
+            blackRemainingNanos -= charged;
+        }
+        turnStartNanos = now;
+    }
+
+    private long getChargedNanos(long now) {
+        return Math.max(0, now - turnStartNanos - timeControl.getDelayNanos());
+    }
+
+    private void updateDeadline() {
+        long remaining = isWhiteRunning ? whiteRemainingNanos : blackRemainingNanos;
+        deadline = turnStartNanos + timeControl.getDelayNanos() + remaining;
+    }
+}
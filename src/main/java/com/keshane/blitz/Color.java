@@ -6,7 +6,7 @@ import java.util.Map;
 /**
  * Defines all the possible colors of chess pieces.
  */
-enum Color {
+public enum Color {
     WHITE("w", 0),
     BLACK("b", 7);
 
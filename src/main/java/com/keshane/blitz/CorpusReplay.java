@@ -0,0 +1,426 @@
+package com.keshane.blitz;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Replays every game in a directory of game files and reports how fast the library went through them.
+ * <p>
+ * The files can be PGN or the clean format of one move pair per line with a blank line between games. Every file in
+ * the directory is read before timing starts, so only the replay is measured. The report gives games and plies per
+ * second of wall time, and the time spent parsing notation, generating moves, filtering them and writing FEN after
+ * each ply, summed over the threads. Generating and filtering are split as described in
+ * {@link MetricsSink#recordGeneration}, so filtering also covers building the legal moves.
+ * <p>
+ * With {@code --verify}, the legal moves a game keeps up to date between plies are also compared after every ply with
+ * those generated from scratch, and the positions where they differ are counted. This is slow, so the times are then
+ * only good for comparing with each other. Run it as:
+ * <pre>
+ * java com.keshane.blitz.CorpusReplay [--threads N] [--json] [--verify] DIRECTORY
+ * </pre>
+ */
+public final class CorpusReplay {
+    private static final String USAGE = "Usage: CorpusReplay [--threads N] [--json] [--verify] DIRECTORY";
+
+    private CorpusReplay() {
+        // no instances
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int threadCount = 1;
+        boolean isJson = false;
+        boolean isVerifying = false;
+        Path directory = null;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--threads") && i + 1 < args.length) {
+                threadCount = Integer.parseInt(args[++i]);
+            }
+            else if (args[i].equals("--json")) {
+                isJson = true;
+            }
+            else if (args[i].equals("--verify")) {
+                isVerifying = true;
+            }
+            else if (directory == null && !args[i].startsWith("--")) {
+                directory = Paths.get(args[i]);
+            }
+            else {
+                System.err.println(USAGE);
+                System.exit(2);
+            }
+        }
+        if (directory == null || threadCount < 1) {
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+
+        Report report = replay(readGames(directory), threadCount, isVerifying);
+        System.out.println(isJson ? report.toJson() : report.toString());
+    }
+
+    /**
+     * Read the games of every file in a directory, in order of file name.
+     *
+     * @param directory the directory, whose subdirectories are skipped
+     * @return the moves of each game in algebraic notation
+     * @throws IOException if a file can't be read
+     */
+    static List<List<String>> readGames(Path directory) throws IOException {
+        List<List<String>> games = new ArrayList<>();
+        for (Path file : listFiles(directory)) {
+            try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.ISO_8859_1)) {
+                games.addAll(readGames(reader));
+            }
+        }
+        return games;
+    }
+
+    /**
+     * List the files in a directory in order of file name.
+     *
+     * @param directory the directory, whose subdirectories are skipped
+     * @return the files
+     * @throws IOException if the directory can't be read
+     */
+    static List<Path> listFiles(Path directory) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+            for (Path entry : entries) {
+                if (Files.isRegularFile(entry)) {
+                    files.add(entry);
+                }
+            }
+        }
+        Collections.sort(files);
+        return files;
+    }
+
+    /**
+     * Split the text of a game file into games.
+     * <p>
+     * Tag pairs, move numbers, comments, variations, numeric annotation glyphs and the marks {@code !} and {@code ?}
+     * are left out. A game ends at its result or at a blank line after its moves.
+     *
+     * @param reader the text of the file
+     * @return the moves of each game in algebraic notation
+     * @throws IOException if the text can't be read
+     */
+    static List<List<String>> readGames(Reader reader) throws IOException {
+        BufferedReader lines = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+        List<List<String>> games = new ArrayList<>();
+        List<String> moves = new ArrayList<>();
+        // how deep inside braces and parentheses the text is, which carries over from one line to the next
+        int commentDepth = 0;
+        int variationDepth = 0;
+        for (String line = lines.readLine(); line != null; line = lines.readLine()) {
+            String trimmed = line.trim();
+            if (commentDepth == 0 && trimmed.startsWith("[")) {
+                continue;
+            }
+            if (trimmed.isEmpty() && commentDepth == 0 && variationDepth == 0) {
+                endGame(moves, games);
+                continue;
+            }
+
+            int tokenStart = -1;
+            for (int i = 0; i <= line.length(); i++) {
+                char character = i < line.length() ? line.charAt(i) : ' ';
+                if (commentDepth > 0) {
+                    if (character == '}') {
+                        commentDepth--;
+                    }
+                    continue;
+                }
+                boolean isSeparator = Character.isWhitespace(character) || character == '{' || character == '('
+                    || character == ')' || character == ';';
+                if (!isSeparator) {
+                    if (tokenStart < 0) {
+                        tokenStart = i;
+                    }
+                    continue;
+                }
+                if (tokenStart >= 0) {
+                    if (variationDepth == 0 && addToken(line.substring(tokenStart, i), moves)) {
+                        endGame(moves, games);
+                    }
+                    tokenStart = -1;
+                }
+                if (character == '{') {
+                    commentDepth++;
+                }
+                else if (character == '(') {
+                    variationDepth++;
+                }
+                else if (character == ')') {
+                    variationDepth = Math.max(0, variationDepth - 1);
+                }
+                else if (character == ';') {
+                    // the rest of the line is a comment
+                    break;
+                }
+            }
+        }
+        endGame(moves, games);
+        return games;
+    }
+
+    /**
+     * Add a token of movetext to the moves of a game if it's a move.
+     *
+     * @return whether the token is the result, which ends the game
+     */
+    private static boolean addToken(String token, List<String> moves) {
+        if (token.equals("1-0") || token.equals("0-1") || token.equals("1/2-1/2") || token.equals("*")) {
+            return true;
+        }
+        if (token.startsWith("$")) {
+            return false;
+        }
+        // a move number can be written against its move, as in 1.e4
+        int start = 0;
+        while (start < token.length() && Character.isDigit(token.charAt(start))) {
+            start++;
+        }
+        if (start < token.length() && token.charAt(start) == '.') {
+            while (start < token.length() && token.charAt(start) == '.') {
+                start++;
+            }
+        }
+        else {
+            start = 0;
+        }
+        int end = token.length();
+        while (end > start && (token.charAt(end - 1) == '!' || token.charAt(end - 1) == '?')) {
+            end--;
+        }
+        if (end > start) {
+            moves.add(token.substring(start, end));
+        }
+        return false;
+    }
+
+    private static void endGame(List<String> moves, List<List<String>> games) {
+        if (!moves.isEmpty()) {
+            games.add(new ArrayList<>(moves));
+            moves.clear();
+        }
+    }
+
+    /**
+     * Replay games and measure how long it took.
+     * <p>
+     * A game stops being replayed at its first move that can't be made, and counts as failed. The
+     * {@link MetricsSink} installed in {@link Game} is replaced while the games are replayed.
+     *
+     * @param games       the moves of each game in algebraic notation, from the standard starting position
+     * @param threadCount the number of threads to replay games on at the same time
+     * @param isVerifying whether to compare the legal moves of every position with those generated from scratch
+     * @return the measurements
+     * @throws InterruptedException if interrupted while waiting for the threads
+     */
+    static Report replay(List<List<String>> games, int threadCount, boolean isVerifying)
+        throws InterruptedException {
+        if (threadCount < 1) {
+            throw new IllegalArgumentException("Thread count must be positive.");
+        }
+        PhaseTimes phaseTimes = new PhaseTimes();
+        MetricsSink previousSink = Game.getMetricsSink();
+        Game.setMetricsSink(phaseTimes);
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        try {
+            AtomicInteger nextGame = new AtomicInteger();
+            List<Future<Report>> results = new ArrayList<>();
+            long startNanos = System.nanoTime();
+            for (int i = 0; i < threadCount; i++) {
+                results.add(executor.submit(() -> replayShare(games, nextGame, isVerifying)));
+            }
+            Report report = new Report();
+            for (Future<Report> result : results) {
+                report.add(result.get());
+            }
+            report.wallNanos = System.nanoTime() - startNanos;
+            report.threadCount = threadCount;
+            report.parseNanos = phaseTimes.parseNanos.sum();
+            report.generationNanos = phaseTimes.generationNanos.sum();
+            report.filteringNanos = phaseTimes.filteringNanos.sum();
+            report.moveNanos = phaseTimes.moveNanos.sum();
+            return report;
+        }
+        catch (ExecutionException e) {
+            throw new IllegalStateException("Replay failed", e.getCause());
+        }
+        finally {
+            executor.shutdown();
+            Game.setMetricsSink(previousSink);
+        }
+    }
+
+    /**
+     * Replay games taken one at a time from the shared list until there are none left.
+     */
+    private static Report replayShare(List<List<String>> games, AtomicInteger nextGame, boolean isVerifying) {
+        Report report = new Report();
+        Board verificationBoard = new Board("8/8/8/8/8/8/8/8");
+        for (int index = nextGame.getAndIncrement(); index < games.size(); index = nextGame.getAndIncrement()) {
+            Game game = new Game("white", "black");
+            boolean isFailed = false;
+            for (String move : games.get(index)) {
+                if (game.move(move).hasErrors()) {
+                    isFailed = true;
+                    break;
+                }
+                report.plyCount++;
+                if (isVerifying && !hasSameLegalMoves(game, verificationBoard)) {
+                    report.mismatchCount++;
+                }
+                long fenStartNanos = System.nanoTime();
+                game.toFenNotation();
+                report.fenNanos += System.nanoTime() - fenStartNanos;
+            }
+            report.gameCount++;
+            if (isFailed) {
+                report.failedGameCount++;
+            }
+        }
+        return report;
+    }
+
+    /**
+     * Checks whether the legal moves a game has kept up to date are the same as those generated from scratch.
+     */
+    private static boolean hasSameLegalMoves(Game game, Board verificationBoard) {
+        Set<Integer> kept = new HashSet<>();
+        for (Move move : game.legalMoves()) {
+            kept.add(PackedMove.of(move));
+        }
+        List<Move> generated = new ArrayList<>();
+        Game.generateLegalMoves(game.getPlayerToMove(), game.getBoard(), game.getEnPassantTarget(),
+            game.getAvailableCastles(), verificationBoard, generated);
+        Set<Integer> expected = new HashSet<>();
+        for (Move move : generated) {
+            expected.add(PackedMove.of(move));
+        }
+        return kept.size() == game.legalMoves().size() && kept.equals(expected);
+    }
+
+    /**
+     * Adds up the time spent in each phase of making moves across threads.
+     */
+    private static final class PhaseTimes implements MetricsSink {
+        private final LongAdder moveNanos = new LongAdder();
+        private final LongAdder parseNanos = new LongAdder();
+        private final LongAdder generationNanos = new LongAdder();
+        private final LongAdder filteringNanos = new LongAdder();
+
+        @Override
+        public void recordMoveNanos(long nanos) {
+            moveNanos.add(nanos);
+        }
+
+        @Override
+        public void recordGenerationNanos(long nanos) {
+            generationNanos.add(nanos);
+        }
+
+        @Override
+        public void recordFilteringNanos(long nanos) {
+            filteringNanos.add(nanos);
+        }
+
+        @Override
+        public void recordParseNanos(long nanos) {
+            parseNanos.add(nanos);
+        }
+    }
+
+    /**
+     * The measurements of a replay. Times of phases are summed over threads, so with several threads they can add
+     * up to more than the wall time.
+     */
+    static final class Report {
+        int threadCount;
+        long gameCount;
+        long failedGameCount;
+        /**
+         * The number of positions whose kept legal moves differed from those generated from scratch.
+         */
+        long mismatchCount;
+        long plyCount;
+        long wallNanos;
+        long moveNanos;
+        long parseNanos;
+        long generationNanos;
+        long filteringNanos;
+        long fenNanos;
+
+        private void add(Report other) {
+            gameCount += other.gameCount;
+            failedGameCount += other.failedGameCount;
+            plyCount += other.plyCount;
+            mismatchCount += other.mismatchCount;
+            fenNanos += other.fenNanos;
+        }
+
+        double getGamesPerSecond() {
+            return wallNanos == 0 ? 0 : gameCount * 1e9 / wallNanos;
+        }
+
+        double getPliesPerSecond() {
+            return wallNanos == 0 ? 0 : plyCount * 1e9 / wallNanos;
+        }
+
+        /**
+         * Write the measurements as a JSON object on one line, with times in nanoseconds.
+         */
+        String toJson() {
+            return String.format(Locale.US, "{\"threads\":%d,\"games\":%d,\"failedGames\":%d,\"plies\":%d,"
+                    + "\"mismatches\":%d,\"wallNanos\":%d,\"gamesPerSecond\":%.1f,\"pliesPerSecond\":%.1f,"
+                    + "\"moveNanos\":%d,\"parseNanos\":%d,\"generationNanos\":%d,\"filteringNanos\":%d,"
+                    + "\"fenNanos\":%d}",
+                threadCount, gameCount, failedGameCount, plyCount, mismatchCount, wallNanos, getGamesPerSecond(),
+                getPliesPerSecond(), moveNanos, parseNanos, generationNanos, filteringNanos, fenNanos);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder text = new StringBuilder();
+            text.append(String.format(Locale.US, "%d games (%d failed), %d plies on %d thread(s) in %.3f s%n",
+                gameCount, failedGameCount, plyCount, threadCount, wallNanos / 1e9));
+            text.append(String.format(Locale.US, "%.1f games/s, %.1f plies/s%n", getGamesPerSecond(),
+                getPliesPerSecond()));
+            if (mismatchCount > 0) {
+                text.append(String.format("%d positions with legal moves that differ from full generation%n",
+                    mismatchCount));
+            }
+            appendPhase(text, "move", moveNanos);
+            appendPhase(text, "parse", parseNanos);
+            appendPhase(text, "generation", generationNanos);
+            appendPhase(text, "filtering", filteringNanos);
+            appendPhase(text, "fen", fenNanos);
+            return text.toString();
+        }
+
+        private void appendPhase(StringBuilder text, String phase, long nanos) {
+            text.append(String.format(Locale.US, "%-10s %10.3f ms %8.0f ns/ply%n", phase, nanos / 1e6,
+                plyCount == 0 ? 0.0 : (double) nanos / plyCount));
+        }
+    }
+}
@@ -69,6 +69,11 @@ public class EnPassant implements Move, Capture {
         board.remove(capturedPieceLocation);
     }
 
+    @Override
+    public Move withCheck(boolean isCheckmate) {
+        return new EnPassant(pawn, source, destination, capturedPiece, true, isCheckmate);
+    }
+
     @Override
     public boolean isAMatch(InterpretedNotation rawMove) {
         // not checking for MoveType.EN_PASSANT because some notations don't include it
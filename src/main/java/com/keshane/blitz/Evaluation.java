@@ -0,0 +1,161 @@
+package com.keshane.blitz;
+
+/**
+ * Holds the material and piece-square values of the static evaluation.
+ * <p>
+ * Every piece on a square is worth a middlegame and an endgame score. {@link Board} adds up these scores as pieces
+ * are placed and removed, along with a game phase that falls from {@link #MAX_PHASE} towards 0 as pieces other than
+ * pawns come off the board. The evaluation blends the two sums according to the phase, so it never has to look at
+ * the squares of the board.
+ */
+final class Evaluation {
+    /**
+     * The phase of a position with all of its minor and major pieces.
+     */
+    static final int MAX_PHASE = 24;
+
+    /**
+     * Material values indexed by {@link Role} ordinal.
+     */
+    private static final int[] MIDDLEGAME_MATERIAL = new int[]{82, 365, 337, 477, 1025, 0};
+    private static final int[] ENDGAME_MATERIAL = new int[]{94, 297, 281, 512, 936, 0};
+    /**
+     * How much each role counts towards the phase, indexed by {@link Role} ordinal.
+     */
+    private static final int[] ROLE_PHASES = new int[]{0, 1, 1, 2, 4, 0};
+
+    // The tables below are laid out as a board seen by white, so the first row is rank 8 and the last is rank 1.
+
+    private static final int[] PAWN_MIDDLEGAME = new int[]{
+          0,   0,   0,   0,   0,   0,   0,   0,
+         50,  50,  50,  50,  50,  50,  50,  50,
+         10,  10,  20,  30,  30,  20,  10,  10,
+          5,   5,  10,  25,  25,  10,   5,   5,
+          0,   0,   0,  20,  20,   0,   0,   0,
+          5,  -5, -10,   0,   0, -10,  -5,   5,
+          5,  10,  10, -20, -20,  10,  10,   5,
+          0,   0,   0,   0,   0,   0,   0,   0};
+    private static final int[] PAWN_ENDGAME = new int[]{
+          0,   0,   0,   0,   0,   0,   0,   0,
+         80,  80,  80,  80,  80,  80,  80,  80,
+         50,  50,  50,  50,  50,  50,  50,  50,
+         30,  30,  30,  30,  30,  30,  30,  30,
+         20,  20,  20,  20,  20,  20,  20,  20,
+         10,  10,  10,  10,  10,  10,  10,  10,
+          0,   0,   0,   0,   0,   0,   0,   0,
+          0,   0,   0,   0,   0,   0,   0,   0};
+    private static final int[] KNIGHT = new int[]{
+        -50, -40, -30, -30, -30, -30, -40, -50,
+        -40, -20,   0,   0,   0,   0, -20, -40,
+        -30,   0,  10,  15,  15,  10,   0, -30,
+        -30,   5,  15,  20,  20,  15,   5, -30,
+        -30,   0,  15,  20,  20,  15,   0, -30,
+        -30,   5,  10,  15,  15,  10,   5, -30,
+        -40, -20,   0,   5,   5,   0, -20, -40,
+        -50, -40, -30, -30, -30, -30, -40, -50};
+    private static final int[] BISHOP = new int[]{
+        -20, -10, -10, -10, -10, -10, -10, -20,
+        -10,   0,   0,   0,   0,   0,   0, -10,
+        -10,   0,   5,  10,  10,   5,   0, -10,
+        -10,   5,   5,  10,  10,   5,   5, -10,
+        -10,   0,  10,  10,  10,  10,   0, -10,
+        -10,  10,  10,  10,  10,  10,  10, -10,
+        -10,   5,   0,   0,   0,   0,   5, -10,
+        -20, -10, -10, -10, -10, -10, -10, -20};
+    private static final int[] ROOK = new int[]{
+          0,   0,   0,   0,   0,   0,   0,   0,
+          5,  10,  10,  10,  10,  10,  10,   5,
+         -5,   0,   0,   0,   0,   0,   0,  -5,
+         -5,   0,   0,   0,   0,   0,   0,  -5,
+         -5,   0,   0,   0,   0,   0,   0,  -5,
+         -5,   0,   0,   0,   0,   0,   0,  -5,
+         -5,   0,   0,   0,   0,   0,   0,  -5,
+          0,   0,   0,   5,   5,   0,   0,   0};
+    private static final int[] QUEEN = new int[]{
+        -20, -10, -10,  -5,  -5, -10, -10, -20,
+        -10,   0,   0,   0,   0,   0,   0, -10,
+        -10,   0,   5,   5,   5,   5,   0, -10,
+         -5,   0,   5,   5,   5,   5,   0,  -5,
+          0,   0,   5,   5,   5,   5,   0,  -5,
+        -10,   5,   5,   5,   5,   5,   0, -10,
+        -10,   0,   5,   0,   0,   0,   0, -10,
+        -20, -10, -10,  -5,  -5, -10, -10, -20};
+    private static final int[] KING_MIDDLEGAME = new int[]{
+        -30, -40, -40, -50, -50, -40, -40, -30,
+        -30, -40, -40, -50, -50, -40, -40, -30,
+        -30, -40, -40, -50, -50, -40, -40, -30,
+        -30, -40, -40, -50, -50, -40, -40, -30,
+        -20, -30, -30, -40, -40, -30, -30, -20,
+        -10, -20, -20, -20, -20, -20, -20, -10,
+         20,  20,   0,   0,   0,   0,  20,  20,
+         20,  30,  10,   0,   0,  10,  30,  20};
+    private static final int[] KING_ENDGAME = new int[]{
+        -50, -40, -30, -20, -20, -30, -40, -50,
+        -30, -20, -10,   0,   0, -10, -20, -30,
+        -30, -10,  20,  30,  30,  20, -10, -30,
+        -30, -10,  30,  40,  40,  30, -10, -30,
+        -30, -10,  30,  40,  40,  30, -10, -30,
+        -30, -10,  20,  30,  30,  20, -10, -30,
+        -30, -30,   0,   0,   0,   0, -30, -30,
+        -50, -30, -30, -30, -30, -30, -30, -50};
+
+    /**
+     * Piece-square tables indexed by {@link Role} ordinal.
+     */
+    private static final int[][] MIDDLEGAME_TABLES = new int[][]{PAWN_MIDDLEGAME, BISHOP, KNIGHT, ROOK, QUEEN,
+        KING_MIDDLEGAME};
+    private static final int[][] ENDGAME_TABLES = new int[][]{PAWN_ENDGAME, BISHOP, KNIGHT, ROOK, QUEEN,
+        KING_ENDGAME};
+
+    /**
+     * Scores of each piece on each square from white's point of view, indexed by {@link Piece} ordinal and then by
+     * {@link Square} ordinal.
+     */
+    private static final int[][] MIDDLEGAME_SCORES = new int[Piece.values().length][64];
+    private static final int[][] ENDGAME_SCORES = new int[Piece.values().length][64];
+
+    static {
+        for (Piece piece : Piece.values()) {
+            int role = piece.getRole().ordinal();
+            for (int square = 0; square < 64; square++) {
+                // flip white's squares vertically to find them in the tables; black's squares already line up
+                int tableIndex = piece.getColor() == Color.WHITE ? square ^ 56 : square;
+                int sign = piece.getColor() == Color.WHITE ? 1 : -1;
+                MIDDLEGAME_SCORES[piece.ordinal()][square] =
+                    sign * (MIDDLEGAME_MATERIAL[role] + MIDDLEGAME_TABLES[role][tableIndex]);
+                ENDGAME_SCORES[piece.ordinal()][square] =
+                    sign * (ENDGAME_MATERIAL[role] + ENDGAME_TABLES[role][tableIndex]);
+            }
+        }
+    }
+
+    private Evaluation() {
+        // no instances
+    }
+
+    static int middlegameScore(Piece piece, Square square) {
+        return MIDDLEGAME_SCORES[piece.ordinal()][square.ordinal()];
+    }
+
+    static int endgameScore(Piece piece, Square square) {
+        return ENDGAME_SCORES[piece.ordinal()][square.ordinal()];
+    }
+
+    static int phase(Piece piece) {
+        return ROLE_PHASES[piece.getRole().ordinal()];
+    }
+
+    /**
+     * Evaluate the pieces on a board.
+     *
+     * @param board the board to evaluate
+     * @param color the color whose point of view the score is from
+     * @return the score in centipawns, positive if the color is better off
+     */
+    static int evaluate(Board board, Color color) {
+        // promotions can leave more than the starting pieces on the board
+        int phase = Math.min(board.getPhase(), MAX_PHASE);
+        int score = (board.getMiddlegameScore() * phase + board.getEndgameScore() * (MAX_PHASE - phase)) / MAX_PHASE;
+        return color == Color.WHITE ? score : -score;
+    }
+}
@@ -0,0 +1,475 @@
+package com.keshane.blitz;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Checks FEN records and rewrites the valid ones in a canonical form, without throwing for bad input or building a
+ * {@link Game}.
+ * <p>
+ * A record is valid if {@link Game} can play from it: six fields, eight ranks of eight squares, one king of each color,
+ * no pawn on the first or last rank, and the player who just moved not in check. The canonical form is the one
+ * {@link Game#toFenNotation()} writes, except that it also drops castles whose king or rook isn't on its square and an
+ * en passant target no pawn can have just skipped, which {@link Game} keeps. Neither could be used in a game reached
+ * by legal moves. The move counts are written as {@code - -}, as {@link Game} writes them.
+ * <p>
+ * A validator keeps scratch space between records, so each thread needs its own. {@link #validateFile} checks a whole
+ * file in parallel chunks and writes one tab-separated line per record: its line number, then {@code ok} and the
+ * canonical FEN or {@code error} and what's wrong. Run it as:
+ * <pre>
+ * java com.keshane.blitz.FenValidator [--threads N] INPUT OUTPUT
+ * </pre>
+ */
+public final class FenValidator {
+    private static final String USAGE = "Usage: FenValidator [--threads N] INPUT OUTPUT";
+    private static final int FIELD_COUNT = 6;
+    private static final int LINES_PER_CHUNK = 8192;
+    private static final Piece[] PIECES = Piece.values();
+    /**
+     * The piece written as each character in FEN, or null.
+     */
+    private static final Piece[] PIECE_BY_CHARACTER = new Piece[128];
+    /**
+     * The pieces standing for the castles in the order FEN writes them.
+     */
+    private static final Piece[] CASTLES = new Piece[]{Piece.WHITE_KING, Piece.WHITE_QUEEN, Piece.BLACK_KING,
+        Piece.BLACK_QUEEN};
+
+    static {
+        for (Piece piece : PIECES) {
+            PIECE_BY_CHARACTER[piece.getFenNotation().charAt(0)] = piece;
+        }
+    }
+
+    private final int[] fieldStarts = new int[FIELD_COUNT + 1];
+    private final int[] fieldEnds = new int[FIELD_COUNT + 1];
+    private final long[] pieceBitboards = new long[PIECES.length];
+
+    /**
+     * Check a FEN record and write its canonical form if it's valid.
+     *
+     * @param fen       the record, which may have whitespace around it
+     * @param canonical where the canonical FEN is appended, only if the record is valid
+     * @return null if the record is valid, or what's wrong with it
+     */
+    String validate(CharSequence fen, StringBuilder canonical) {
+        int fieldCount = splitFields(fen);
+        if (fieldCount != FIELD_COUNT) {
+            return fieldCount > FIELD_COUNT ? "More than 6 fields" : "Expected 6 fields but found " + fieldCount;
+        }
+
+        String error = parsePlacement(fen, fieldStarts[0], fieldEnds[0]);
+        if (error != null) {
+            return error;
+        }
+        Color playerToMove = parsePlayerToMove(fen);
+        if (playerToMove == null) {
+            return "Player to move must be w or b";
+        }
+        int castles = parseCastles(fen);
+        if (castles < 0) {
+            return "Castling availability must be - or some of KQkq in that order";
+        }
+        int enPassantIndex = parseEnPassantTarget(fen);
+        if (enPassantIndex == -2) {
+            return "En passant target must be - or a square on the third or sixth rank";
+        }
+        if (!isMoveCount(fen, 4) || !isMoveCount(fen, 5)) {
+            return "Move counts must be - or a whole number";
+        }
+        if (isAttacked(playerToMove.opposite())) {
+            return "The player who just moved is in check";
+        }
+
+        appendCanonical(playerToMove, castles, enPassantIndex, canonical);
+        return null;
+    }
+
+    /**
+     * Find the whitespace-separated fields of a record.
+     *
+     * @return the number of fields, which stops counting at one more than expected
+     */
+    private int splitFields(CharSequence fen) {
+        int fieldCount = 0;
+        int length = fen.length();
+        int i = 0;
+        while (fieldCount <= FIELD_COUNT) {
+            while (i < length && Character.isWhitespace(fen.charAt(i))) {
+                i++;
+            }
+            if (i == length) {
+                break;
+            }
+            fieldStarts[fieldCount] = i;
+            while (i < length && !Character.isWhitespace(fen.charAt(i))) {
+                i++;
+            }
+            fieldEnds[fieldCount++] = i;
+        }
+        return fieldCount;
+    }
+
+    private String parsePlacement(CharSequence fen, int start, int end) {
+        for (int i = 0; i < pieceBitboards.length; i++) {
+            pieceBitboards[i] = 0;
+        }
+        int rank = 7;
+        int file = 0;
+        for (int i = start; i < end; i++) {
+            char character = fen.charAt(i);
+            if (character == '/') {
+                if (file != 8) {
+                    return String.format("Rank %d has %d squares", rank + 1, file);
+                }
+                if (--rank < 0) {
+                    return "More than 8 ranks";
+                }
+                file = 0;
+            }
+            else if (character >= '1' && character <= '8') {
+                file += character - '0';
+                if (file > 8) {
+                    return String.format("Rank %d has more than 8 squares", rank + 1);
+                }
+            }
+            else {
+                Piece piece = character < PIECE_BY_CHARACTER.length ? PIECE_BY_CHARACTER[character] : null;
+                if (piece == null) {
+                    return String.format("'%c' is not a piece", character);
+                }
+                if (file == 8) {
+                    return String.format("Rank %d has more than 8 squares", rank + 1);
+                }
+                if (piece.getRole() == Role.PAWN && (rank == 0 || rank == 7)) {
+                    return "Pawn on the first or last rank";
+                }
+                pieceBitboards[piece.ordinal()] |= 1L << (rank * 8 + file);
+                file++;
+            }
+        }
+        if (rank != 0 || file != 8) {
+            return rank != 0 ? "Fewer than 8 ranks" : String.format("Rank 1 has %d squares", file);
+        }
+        for (Color color : Color.values()) {
+            int kingCount = Long.bitCount(pieceBitboards[Piece.from(color, Role.KING).ordinal()]);
+            if (kingCount != 1) {
+                return String.format("Expected one %s king but found %d", color.name().toLowerCase(Locale.ROOT),
+                    kingCount);
+            }
+        }
+        return null;
+    }
+
+    private Color parsePlayerToMove(CharSequence fen) {
+        if (fieldEnds[1] - fieldStarts[1] != 1) {
+            return null;
+        }
+        char notation = fen.charAt(fieldStarts[1]);
+        return notation == 'w' ? Color.WHITE : notation == 'b' ? Color.BLACK : null;
+    }
+
+    /**
+     * Parse the castles, keeping only those whose king and rook stand on their squares.
+     *
+     * @return a bit for the index in {@link #CASTLES} of each castle kept, or -1 if the field isn't valid
+     */
+    private int parseCastles(CharSequence fen) {
+        int start = fieldStarts[2];
+        int end = fieldEnds[2];
+        if (end - start == 1 && fen.charAt(start) == '-') {
+            return 0;
+        }
+        int castles = 0;
+        int next = 0;
+        for (int i = start; i < end; i++) {
+            int index = next;
+            while (index < CASTLES.length && CASTLES[index].getFenNotation().charAt(0) != fen.charAt(i)) {
+                index++;
+            }
+            if (index == CASTLES.length) {
+                return -1;
+            }
+            next = index + 1;
+            if (isCastlePossible(CASTLES[index])) {
+                castles |= 1 << index;
+            }
+        }
+        return castles;
+    }
+
+    private boolean isCastlePossible(Piece castle) {
+        Color color = castle.getColor();
+        int backRank = color.backRank();
+        int rookFile = castle.getRole() == Role.KING ? 7 : 0;
+        return (pieceBitboards[Piece.from(color, Role.KING).ordinal()] & 1L << (backRank * 8 + 4)) != 0
+            && (pieceBitboards[Piece.from(color, Role.ROOK).ordinal()] & 1L << (backRank * 8 + rookFile)) != 0;
+    }
+
+    /**
+     * Parse the en passant target, keeping it only if a pawn of the player who just moved stands past it.
+     *
+     * @return the index of the target, -1 if there is none or it's dropped, or -2 if the field isn't valid
+     */
+    private int parseEnPassantTarget(CharSequence fen) {
+        int start = fieldStarts[3];
+        int end = fieldEnds[3];
+        if (end - start == 1 && fen.charAt(start) == '-') {
+            return -1;
+        }
+        if (end - start != 2) {
+            return -2;
+        }
+        int file = fen.charAt(start) - 'a';
+        int rank = fen.charAt(start + 1) - '1';
+        if (file < 0 || file > 7 || (rank != 2 && rank != 5)) {
+            return -2;
+        }
+        // a pawn that has just moved two squares from rank 2 stands on rank 4, and from rank 7 on rank 5
+        Color mover = rank == 2 ? Color.WHITE : Color.BLACK;
+        int pawnIndex = (rank == 2 ? 3 : 4) * 8 + file;
+        int playerToMove = fen.charAt(fieldStarts[1]) == 'w' ? Color.WHITE.ordinal() : Color.BLACK.ordinal();
+        if (playerToMove == mover.ordinal()
+            || (pieceBitboards[Piece.from(mover, Role.PAWN).ordinal()] & 1L << pawnIndex) == 0) {
+            return -1;
+        }
+        return rank * 8 + file;
+    }
+
+    private boolean isMoveCount(CharSequence fen, int field) {
+        int start = fieldStarts[field];
+        int end = fieldEnds[field];
+        if (end - start == 1 && fen.charAt(start) == '-') {
+            return true;
+        }
+        if (end - start > 9) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            if (fen.charAt(i) < '0' || fen.charAt(i) > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks whether the king of a color is attacked in the parsed placement.
+     */
+    private boolean isAttacked(Color color) {
+        Color enemy = color.opposite();
+        long occupancy = 0;
+        for (long bitboard : pieceBitboards) {
+            occupancy |= bitboard;
+        }
+        Square king = Bitboard.first(pieceBitboards[Piece.from(color, Role.KING).ordinal()]);
+        long queens = pieceBitboards[Piece.from(enemy, Role.QUEEN).ordinal()];
+        return (Bitboard.pawnAttacks(color, king) & pieceBitboards[Piece.from(enemy, Role.PAWN).ordinal()]) != 0
+            || (Bitboard.knightAttacks(king) & pieceBitboards[Piece.from(enemy, Role.KNIGHT).ordinal()]) != 0
+            || (Bitboard.kingAttacks(king) & pieceBitboards[Piece.from(enemy, Role.KING).ordinal()]) != 0
+            || (Bitboard.bishopAttacks(king, occupancy)
+            & (pieceBitboards[Piece.from(enemy, Role.BISHOP).ordinal()] | queens)) != 0
+            || (Bitboard.rookAttacks(king, occupancy)
+            & (pieceBitboards[Piece.from(enemy, Role.ROOK).ordinal()] | queens)) != 0;
+    }
+
+    private void appendCanonical(Color playerToMove, int castles, int enPassantIndex, StringBuilder canonical) {
+        for (int rank = 7; rank >= 0; rank--) {
+            if (rank < 7) {
+                canonical.append('/');
+            }
+            int emptySquareCount = 0;
+            for (int file = 0; file <= 7; file++) {
+                Piece piece = getPieceAt(rank * 8 + file);
+                if (piece == null) {
+                    emptySquareCount++;
+                    continue;
+                }
+                if (emptySquareCount > 0) {
+                    canonical.append(emptySquareCount);
+                    emptySquareCount = 0;
+                }
+                canonical.append(piece.getFenNotation());
+            }
+            if (emptySquareCount > 0) {
+                canonical.append(emptySquareCount);
+            }
+        }
+
+        canonical.append(' ').append(playerToMove.getNotation()).append(' ');
+        if (castles == 0) {
+            canonical.append('-');
+        }
+        for (int i = 0; i < CASTLES.length; i++) {
+            if ((castles & 1 << i) != 0) {
+                canonical.append(CASTLES[i].getFenNotation());
+            }
+        }
+        canonical.append(' ');
+        if (enPassantIndex < 0) {
+            canonical.append('-');
+        }
+        else {
+            canonical.append((char) ('a' + enPassantIndex % 8)).append((char) ('1' + enPassantIndex / 8));
+        }
+        canonical.append(" - -");
+    }
+
+    private Piece getPieceAt(int index) {
+        long squareBit = 1L << index;
+        for (Piece piece : PIECES) {
+            if ((pieceBitboards[piece.ordinal()] & squareBit) != 0) {
+                return piece;
+            }
+        }
+        return null;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int threadCount = Runtime.getRuntime().availableProcessors();
+        List<String> paths = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--threads") && i + 1 < args.length) {
+                threadCount = Integer.parseInt(args[++i]);
+            }
+            else {
+                paths.add(args[i]);
+            }
+        }
+        if (paths.size() != 2 || threadCount < 1) {
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+
+        long startNanos = System.nanoTime();
+        Summary summary = validateFile(Paths.get(paths.get(0)), Paths.get(paths.get(1)), threadCount);
+        System.out.printf(Locale.US, "%d lines, %d valid, %d invalid in %.3f s%n", summary.lineCount,
+            summary.lineCount - summary.invalidCount, summary.invalidCount, (System.nanoTime() - startNanos) / 1e9);
+    }
+
+    /**
+     * Check every line of a file of FEN records, a chunk of lines per task, and write the results in order.
+     * <p>
+     * Blank lines are skipped. Only a few chunks per thread are held in memory at once, however long the file.
+     *
+     * @param input       the file of records, one per line
+     * @param output      where the results are written, replacing anything there
+     * @param threadCount the number of threads to check chunks on at the same time
+     * @return the counts of lines checked
+     * @throws IOException          if a file can't be read or written
+     * @throws InterruptedException if interrupted while waiting for the threads
+     */
+    public static Summary validateFile(Path input, Path output, int threadCount)
+        throws IOException, InterruptedException {
+        if (threadCount < 1) {
+            throw new IllegalArgumentException("Thread count must be positive.");
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        ThreadLocal<FenValidator> validators = ThreadLocal.withInitial(FenValidator::new);
+        Queue<Future<Chunk>> pending = new ArrayDeque<>();
+        Summary summary = new Summary();
+        try (BufferedReader reader = Files.newBufferedReader(input, StandardCharsets.ISO_8859_1);
+             FileChannel channel = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                 StandardOpenOption.TRUNCATE_EXISTING)) {
+            long lineNumber = 1;
+            boolean isEndOfInput = false;
+            while (!isEndOfInput || !pending.isEmpty()) {
+                // keep every thread busy without reading far ahead of the writer
+                while (!isEndOfInput && pending.size() < threadCount * 2) {
+                    List<String> lines = new ArrayList<>(LINES_PER_CHUNK);
+                    for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                        lines.add(line);
+                        if (lines.size() == LINES_PER_CHUNK) {
+                            break;
+                        }
+                    }
+                    isEndOfInput = lines.size() < LINES_PER_CHUNK;
+                    long firstLineNumber = lineNumber;
+                    lineNumber += lines.size();
+                    if (!lines.isEmpty()) {
+                        pending.add(executor.submit(() -> validators.get().validateChunk(lines, firstLineNumber)));
+                    }
+                }
+                if (!pending.isEmpty()) {
+                    Chunk chunk = pending.remove().get();
+                    summary.lineCount += chunk.lineCount;
+                    summary.invalidCount += chunk.invalidCount;
+                    ByteBuffer buffer = StandardCharsets.ISO_8859_1.encode(CharBuffer.wrap(chunk.results));
+                    // a channel may write only part of the buffer at a time
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer);
+                    }
+                }
+            }
+        }
+        catch (ExecutionException e) {
+            throw new IllegalStateException("Validation failed", e.getCause());
+        }
+        finally {
+            executor.shutdownNow();
+        }
+        return summary;
+    }
+
+    private Chunk validateChunk(List<String> lines, long firstLineNumber) {
+        Chunk chunk = new Chunk();
+        StringBuilder results = chunk.results;
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i);
+            if (line.trim().isEmpty()) {
+                continue;
+            }
+            chunk.lineCount++;
+            results.append(firstLineNumber + i).append('\t');
+            int resultStart = results.length();
+            results.append("ok\t");
+            String error = validate(line, results);
+            if (error != null) {
+                chunk.invalidCount++;
+                results.setLength(resultStart);
+                results.append("error\t").append(error);
+            }
+            results.append('\n');
+        }
+        return chunk;
+    }
+
+    private static final class Chunk {
+        private final StringBuilder results = new StringBuilder(LINES_PER_CHUNK * 64);
+        private int lineCount;
+        private int invalidCount;
+    }
+
+    /**
+     * The counts of the lines of a file checked by {@link #validateFile}, not counting blank lines.
+     */
+    public static final class Summary {
+        private long lineCount;
+        private long invalidCount;
+
+        public long getLineCount() {
+            return lineCount;
+        }
+
+        public long getInvalidCount() {
+            return invalidCount;
+        }
+    }
+}
@@ -22,7 +22,19 @@ public class Game {
 
     private static final Map<Color, Direction> PAWN_MOVE_DIRECTIONS;
     private static final List<Direction> KNIGHT_DIRECTIONS;
+    /**
+     * The number of moves, fifty by each player, without a capture or a pawn move after which a draw can be claimed.
+     */
+    private static final int FIFTY_MOVE_PLIES = 100;
     private static String DEFAULT_STARTING_FEN = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+    /**
+     * Where every game reports measurements, which by default records nothing.
+     */
+    private static volatile MetricsSink metricsSink = MetricsSink.NONE;
+    /**
+     * Shared by every game to look up legal moves before generating them, or null to always generate them.
+     */
+    private static volatile LegalMoveCache legalMoveCache;
 
     static {
         // TODO make these part of Piece class
@@ -77,6 +89,15 @@ public class Game {
      * Contains all the possible moves of the next player to move.
      */
     private final Set<Move> nextPossibleMoves = new HashSet<>();
+    /**
+     * A read-only view of {@link #nextPossibleMoves} handed out to callers, made once so asking for it copies nothing.
+     */
+    private final Set<Move> legalMovesView = Collections.unmodifiableSet(nextPossibleMoves);
+    /**
+     * Keeps the destinations of every piece between plies, so filling in {@link #nextPossibleMoves} only works out
+     * those of the pieces a move affected.
+     */
+    private final IncrementalMoveGenerator moveGenerator = new IncrementalMoveGenerator();
     /**
      * The name of the player using the black pieces.
      */
@@ -97,6 +118,10 @@ public class Game {
      * Used to verify the correctness of a move.
      */
     private Board verificationBoard;
+    /**
+     * Used to look at the position after a move, such as when checking whether a check is checkmate.
+     */
+    private Board nextPositionBoard;
     /**
      * The next player to move.
      */
@@ -114,8 +139,79 @@ public class Game {
      */
     private Square enPassantTarget;
     private Thread moveGeneratorWorker;
+    /**
+     * Whether {@link #nextPossibleMoves} has been filled in for the current position.
+     */
     private boolean areMovesGenerated;
+    /**
+     * Whether the player to move can still make a move.
+     */
+    private GameStatus status;
+    /**
+     * Holds the {@link Bitboard} of the sources of the legal moves to each destination by each role, keyed by
+     * {@code role ordinal * 64 + destination ordinal}. Used to disambiguate algebraic notation.
+     */
+    private final long[] sourcesByRoleAndDestination = new long[Role.values().length * 64];
+    /**
+     * Whether {@link #sourcesByRoleAndDestination} has been filled in for the current position.
+     */
+    private boolean areSourcesIndexed;
+    /**
+     * Holds the {@link Bitboard} of the destinations of the legal moves from each square, by source ordinal. Filled in
+     * along with {@link #sourcesByRoleAndDestination}.
+     */
+    private final long[] destinationsBySource = new long[64];
+    /**
+     * Holds the {@link Bitboard} of the pieces attacking each square, keyed by
+     * {@code attacker color ordinal * 64 + square ordinal}. Filled in once per position when first asked for.
+     */
+    private final long[] attackersBySquare = new long[Color.values().length * 64];
+    /**
+     * Holds the {@link Bitboard} of the squares attacked by each color, by color ordinal.
+     */
+    private final long[] attackMaps = new long[Color.values().length];
+    /**
+     * Whether {@link #attackersBySquare} and {@link #attackMaps} have been filled in for the current position.
+     */
+    private boolean areAttacksMapped;
+    /**
+     * Reused to write notation that is returned as Strings.
+     */
+    private final StringBuilder notationBuffer = new StringBuilder(8);
     private boolean isGameStopped = true;
+    /**
+     * The current position, replaced after every move so other threads can read it while the game goes on. Only made
+     * when asked for, and null until then, in allocation-free mode.
+     */
+    private volatile Position snapshot;
+    private long positionHash;
+    /**
+     * Whether moves are made without allocating, as described in {@link #setAllocationFree(boolean)}.
+     */
+    private boolean isAllocationFree;
+    /**
+     * Returned for every move given as a {@link PackedMove} in allocation-free mode.
+     */
+    private final MoveResult reusableResult = new MoveResult();
+    /**
+     * The hash of every position reached since the last capture or pawn move, in order, to find repetitions. Earlier
+     * positions can't come up again. Only the first {@link #FIFTY_MOVE_PLIES} moves are kept, since a draw can be
+     * claimed by the fifty-move rule after that anyway, so the array never grows.
+     */
+    private final long[] positionHashes = new long[FIFTY_MOVE_PLIES + 1];
+    private int positionCount;
+    /**
+     * The last move made as a {@link PackedMove}, or {@link PackedMove#NONE} before the first.
+     */
+    private int lastMove = PackedMove.NONE;
+    /**
+     * Where events about the game are published, or null if nobody listens.
+     */
+    private GameEventStream eventStream;
+    /**
+     * Keeps the time of both players, or null if the game isn't timed.
+     */
+    private ChessClock clock;
 
     /**
      * Construct the Game.
@@ -133,7 +229,37 @@ public class Game {
         this.blackName = blackName;
         this.startingFen = startingFen;
         parseFen(startingFen);
-        generateMoves();
+        status = determineStatus();
+        recordPosition();
+        publishSnapshot();
+    }
+
+    /**
+     * Install where every game reports measurements of its hot paths, such as how long moves take to make.
+     * <p>
+     * Until one is installed, nothing is measured.
+     *
+     * @param sink the sink or {@link MetricsSink#NONE} to stop measuring
+     */
+    public static void setMetricsSink(MetricsSink sink) {
+        if (sink == null) {
+            throw new IllegalArgumentException("Metrics sink cannot be null.");
+        }
+        metricsSink = sink;
+    }
+
+    static MetricsSink getMetricsSink() {
+        return metricsSink;
+    }
+
+    /**
+     * Install a cache that every game looks up the legal moves of a position in before generating them, and stores
+     * them in afterwards.
+     *
+     * @param cache the cache or null to stop caching
+     */
+    public static void setLegalMoveCache(LegalMoveCache cache) {
+        legalMoveCache = cache;
     }
 
     /**
@@ -163,6 +289,7 @@ public class Game {
 
         board = tempBoard;
         verificationBoard = new Board(fenComponents[0]);
+        nextPositionBoard = new Board(fenComponents[0]);
         this.playerToMove = playerToMove;
         this.availableCastles = availableCastles;
         this.enPassantTarget = enPassantTarget;
@@ -227,18 +354,309 @@ public class Game {
 
 
     private void generateMoves() {
-        if (!nextPossibleMoves.isEmpty()) {
+        if (areMovesGenerated) {
+            return;
+        }
+        LegalMoveCache cache = legalMoveCache;
+        if (cache != null) {
+            int[] cachedMoves = cache.get(positionHash, playerToMove, board, enPassantTarget, availableCastles);
+            if (cachedMoves != null) {
+                for (int cachedMove : cachedMoves) {
+                    nextPossibleMoves.add(toMove(cachedMove));
+                }
+                areMovesGenerated = true;
+                return;
+            }
+        }
+
+        MetricsSink metrics = metricsSink;
+        if (!metrics.isEnabled()) {
+            moveGenerator.update(board);
+            moveGenerator.addLegalMoves(playerToMove, board, enPassantTarget, availableCastles, nextPossibleMoves);
+        }
+        else {
+            long startNanos = System.nanoTime();
+            moveGenerator.update(board);
+            long updatedNanos = System.nanoTime();
+            int pseudoLegalCount = moveGenerator.addLegalMoves(playerToMove, board, enPassantTarget,
+                availableCastles, nextPossibleMoves);
+            metrics.recordGeneration(positionHash, pseudoLegalCount, nextPossibleMoves.size(),
+                updatedNanos - startNanos, System.nanoTime() - updatedNanos);
+        }
+        markChecks(nextPossibleMoves, playerToMove, board, nextPositionBoard);
+        areMovesGenerated = true;
+        if (cache != null) {
+            cache.put(positionHash, playerToMove, board, enPassantTarget, availableCastles, toCachedMoves());
+        }
+    }
+
+    /**
+     * Pack the legal moves for a {@link LegalMoveCache}, along with which of them give check.
+     */
+    private int[] toCachedMoves() {
+        int[] cachedMoves = new int[nextPossibleMoves.size()];
+        int count = 0;
+        for (Move move : nextPossibleMoves) {
+            int cachedMove = PackedMove.of(move);
+            if (move.isCheck()) {
+                cachedMove |= LegalMoveCache.CHECK;
+            }
+            if (move.isCheckmate()) {
+                cachedMove |= LegalMoveCache.CHECKMATE;
+            }
+            cachedMoves[count++] = cachedMove;
+        }
+        return cachedMoves;
+    }
+
+    /**
+     * Turn a move from a {@link LegalMoveCache} back into a legal move of the player to move.
+     */
+    private Move toMove(int cachedMove) {
+        int packedMove = cachedMove & LegalMoveCache.MOVE_MASK;
+        boolean isCheck = (cachedMove & LegalMoveCache.CHECK) != 0;
+        boolean isCheckmate = (cachedMove & LegalMoveCache.CHECKMATE) != 0;
+        Square source = Square.fromIndex(PackedMove.sourceIndex(packedMove));
+        Square destination = Square.fromIndex(PackedMove.destinationIndex(packedMove));
+        Piece piece = board.getPieceOn(source);
+        Role promotion = PackedMove.promotion(packedMove);
+        if (piece.getRole() == Role.KING && Math.abs(destination.file - source.file) == 2) {
+            return destination.file > source.file ? new KingsideCastle(piece, isCheck, isCheckmate)
+                : new QueensideCastle(piece, isCheck, isCheckmate);
+        }
+        if (piece.getRole() == Role.PAWN && destination == enPassantTarget) {
+            return new EnPassant(piece, source, destination,
+                board.getPieceOn(Square.of(destination.file, source.rank)), isCheck, isCheckmate);
+        }
+        if (promotion != null) {
+            return new Promotion(piece, source, destination, Piece.from(piece.getColor(), promotion),
+                board.getPieceOn(destination), isCheck, isCheckmate);
+        }
+        return new NormalMove(piece, source, destination, board.getPieceOn(destination), isCheck, isCheckmate);
+    }
+
+    /**
+     * Generates every legal move of a player in the specified position.
+     * <p>
+     * This doesn't depend on the state of a Game, so it can be used on positions other than the current one.
+     *
+     * @param color             the player to generate moves for
+     * @param board             the position of the pieces, which is left unchanged
+     * @param enPassantTarget   the square that can be moved to in an en passant or null if there is none
+     * @param availableCastles  the castles still available, as described in {@link #parseCastlingAvailability}
+     * @param verificationBoard scratch space used to verify the legality of moves
+     * @param moves             where the legal moves are added
+     */
+    static void generateLegalMoves(Color color, Board board, Square enPassantTarget, Set<Piece> availableCastles,
+        Board verificationBoard, Collection<Move> moves) {
+        MetricsSink metrics = metricsSink;
+        long startNanos = metrics.isEnabled() ? System.nanoTime() : 0;
+        moves.addAll(generateBishopMoves(color, board));
+        moves.addAll(generateRookMoves(color, board));
+        moves.addAll(generateKnightMoves(color, board));
+        moves.addAll(generateQueenMoves(color, board));
+        moves.addAll(generateKingMoves(color, board));
+        moves.addAll(generatePawnMoves(color, board, enPassantTarget));
+        moves.addAll(generateCastles(color, board, availableCastles));
+
+        if (!metrics.isEnabled()) {
+            filterOutIllegalMoves(moves, board, verificationBoard);
+            return;
+        }
+        long generatedNanos = System.nanoTime();
+        int pseudoLegalCount = moves.size();
+        filterOutIllegalMoves(moves, board, verificationBoard);
+        long filteringNanos = System.nanoTime() - generatedNanos;
+        metrics.recordGeneration(Zobrist.hash(color, board, enPassantTarget, availableCastles), pseudoLegalCount,
+            moves.size(), generatedNanos - startNanos, filteringNanos);
+    }
+
+    /**
+     * Determine whether the player to move can continue the game.
+     * <p>
+     * This stops at the first legal move it finds instead of generating every move, and only looks at whether the
+     * king is in check once it knows there are no legal moves.
+     *
+     * @return the {@link GameStatus} of the player to move
+     */
+    private GameStatus determineStatus() {
+        if (hasAnyLegalMove(playerToMove, board, enPassantTarget)) {
+            return GameStatus.IN_PROGRESS;
+        }
+        return isKingInCheck(playerToMove, board) ? GameStatus.CHECKMATE : GameStatus.STALEMATE;
+    }
+
+    Board getBoard() {
+        return board;
+    }
+
+    Color getPlayerToMove() {
+        return playerToMove;
+    }
+
+    Square getEnPassantTarget() {
+        return enPassantTarget;
+    }
+
+    Set<Piece> getAvailableCastles() {
+        return availableCastles;
+    }
+
+    /**
+     * Get the state of the game from the point of view of the player to move.
+     *
+     * @return whether the game is still in progress or how it ended
+     */
+    public GameStatus getStatus() {
+        return status;
+    }
+
+    /**
+     * Checks whether the player to move has any legal capture, including en passant.
+     * <p>
+     * Only captures are generated, and the search stops at the first legal one.
+     *
+     * @return whether the player to move can capture something
+     */
+    public boolean hasLegalCapture() {
+        List<Move> captures = new ArrayList<>();
+        StagedMoveGenerator.generateCaptures(playerToMove, board, enPassantTarget, board.getOccupancy(), captures);
+        return containsLegalMove(captures, board, verificationBoard);
+    }
+
+    /**
+     * Get the pieces of a color that attack a square in the current position, which are its defenders if the square
+     * holds a piece of the same color.
+     * <p>
+     * Only direct attacks count, so a piece lined up behind another one isn't included. Whether moving the attacker
+     * would leave its own king in check doesn't matter either.
+     *
+     * @param square the square
+     * @param color  the color of the attackers
+     * @return the squares of the attackers, with bit {@code n} set for the square with index {@code n} as described in
+     * {@link PackedMove}
+     */
+    public long attackersOf(Square square, Color color) {
+        if (square == null || color == null) {
+            throw new IllegalArgumentException("Square and color cannot be null.");
+        }
+        mapAttacks();
+        return attackersBySquare[color.ordinal() * 64 + square.ordinal()];
+    }
+
+    /**
+     * Get every square attacked by the pieces of a color in the current position, as described in
+     * {@link #attackersOf(Square, Color)}.
+     *
+     * @param color the color of the attackers
+     * @return the attacked squares, with bit {@code n} set for the square with index {@code n}
+     */
+    public long attackMap(Color color) {
+        if (color == null) {
+            throw new IllegalArgumentException("Color cannot be null.");
+        }
+        mapAttacks();
+        return attackMaps[color.ordinal()];
+    }
+
+    /**
+     * Get the pieces of a color other than the king that are attacked by the enemy and not defended.
+     *
+     * @param color the color of the pieces
+     * @return the squares of the pieces, with bit {@code n} set for the square with index {@code n}
+     */
+    public long hangingPieces(Color color) {
+        if (color == null) {
+            throw new IllegalArgumentException("Color cannot be null.");
+        }
+        mapAttacks();
+        long pieces = board.getOccupancy(color) & ~board.getBitboard(Piece.from(color, Role.KING));
+        return pieces & attackMaps[color.opposite().ordinal()] & ~attackMaps[color.ordinal()];
+    }
+
+    /**
+     * Works out the attacks of every piece once per position.
+     */
+    private void mapAttacks() {
+        if (areAttacksMapped) {
             return;
         }
-        nextPossibleMoves.addAll(generateBishopMoves(playerToMove, board));
-        nextPossibleMoves.addAll(generateRookMoves(playerToMove, board));
-        nextPossibleMoves.addAll(generateKnightMoves(playerToMove, board));
-        nextPossibleMoves.addAll(generateQueenMoves(playerToMove, board));
-        nextPossibleMoves.addAll(generateKingMoves(playerToMove, board));
-        nextPossibleMoves.addAll(generatePawnMoves(playerToMove, board, enPassantTarget));
-        nextPossibleMoves.addAll(generateCastles(playerToMove, board, availableCastles));
+        Arrays.fill(attackersBySquare, 0L);
+        Arrays.fill(attackMaps, 0L);
+        long occupancy = board.getOccupancy();
+        for (long pieces = occupancy; pieces != 0; pieces &= pieces - 1) {
+            Square source = Bitboard.first(pieces);
+            Piece piece = board.getPieceOn(source);
+            int colorOrdinal = piece.getColor().ordinal();
+            long attacks = Bitboard.attacks(piece.getRole(), piece.getColor(), source, occupancy);
+            attackMaps[colorOrdinal] |= attacks;
+            for (; attacks != 0; attacks &= attacks - 1) {
+                attackersBySquare[colorOrdinal * 64 + Long.numberOfTrailingZeros(attacks)] |= Bitboard.of(source);
+            }
+        }
+        areAttacksMapped = true;
+    }
+
+    /**
+     * Work out the material result of the exchange of captures a move starts on its destination.
+     * <p>
+     * After the move, each player in turn captures on the destination with their least valuable piece, or stops when
+     * capturing would lose material. Pieces lined up behind the capturing pieces join in as the way clears. No moves
+     * are made, and pins are not taken into account.
+     *
+     * @param move a move of the player to move in the current position
+     * @return the material the player to move gains in centipawns, negative if they lose material
+     */
+    public int staticExchange(Move move) {
+        if (move == null || board.getPieceOn(move.getSource()) != move.getMovingPiece()
+            || move.getMovingPiece().getColor() != playerToMove) {
+            throw new IllegalArgumentException("Move doesn't belong to the current position: " + move);
+        }
+        return StaticExchange.evaluate(move, board);
+    }
+
+    /**
+     * Find the result of the current position with best play, if it is known without searching.
+     * <p>
+     * Besides finished games, this covers king and pawn, rook or queen against a lone king, which are looked up in
+     * {@link Bitbases}, and positions without enough material to checkmate.
+     *
+     * @return the result for the player to move or {@link Adjudication#UNKNOWN} if it isn't known
+     */
+    public Adjudication adjudicate() {
+        if (status == GameStatus.CHECKMATE) {
+            return Adjudication.LOSS;
+        }
+        if (status == GameStatus.STALEMATE) {
+            return Adjudication.DRAW;
+        }
+        if (status == GameStatus.OUT_OF_TIME) {
+            // the stopped clock still shows the side whose flag fell, which may have just moved
+            return clock.isWhiteRunning() == (playerToMove == Color.WHITE) ? Adjudication.LOSS : Adjudication.WIN;
+        }
+        return Bitbases.probe(board, playerToMove);
+    }
+
+    /**
+     * Get the Zobrist hash of the current position.
+     * <p>
+     * Positions with the same pieces, player to move, available castles and en passant target have the same hash.
+     *
+     * @return the hash of the position
+     */
+    public long getPositionHash() {
+        return positionHash;
+    }
 
-        filterOutIllegalMoves(nextPossibleMoves, board, verificationBoard);
+    /**
+     * Evaluate the current position statically, by the material and placement of the pieces.
+     * <p>
+     * The scores of the pieces are kept up to date as they move, so this doesn't look at the board.
+     *
+     * @return the score in centipawns from the point of view of the player to move, positive if they're better off
+     */
+    public int evaluate() {
+        return Evaluation.evaluate(board, playerToMove);
     }
 
     /**
@@ -247,7 +665,21 @@ public class Game {
      * @param moveNotation algebraic notation describing the desired move to make
      */
     public MoveResult move(String moveNotation) {
+        MetricsSink metrics = metricsSink;
+        if (!metrics.isEnabled()) {
+            return moveByNotation(moveNotation);
+        }
+        long hashBefore = positionHash;
+        long startNanos = System.nanoTime();
+        MoveResult result = moveByNotation(moveNotation);
+        long nanos = System.nanoTime() - startNanos;
+        metrics.recordMove(hashBefore, result.hasErrors() ? PackedMove.NONE : lastMove, nanos);
+        return result;
+    }
+
+    private MoveResult moveByNotation(String moveNotation) {
         MoveResult result = new MoveResult();
+        result.setStatus(status);
         InterpretedNotation parsedMove;
         try {
             parsedMove = NotationParser.parseMove(moveNotation);
@@ -257,60 +689,481 @@ public class Game {
             result.addError(errorMessage);
             return result;
         }
-
+        if (isOutOfTime(result)) {
+            return result;
+        }
 
         Optional<Move> foundMove = getMove(parsedMove);
         if (!foundMove.isPresent()) {
+            metricsSink.countIllegalMove();
             result.addError("No such move: " + moveNotation);
-            nextPossibleMoves.clear();
             return result;
         }
 
-        Move moveToMake = foundMove.get();
-        moveToMake.makeMoveOnBoard(board);
-        if (moveToMake instanceof KingsideCastle || moveToMake instanceof QueensideCastle) {
-            availableCastles.remove(Piece.from(playerToMove, Role.KING));
-            availableCastles.remove(Piece.from(playerToMove, Role.QUEEN));
+        makeMove(foundMove.get(), result);
+        return result;
+    }
+
+    /**
+     * Make the specified move given in UCI long algebraic notation.
+     * <p>
+     * The move is looked up directly by its source and destination squares instead of being parsed as algebraic
+     * notation and matched against every legal move.
+     *
+     * @param uciMove the move, such as {@code e2e4}, {@code e1g1} or {@code e7e8q}
+     */
+    public MoveResult moveUci(CharSequence uciMove) {
+        int packedMove = PackedMove.parseUci(uciMove);
+        if (packedMove == PackedMove.NONE) {
+            MoveResult result = new MoveResult();
+            result.setStatus(status);
+            result.addError("Not a valid UCI move: " + uciMove);
+            return result;
         }
-        if (moveToMake.getMovingPiece().getRole() == Role.KING) {
-            availableCastles.remove(Piece.from(playerToMove, Role.KING));
-            availableCastles.remove(Piece.from(playerToMove, Role.QUEEN));
+        return moveUci(packedMove);
+    }
+
+    /**
+     * Make the specified move given as a {@link PackedMove}.
+     *
+     * @param packedMove the source, destination and promotion of the move packed by {@link PackedMove}
+     */
+    public MoveResult moveUci(int packedMove) {
+        MetricsSink metrics = metricsSink;
+        if (!metrics.isEnabled()) {
+            return moveByPackedMove(packedMove);
         }
-        Square moveSource = moveToMake.getSource();
-        if (moveSource == Square.of(0, playerToMove.backRank())) {
-            availableCastles.remove(Piece.from(playerToMove, Role.QUEEN));
+        long hashBefore = positionHash;
+        long startNanos = System.nanoTime();
+        MoveResult result = moveByPackedMove(packedMove);
+        long nanos = System.nanoTime() - startNanos;
+        metrics.recordMove(hashBefore, result.hasErrors() ? PackedMove.NONE : lastMove, nanos);
+        return result;
+    }
+
+    private MoveResult moveByPackedMove(int packedMove) {
+        MoveResult result;
+        if (isAllocationFree) {
+            result = reusableResult;
+            result.clear();
         }
-        if (moveSource == Square.of(7, playerToMove.backRank())) {
-            availableCastles.remove(Piece.from(playerToMove, Role.KING));
+        else {
+            result = new MoveResult();
         }
-
-        int opponentBackRank = playerToMove.opposite().backRank();
-        Square moveDestination = moveToMake.getDestination();
-        if (moveDestination == Square.of(0, opponentBackRank)) {
-            availableCastles.remove(Piece.from(playerToMove.opposite(), Role.QUEEN));
+        result.setStatus(status);
+        if (isOutOfTime(result)) {
+            return result;
         }
-        if (moveDestination == Square.of(7, opponentBackRank)) {
-            availableCastles.remove(Piece.from(playerToMove.opposite(), Role.KING));
+        if (!PackedMove.isValid(packedMove)) {
+            metricsSink.countIllegalMove();
+            result.addError(String.format("Not a packed move: %d", packedMove));
+            return result;
         }
-        enPassantTarget = null;
-        if (moveToMake.getMovingPiece().getRole() == Role.PAWN
-            && Math.abs(moveToMake.getDestination().rank - moveToMake.getSource().rank) == 2) {
-            int rankOfEnPassantTarget = (moveToMake.getDestination().rank + moveToMake.getSource().rank) / 2;
-            enPassantTarget = Square.of(moveToMake.getDestination().file, rankOfEnPassantTarget);
+        // the move is checked on its own instead of being looked up among every legal move
+        if (!MoveRules.isLegal(packedMove, playerToMove, board, enPassantTarget, availableCastles)) {
+            metricsSink.countIllegalMove();
+            result.addError("No such move: " + PackedMove.toUci(packedMove));
+            return result;
         }
+
+        makeMove(packedMove, result);
+        return result;
+    }
+
+    /**
+     * Checks whether the player to move has run out of time before making a move.
+     *
+     * @param result where the move is refused if so
+     * @return whether the player to move has run out of time
+     */
+    private boolean isOutOfTime(MoveResult result) {
+        if (!checkFlag() && status != GameStatus.OUT_OF_TIME) {
+            return false;
+        }
+        result.setStatus(status);
+        result.addError("Time has run out");
+        return true;
+    }
+
+    /**
+     * Make a legal move and update the state of the game to the next player's turn.
+     *
+     * @param moveToMake a legal move of the player to move
+     * @param result     where the state of the game after the move is reported
+     */
+    private void makeMove(Move moveToMake, MoveResult result) {
+        boolean isIrreversible = moveToMake.getMovingPiece().getRole() == Role.PAWN
+            || board.getPieceOn(moveToMake.getDestination()) != null;
+        lastMove = PackedMove.of(moveToMake);
+        moveToMake.makeMoveOnBoard(board);
+        updateAvailableCastles(moveToMake, playerToMove, availableCastles);
+        enPassantTarget = getEnPassantTargetAfter(moveToMake);
+        finishMove(result, isIrreversible);
+    }
+
+    /**
+     * Make a legal move given as a {@link PackedMove} without allocating.
+     *
+     * @param packedMove a legal move of the player to move
+     * @param result     where the state of the game after the move is reported
+     */
+    private void makeMove(int packedMove, MoveResult result) {
+        Square source = Square.fromIndex(PackedMove.sourceIndex(packedMove));
+        Square destination = Square.fromIndex(PackedMove.destinationIndex(packedMove));
+        boolean isIrreversible = board.getPieceOn(source).getRole() == Role.PAWN
+            || board.getPieceOn(destination) != null;
+        Square nextEnPassantTarget = MoveRules.getEnPassantTargetAfter(packedMove, board);
+        lastMove = packedMove;
+        MoveRules.makeMove(packedMove, board, enPassantTarget);
+        MoveRules.updateAvailableCastles(packedMove, availableCastles);
+        enPassantTarget = nextEnPassantTarget;
+        finishMove(result, isIrreversible);
+    }
+
+    /**
+     * Update the state of the game to the next player's turn once a move has been made on the board.
+     *
+     * @param isIrreversible whether the move was a capture or a pawn move, after which no earlier position can repeat
+     */
+    private void finishMove(MoveResult result, boolean isIrreversible) {
         playerToMove = playerToMove.opposite();
+        if (isIrreversible) {
+            positionCount = 0;
+        }
 
+        // the full set of moves isn't needed until the next move is looked up
         nextPossibleMoves.clear();
-        generateMoves();
-        if (nextPossibleMoves.isEmpty()) {
+        areMovesGenerated = false;
+        areSourcesIndexed = false;
+        areAttacksMapped = false;
+        status = determineStatus();
+        if (clock != null) {
+            if (status.isGameOver()) {
+                clock.stop();
+            }
+            else if (!clock.press()) {
+                // the mover's flag fell during the move, which still stands
+                status = GameStatus.OUT_OF_TIME;
+                result.addWarning("Time has run out");
+            }
+        }
+        result.setStatus(status);
+        if (status == GameStatus.CHECKMATE) {
             result.addWarning("Checkmate!");
         }
-        return result;
+        else if (status == GameStatus.STALEMATE) {
+            result.addWarning("Stalemate!");
+        }
+        recordPosition();
+        publishSnapshot();
+
+        if (eventStream != null) {
+            eventStream.publish(GameEventType.MOVE_APPLIED, lastMove, positionHash, status);
+            if (status == GameStatus.CHECKMATE || isKingInCheck(playerToMove, board)) {
+                eventStream.publish(GameEventType.CHECK, lastMove, positionHash, status);
+            }
+            if (status.isGameOver()) {
+                eventStream.publish(GameEventType.GAME_OVER, lastMove, positionHash, status);
+            }
+        }
+    }
+
+    /**
+     * Hash the position reached by a move and add it to the repetition history.
+     */
+    private void recordPosition() {
+        positionHash = Zobrist.hash(playerToMove, board, enPassantTarget, availableCastles);
+        if (positionCount < positionHashes.length) {
+            positionHashes[positionCount++] = positionHash;
+        }
+    }
+
+    /**
+     * Replace the snapshot read by other threads, after a move or a change of status.
+     */
+    private void publishSnapshot() {
+        snapshot = isAllocationFree ? null
+            : new Position(board, playerToMove, availableCastles, enPassantTarget, status, positionHash);
+    }
+
+    /**
+     * Claim a draw by threefold repetition or the fifty-move rule for the player to move.
+     * <p>
+     * The claim is valid if the current position has occurred at least three times, or if each player has made fifty
+     * moves without a capture or a pawn move. A valid claim is published as a {@link GameEventType#DRAW_CLAIM} event.
+     * The game itself goes on, so ending it is up to the caller.
+     *
+     * @return whether the claim is valid
+     */
+    public boolean claimDraw() {
+        int occurrences = 0;
+        for (int i = 0; i < positionCount; i++) {
+            if (positionHashes[i] == positionHash) {
+                occurrences++;
+            }
+        }
+        // a full history means fifty moves by each player since the last capture or pawn move
+        if (occurrences < 3 && positionCount < positionHashes.length) {
+            return false;
+        }
+        if (eventStream != null) {
+            eventStream.publish(GameEventType.DRAW_CLAIM, PackedMove.NONE, positionHash, status);
+        }
+        return true;
+    }
+
+    /**
+     * End the game if the player to move has run out of time.
+     * <p>
+     * Running out of time is also noticed when the player next tries to move, but a timer should call this at the
+     * {@link ChessClock}'s deadline so the game ends without waiting for that.
+     *
+     * @return whether the game has just ended on time
+     */
+    public boolean checkFlag() {
+        if (clock == null || status.isGameOver() || !clock.isFlagged()) {
+            return false;
+        }
+        clock.stop();
+        status = GameStatus.OUT_OF_TIME;
+        publishSnapshot();
+        if (eventStream != null) {
+            eventStream.publish(GameEventType.GAME_OVER, PackedMove.NONE, positionHash, status);
+        }
+        return true;
+    }
+
+    /**
+     * Time the game with a clock, which is started for the player to move.
+     *
+     * @param clock the clock, which mustn't be used by another game
+     */
+    public void setClock(ChessClock clock) {
+        if (clock == null) {
+            throw new IllegalArgumentException("Clock cannot be null.");
+        }
+        if (this.clock != null) {
+            this.clock.stop();
+        }
+        this.clock = clock;
+        if (!status.isGameOver()) {
+            clock.start(playerToMove == Color.WHITE);
+        }
+    }
+
+    /**
+     * Get the clock timing the game.
+     *
+     * @return the clock or null if the game isn't timed
+     */
+    public ChessClock getClock() {
+        return clock;
+    }
+
+    /**
+     * Set where events about the game are published.
+     * <p>
+     * Events are published on the thread making the moves, which waits if the stream is full.
+     *
+     * @param eventStream the stream or null to stop publishing events
+     */
+    public void setEventStream(GameEventStream eventStream) {
+        this.eventStream = eventStream;
+    }
+
+    public GameEventStream getEventStream() {
+        return eventStream;
+    }
+
+    /**
+     * Get an immutable snapshot of the current position.
+     * <p>
+     * This can be called from any thread while the game goes on: it returns the position as of the last move
+     * finished, without locking. The snapshot doesn't change when more moves are made. In allocation-free mode, the
+     * snapshot is only made when this is called, so it must be called by the thread making the moves.
+     *
+     * @return the current position
+     */
+    public Position snapshot() {
+        Position position = snapshot;
+        if (position == null) {
+            position = new Position(board, playerToMove, availableCastles, enPassantTarget, status, positionHash);
+            snapshot = position;
+        }
+        return position;
+    }
+
+    /**
+     * Switch allocation-free mode on or off.
+     * <p>
+     * In allocation-free mode, a legal move given to {@link #moveUci(int)} allocates nothing once the game has
+     * warmed up, so making moves doesn't add to garbage collection. To get there, {@link #moveUci(int)} returns the
+     * same {@link MoveResult} every time, which only describes the last move, and no {@link Position} is made after a
+     * move until {@link #snapshot()} asks for one. Metrics, events and clocks may still allocate if used.
+     *
+     * @param isAllocationFree whether moves should be made without allocating
+     */
+    public void setAllocationFree(boolean isAllocationFree) {
+        this.isAllocationFree = isAllocationFree;
+        if (!isAllocationFree) {
+            snapshot();
+        }
+    }
+
+    /**
+     * Get the standard algebraic notation (SAN) of a legal move of the player to move.
+     * <p>
+     * The notation names the source square only as much as needed to tell the move apart from the other legal moves,
+     * and ends with {@code +} or {@code #} if the move gives check or checkmate.
+     *
+     * @param move a legal move in the current position
+     * @return the SAN of the move
+     */
+    public String toSan(Move move) {
+        notationBuffer.setLength(0);
+        appendSan(move, notationBuffer);
+        return notationBuffer.toString();
+    }
+
+    /**
+     * Write the standard algebraic notation (SAN) of a legal move of the player to move.
+     *
+     * @param move     a legal move in the current position
+     * @param notation where to write the SAN
+     * @see #toSan(Move)
+     */
+    public void appendSan(Move move, StringBuilder notation) {
+        generateMoves();
+        if (!nextPossibleMoves.contains(move)) {
+            throw new IllegalArgumentException("Not a legal move in the current position: " + move);
+        }
+        indexSources();
+        NotationWriter.appendSan(move, getSourcesOfSameMoves(move), notation);
+    }
+
+    /**
+     * Get the standard algebraic notation (SAN) of every legal move of the player to move.
+     *
+     * @return the SAN of each legal move, in no particular order
+     */
+    public List<String> legalMovesAsSan() {
+        generateMoves();
+        indexSources();
+        List<String> notations = new ArrayList<>(nextPossibleMoves.size());
+        for (Move move : nextPossibleMoves) {
+            notationBuffer.setLength(0);
+            NotationWriter.appendSan(move, getSourcesOfSameMoves(move), notationBuffer);
+            notations.add(notationBuffer.toString());
+        }
+        return notations;
+    }
+
+    /**
+     * Write the standard algebraic notation (SAN) of every legal move of the player to move, each followed by a
+     * separator.
+     *
+     * @param notation  where to write the SANs
+     * @param separator written after each SAN
+     * @return the number of moves written
+     */
+    public int appendLegalMovesAsSan(StringBuilder notation, char separator) {
+        generateMoves();
+        indexSources();
+        for (Move move : nextPossibleMoves) {
+            NotationWriter.appendSan(move, getSourcesOfSameMoves(move), notation);
+            notation.append(separator);
+        }
+        return nextPossibleMoves.size();
+    }
+
+    /**
+     * Get the legal moves of the player to move.
+     *
+     * @return a read-only view of the moves, which changes as moves are made
+     */
+    public Set<Move> legalMoves() {
+        generateMoves();
+        return legalMovesView;
+    }
+
+    /**
+     * Get the destinations of the legal moves of the piece on a square. A castle is given as the king's destination.
+     *
+     * @param source the square
+     * @return the destinations, with bit {@code n} set for the square with index {@code n} as described in
+     * {@link PackedMove}, which is 0 if the square holds no piece of the player to move
+     */
+    public long legalMovesFrom(Square source) {
+        if (source == null) {
+            throw new IllegalArgumentException("Source cannot be null.");
+        }
+        generateMoves();
+        indexSources();
+        return destinationsBySource[source.ordinal()];
+    }
+
+    /**
+     * Checks whether the player to move can legally move the piece on one square to another.
+     *
+     * @param source      the square of the piece
+     * @param destination where it goes, which is the king's destination for a castle
+     * @return whether there is a legal move, counting a promotion to any piece as one
+     */
+    public boolean isLegal(Square source, Square destination) {
+        if (destination == null) {
+            throw new IllegalArgumentException("Destination cannot be null.");
+        }
+        return (legalMovesFrom(source) & Bitboard.of(destination)) != 0;
+    }
 
+    /**
+     * Checks whether a move is legal for the player to move.
+     *
+     * @param packedMove the move as a {@link PackedMove}, which must name the piece promoted to if and only if a pawn
+     *                   moves to the last rank
+     * @return whether the move is legal
+     */
+    public boolean isLegal(int packedMove) {
+        if (!PackedMove.isValid(packedMove)) {
+            return false;
+        }
+        Square source = Square.fromIndex(PackedMove.sourceIndex(packedMove));
+        Square destination = Square.fromIndex(PackedMove.destinationIndex(packedMove));
+        if (!isLegal(source, destination)) {
+            return false;
+        }
+        boolean isPromotion = board.getPieceOn(source).getRole() == Role.PAWN
+            && destination.rank == playerToMove.opposite().backRank();
+        return isPromotion == (PackedMove.promotion(packedMove) != null);
+    }
 
+    /**
+     * Groups the sources of the legal moves by moving role and destination, and their destinations by source, once
+     * per position.
+     */
+    private void indexSources() {
+        if (areSourcesIndexed) {
+            return;
+        }
+        Arrays.fill(sourcesByRoleAndDestination, 0L);
+        Arrays.fill(destinationsBySource, 0L);
+        for (Move move : nextPossibleMoves) {
+            sourcesByRoleAndDestination[sourceIndexKey(move)] |= Bitboard.of(move.getSource());
+            destinationsBySource[move.getSource().ordinal()] |= Bitboard.of(move.getDestination());
+        }
+        areSourcesIndexed = true;
+    }
+
+    private long getSourcesOfSameMoves(Move move) {
+        return sourcesByRoleAndDestination[sourceIndexKey(move)];
+    }
+
+    private static int sourceIndexKey(Move move) {
+        return move.getMovingPiece().getRole().ordinal() * 64 + move.getDestination().ordinal();
     }
 
     private Optional<Move> getMove(InterpretedNotation parsedMove) {
+        generateMoves();
         Set<Move> matchedMoves =
             nextPossibleMoves.stream().filter(move -> move.isAMatch(parsedMove)).collect(Collectors.toSet());
 
@@ -323,9 +1176,62 @@ public class Game {
     }
 
 
-    private static boolean isKingInCheck(Color color, Board activeBoard) {
-        Square kingLocation = activeBoard.getPieceLocations(Piece.from(color, Role.KING)).iterator().next();
-        return isAttackedByAnyEnemy(kingLocation, Color.oppositeOf(color), activeBoard);
+    /**
+     * Removes the castles that are no longer available after the specified move is made.
+     * <p>
+     * A castle is lost when the king or the rook involved moves, or when the rook is captured.
+     *
+     * @param move             the move being made
+     * @param mover            the player making the move
+     * @param availableCastles the castles available before the move, which is updated in place
+     */
+    static void updateAvailableCastles(Move move, Color mover, Set<Piece> availableCastles) {
+        if (availableCastles.isEmpty()) {
+            return;
+        }
+        if (move instanceof KingsideCastle || move instanceof QueensideCastle) {
+            availableCastles.remove(Piece.from(mover, Role.KING));
+            availableCastles.remove(Piece.from(mover, Role.QUEEN));
+        }
+        if (move.getMovingPiece().getRole() == Role.KING) {
+            availableCastles.remove(Piece.from(mover, Role.KING));
+            availableCastles.remove(Piece.from(mover, Role.QUEEN));
+        }
+        Square moveSource = move.getSource();
+        if (moveSource == Square.of(0, mover.backRank())) {
+            availableCastles.remove(Piece.from(mover, Role.QUEEN));
+        }
+        if (moveSource == Square.of(7, mover.backRank())) {
+            availableCastles.remove(Piece.from(mover, Role.KING));
+        }
+
+        int opponentBackRank = mover.opposite().backRank();
+        Square moveDestination = move.getDestination();
+        if (moveDestination == Square.of(0, opponentBackRank)) {
+            availableCastles.remove(Piece.from(mover.opposite(), Role.QUEEN));
+        }
+        if (moveDestination == Square.of(7, opponentBackRank)) {
+            availableCastles.remove(Piece.from(mover.opposite(), Role.KING));
+        }
+    }
+
+    /**
+     * Gets the square that can be moved to in an en passant after the specified move is made.
+     *
+     * @return the square skipped over by a pawn moving two squares or null if the move isn't one
+     */
+    static Square getEnPassantTargetAfter(Move move) {
+        if (move.getMovingPiece().getRole() == Role.PAWN
+            && Math.abs(move.getDestination().rank - move.getSource().rank) == 2) {
+            int rankOfEnPassantTarget = (move.getDestination().rank + move.getSource().rank) / 2;
+            return Square.of(move.getDestination().file, rankOfEnPassantTarget);
+        }
+        return null;
+    }
+
+    static boolean isKingInCheck(Color color, Board activeBoard) {
+        Square kingLocation = activeBoard.getKingLocation(color);
+        return isAttackedByAnyEnemy(kingLocation, color.opposite(), activeBoard);
     }
 
 
@@ -334,7 +1240,8 @@ public class Game {
         return isKingInCheck(move.getMovingPiece().getColor(), activeBoard);
     }
 
-    private static void filterOutIllegalMoves(Set<Move> moves, final Board actualBoard, Board verificationBoard) {
+    static void filterOutIllegalMoves(Collection<Move> moves, final Board actualBoard,
+        Board verificationBoard) {
         for (Iterator<Move> moveIterator = moves.iterator(); moveIterator.hasNext(); ) {
             Move move = moveIterator.next();
             verificationBoard.replaceBoardWith(actualBoard);
@@ -344,53 +1251,82 @@ public class Game {
         }
     }
 
-    private static boolean isAttackedByAnyEnemy(Square target, Color enemyPlayer, Board activeBoard) {
-        for (Move move : generateRookMoves(enemyPlayer, activeBoard)) {
-            if (move.getDestination() == target) {
-                return true;
-            }
-        }
-        for (Move move : generateKnightMoves(enemyPlayer, activeBoard)) {
-            if (move.getDestination() == target) {
-                return true;
-            }
-        }
-        for (Move move : generateBishopMoves(enemyPlayer, activeBoard)) {
-            if (move.getDestination() == target) {
-                return true;
-            }
-        }
-        for (Move move : generateQueenMoves(enemyPlayer, activeBoard)) {
-            if (move.getDestination() == target) {
-                return true;
+    /**
+     * Replaces each move that gives check with a copy that is marked as such, and as checkmate if the enemy has no
+     * legal reply.
+     * <p>
+     * Telling whether a move gives check is a lookup in a {@link CheckInfo} built once for the position, so only the
+     * moves that do give check are made on a board to look for a reply.
+     *
+     * @param moves the legal moves of the mover
+     */
+    private static void markChecks(Set<Move> moves, Color mover, final Board actualBoard, Board nextPositionBoard) {
+        CheckInfo checkInfo = new CheckInfo(mover, actualBoard);
+        List<Move> checks = new ArrayList<>();
+        for (Iterator<Move> moveIterator = moves.iterator(); moveIterator.hasNext(); ) {
+            Move move = moveIterator.next();
+            if (checkInfo.givesCheck(move, actualBoard)) {
+                checks.add(move);
+                moveIterator.remove();
             }
         }
-        for (Move move : generatePawnMoves(enemyPlayer, activeBoard, null)) {
-            if (move.getDestination() == target) {
-                return true;
-            }
+
+        for (Move check : checks) {
+            nextPositionBoard.replaceBoardWith(actualBoard);
+            check.makeMoveOnBoard(nextPositionBoard);
+            boolean isCheckmate = !hasAnyLegalMove(mover.opposite(), nextPositionBoard, getEnPassantTargetAfter(check));
+            moves.add(check.withCheck(isCheckmate));
         }
-        for (Move move : generateKingMoves(enemyPlayer, activeBoard)) {
-            if (move.getDestination() == target) {
+    }
+
+    /**
+     * Checks whether any of the specified player's moves can capture on the target square.
+     * <p>
+     * Rather than generating the enemy's moves, this looks up the squares each kind of piece attacks the target from
+     * in {@link Bitboard}s and checks for an enemy piece of that kind on them.
+     */
+    private static boolean isAttackedByAnyEnemy(Square target, Color enemyPlayer, Board activeBoard) {
+        return MoveRules.isAttacked(target, enemyPlayer, activeBoard, activeBoard.getOccupancy(), 0);
+    }
+
+    /**
+     * Checks whether the specified player has at least one legal move, stopping at the first one found.
+     */
+    private static boolean hasAnyLegalMove(Color color, Board actualBoard, Square enPassantTarget) {
+        return MoveRules.hasAnyLegalMove(color, actualBoard, enPassantTarget);
+    }
+
+    private static boolean containsLegalMove(Collection<Move> moves, final Board actualBoard, Board verificationBoard) {
+        for (Move move : moves) {
+            verificationBoard.replaceBoardWith(actualBoard);
+            if (!willOwnKingBeInCheckAfterMove(move, verificationBoard)) {
                 return true;
             }
         }
-        // none of enemy's moves attack the target
         return false;
     }
 
 
-    private static Set<Move> generateCastles(Color kingColor, Board targetBoard, Set<Piece> availableCastles) {
+    static Set<Move> generateCastles(Color kingColor, Board targetBoard, Set<Piece> availableCastles) {
         Piece king = Piece.from(kingColor, Role.KING);
+        Piece rook = Piece.from(kingColor, Role.ROOK);
         Set<Move> possibleMoves = new HashSet<>();
 
+        // a king can't castle out of check, and the FEN may claim castles for a king that isn't on its square
+        Square kingSquare = Square.of(4, kingColor.backRank());
+        if (targetBoard.getPieceOn(kingSquare) != king
+            || isAttackedByAnyEnemy(kingSquare, kingColor.opposite(), targetBoard)) {
+            return possibleMoves;
+        }
+
         // create a kingside castle if it exists
         Square kingsidePathFirst = Square.of(5, kingColor.backRank());
         Square kingsidePathSecond = Square.of(6, kingColor.backRank());
-        if (availableCastles.contains(king) && targetBoard.getPieceOn(kingsidePathFirst) == null
+        if (availableCastles.contains(king) && targetBoard.getPieceOn(Square.of(7, kingColor.backRank())) == rook
+            && targetBoard.getPieceOn(kingsidePathFirst) == null
             && targetBoard.getPieceOn(kingsidePathSecond) == null
-            && !isAttackedByAnyEnemy(kingsidePathFirst, Color.oppositeOf(kingColor), targetBoard)
-            && !isAttackedByAnyEnemy(kingsidePathSecond, Color.oppositeOf(kingColor), targetBoard)) {
+            && !isAttackedByAnyEnemy(kingsidePathFirst, kingColor.opposite(), targetBoard)
+            && !isAttackedByAnyEnemy(kingsidePathSecond, kingColor.opposite(), targetBoard)) {
             possibleMoves.add(new KingsideCastle(king, false, false));
         }
 
@@ -399,10 +1335,11 @@ public class Game {
         Square queensidePathSecond = Square.of(2, kingColor.backRank());
         Square queensidePathThird = Square.of(3, kingColor.backRank());
         if (availableCastles.contains(Piece.from(kingColor, Role.QUEEN))
+            && targetBoard.getPieceOn(Square.of(0, kingColor.backRank())) == rook
             && targetBoard.getPieceOn(queensidePathFirst) == null && targetBoard.getPieceOn(queensidePathSecond) == null
             && targetBoard.getPieceOn(queensidePathThird) == null
-            && !isAttackedByAnyEnemy(queensidePathSecond, Color.oppositeOf(kingColor), targetBoard)
-            && !isAttackedByAnyEnemy(queensidePathThird, Color.oppositeOf(kingColor), targetBoard)) {
+            && !isAttackedByAnyEnemy(queensidePathSecond, kingColor.opposite(), targetBoard)
+            && !isAttackedByAnyEnemy(queensidePathThird, kingColor.opposite(), targetBoard)) {
             possibleMoves.add(new QueensideCastle(king, false, false));
         }
         return possibleMoves;
@@ -647,55 +1584,7 @@ public class Game {
      * @return a FEN record in a String
      */
     public String toFenNotation() {
-        StringBuilder piecePlacement = new StringBuilder();
-        for (int rank = 7; rank >= 0; rank--) {
-            if (rank < 7) {
-                piecePlacement.append("/");
-            }
-            int emptySquareCount = 0;
-            for (int file = 0; file <= 7; file++) {
-                Piece pieceAtLocation = board.getPieceOn(Square.of(file, rank));
-                if (pieceAtLocation != null) {
-                    if (emptySquareCount > 0) {
-                        piecePlacement.append(emptySquareCount);
-                        emptySquareCount = 0;
-                    }
-                    piecePlacement.append(pieceAtLocation.getFenNotation());
-
-                }
-                else {
-                    emptySquareCount++;
-                }
-            }
-            if (emptySquareCount > 0) {
-                piecePlacement.append(emptySquareCount);
-            }
-
-        }
-
-        piecePlacement.append(" ");
-        piecePlacement.append(playerToMove.getNotation());
-
-        piecePlacement.append(" ");
-        if (availableCastles.isEmpty()) {
-            piecePlacement.append("-");
-        }
-        else {
-            for (Piece availableCastles : availableCastles.stream().sorted((o1, o2) -> {
-                char o1Value = o1.getFenNotation().charAt(0);
-                char o2Value = o2.getFenNotation().charAt(0);
-                return Character.compare(o1Value, o2Value);
-            }).collect(Collectors.toList())) {
-                piecePlacement.append(availableCastles.getFenNotation());
-            }
-        }
-
-        piecePlacement.append(" ");
-        piecePlacement.append(enPassantTarget != null ? enPassantTarget.toString().toLowerCase() : "-");
-        piecePlacement.append(" - -");
-        // TODO other information
-        return piecePlacement.toString();
-
+        return snapshot().toFenNotation();
     }
 
 
@@ -0,0 +1,22 @@
+package com.keshane.blitz;
+
+/**
+ * Receives the events of a {@link GameEventStream}.
+ * <p>
+ * Events are passed as plain values rather than objects, so delivering them doesn't allocate.
+ */
+@FunctionalInterface
+public interface GameEventHandler {
+    /**
+     * Handle one event.
+     *
+     * @param type         what happened
+     * @param packedMove   the move the event is about as a {@link PackedMove} or {@link PackedMove#NONE}
+     * @param positionHash the hash of the position after the event
+     * @param status       the status of the game after the event
+     * @param sequence     the number of the event in the stream, counting from 0
+     * @param isEndOfBatch whether this is the last event available for now, which is a good time to flush output
+     */
+    void onEvent(GameEventType type, int packedMove, long positionHash, GameStatus status, long sequence,
+        boolean isEndOfBatch);
+}
@@ -0,0 +1,175 @@
+package com.keshane.blitz;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Broadcasts the events of a {@link Game} to any number of subscribers through a preallocated ring buffer.
+ * <p>
+ * The game writes each event into the next slot of the ring and then moves a published sequence number forward.
+ * Each {@link Subscription} keeps its own sequence number of the last event it handled and catches up in batches when
+ * it's polled, on whatever thread polls it. Nothing is allocated or locked per event.
+ * <p>
+ * A slot isn't reused until every subscription has handled its event, so a subscriber that falls a whole ring behind
+ * holds up the game until it catches up. Size the ring for the slowest subscriber, and close subscriptions that are no
+ * longer polled.
+ */
+public final class GameEventStream {
+    private static final GameEventType[] TYPES = GameEventType.values();
+    private static final GameStatus[] STATUSES = GameStatus.values();
+
+    private final int capacity;
+    private final int mask;
+    private final byte[] types;
+    private final int[] moves;
+    private final long[] hashes;
+    private final byte[] statuses;
+
+    /**
+     * The sequence number of the last published event, or -1 before the first one.
+     */
+    private final AtomicLong cursor = new AtomicLong(-1);
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    /**
+     * The sequence number of the next event to publish. Only read and written by the publishing thread.
+     */
+    private long nextSequence;
+    /**
+     * The lowest sequence number handled by all subscriptions when last looked at, so the publisher only looks
+     * again once it has wrapped around to that point.
+     */
+    private long cachedMinimumSequence = -1;
+
+    /**
+     * Construct a stream.
+     *
+     * @param capacity the number of events the ring holds, which must be a power of two
+     */
+    public GameEventStream(int capacity) {
+        if (capacity < 1 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a positive power of two.");
+        }
+        this.capacity = capacity;
+        mask = capacity - 1;
+        types = new byte[capacity];
+        moves = new int[capacity];
+        hashes = new long[capacity];
+        statuses = new byte[capacity];
+    }
+
+    /**
+     * Start receiving the events published from now on.
+     *
+     * @param handler what to call for each event when the subscription is polled
+     * @return the subscription, which must be polled to receive events
+     */
+    public Subscription subscribe(GameEventHandler handler) {
+        if (handler == null) {
+            throw new IllegalArgumentException("Handler cannot be null.");
+        }
+        Subscription subscription = new Subscription(handler);
+        subscriptions.add(subscription);
+        return subscription;
+    }
+
+    /**
+     * Get the sequence number of the last published event.
+     *
+     * @return the sequence number or -1 if nothing has been published
+     */
+    public long getCursor() {
+        return cursor.get();
+    }
+
+    /**
+     * Publish an event, waiting for the slowest subscription if the ring is full.
+     * <p>
+     * Must only be called by one thread at a time.
+     */
+    void publish(GameEventType type, int packedMove, long positionHash, GameStatus status) {
+        long sequence = nextSequence;
+        long wrapPoint = sequence - capacity;
+        if (wrapPoint > cachedMinimumSequence) {
+            long minimumSequence;
+            while (wrapPoint > (minimumSequence = getMinimumSequence(sequence - 1))) {
+                LockSupport.parkNanos(1L);
+            }
+            cachedMinimumSequence = minimumSequence;
+        }
+
+        int index = (int) sequence & mask;
+        types[index] = (byte) type.ordinal();
+        moves[index] = packedMove;
+        hashes[index] = positionHash;
+        statuses[index] = (byte) status.ordinal();
+        nextSequence = sequence + 1;
+        // the slot is written before the event becomes visible to subscribers
+        cursor.lazySet(sequence);
+    }
+
+    private long getMinimumSequence(long minimum) {
+        for (Subscription subscription : subscriptions) {
+            minimum = Math.min(minimum, subscription.sequence.get());
+        }
+        return minimum;
+    }
+
+    /**
+     * Receives the events of a stream for one subscriber.
+     * <p>
+     * A subscription must only be polled by one thread at a time, but different subscriptions can be polled by
+     * different threads, or many by the same one.
+     */
+    public final class Subscription implements AutoCloseable {
+        private final GameEventHandler handler;
+        /**
+         * The sequence number of the last event handled.
+         */
+        private final AtomicLong sequence;
+
+        private Subscription(GameEventHandler handler) {
+            this.handler = handler;
+            sequence = new AtomicLong(cursor.get());
+        }
+
+        /**
+         * Handle every event published since the last poll.
+         *
+         * @return the number of events handled
+         */
+        public int poll() {
+            return poll(Integer.MAX_VALUE);
+        }
+
+        /**
+         * Handle events published since the last poll, up to a limit.
+         *
+         * @param maxEvents the most events to handle
+         * @return the number of events handled
+         */
+        public int poll(int maxEvents) {
+            long first = sequence.get() + 1;
+            long last = Math.min(cursor.get(), first + maxEvents - 1);
+            for (long current = first; current <= last; current++) {
+                int index = (int) current & mask;
+                handler.onEvent(TYPES[types[index]], moves[index], hashes[index], STATUSES[statuses[index]], current,
+                    current == last);
+            }
+            if (last >= first) {
+                // hand the slots back to the publisher only after they've been read
+                sequence.lazySet(last);
+            }
+            return (int) Math.max(0, last - first + 1);
+        }
+
+        /**
+         * Stop receiving events, so the publisher no longer waits for this subscription.
+         */
+        @Override
+        public void close() {
+            subscriptions.remove(this);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.keshane.blitz;
+
+/**
+ * Enumerates the kinds of events a {@link GameEventStream} carries.
+ */
+public enum GameEventType {
+    /**
+     * A move was made. The event carries the move and the hash of the position it led to.
+     */
+    MOVE_APPLIED,
+    /**
+     * The move just made gives check, including checkmate.
+     */
+    CHECK,
+    /**
+     * The move just made ended the game. The event carries the status the game ended with.
+     */
+    GAME_OVER,
+    /**
+     * The player to move claimed a draw by threefold repetition of the current position or by the fifty-move rule.
+     */
+    DRAW_CLAIM
+}
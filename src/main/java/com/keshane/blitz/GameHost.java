@@ -0,0 +1,264 @@
+package com.keshane.blitz;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Hosts many {@link Game}s at once, keyed by id, and lets any thread act on them.
+ * <p>
+ * A Game is not thread-safe, so each hosted game has its own {@link SerialExecutor}: everything done to one game runs
+ * one action at a time, in the order the actions were submitted, while different games run in parallel on a shared
+ * thread pool. No locks are held around a game. The games are kept in a {@link ConcurrentHashMap}, so looking one up
+ * doesn't block other lookups.
+ * <p>
+ * Actions are asynchronous and their results are delivered through {@link CompletableFuture}s. Waiting on one of
+ * those futures from inside an action can deadlock a small pool, so chain on them instead.
+ * <p>
+ * The clocks of timed games are watched by one {@link TimerWheel} for the whole host rather than a scheduled task per
+ * game. When a player's time runs out, the game is ended on its own executor like any other action.
+ */
+public final class GameHost implements AutoCloseable {
+    /**
+     * How late the end of a game on time can be noticed.
+     */
+    private static final long CLOCK_TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    /**
+     * The number of ticks in one turn of the timer wheel, enough to cover the clocks of bullet games in one turn.
+     */
+    private static final int CLOCK_BUCKET_COUNT = 1024;
+
+    private final ConcurrentMap<String, HostedGame> games = new ConcurrentHashMap<>();
+    private final Executor executor;
+    /**
+     * The thread pool the host created for itself, which it shuts down when closed, or null if the pool was given.
+     */
+    private final ExecutorService ownExecutor;
+    private final TimerWheel timerWheel = new TimerWheel(CLOCK_TICK_NANOS, CLOCK_BUCKET_COUNT);
+
+    /**
+     * Construct a host that runs its games on a thread pool with a thread per processor.
+     */
+    public GameHost() {
+        ownExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), runnable -> {
+            Thread thread = new Thread(runnable, "blitz-game-host");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor = ownExecutor;
+    }
+
+    /**
+     * Construct a host that runs its games on the specified executor, which it doesn't shut down.
+     *
+     * @param executor where the actions on games are run
+     */
+    public GameHost(Executor executor) {
+        if (executor == null) {
+            throw new IllegalArgumentException("Executor cannot be null.");
+        }
+        this.executor = executor;
+        ownExecutor = null;
+    }
+
+    /**
+     * Start hosting a new game from the standard starting position.
+     *
+     * @param gameId    the id to refer to the game by
+     * @param whiteName the name of the player using the white pieces
+     * @param blackName the name of the player using the black pieces
+     */
+    public void createGame(String gameId, String whiteName, String blackName) {
+        addGame(gameId, new Game(whiteName, blackName));
+    }
+
+    /**
+     * Start hosting a new game from the specified position.
+     *
+     * @param gameId      the id to refer to the game by
+     * @param whiteName   the name of the player using the white pieces
+     * @param blackName   the name of the player using the black pieces
+     * @param startingFen the starting position in Forsyth-Edwards Notation (FEN)
+     */
+    public void createGame(String gameId, String whiteName, String blackName, String startingFen) {
+        addGame(gameId, new Game(whiteName, blackName, startingFen));
+    }
+
+    private void addGame(String gameId, Game game) {
+        if (gameId == null) {
+            throw new IllegalArgumentException("Game id cannot be null.");
+        }
+        if (games.putIfAbsent(gameId, new HostedGame(game, new SerialExecutor(executor), timerWheel)) != null) {
+            throw new IllegalArgumentException("There is already a game with id " + gameId);
+        }
+    }
+
+    /**
+     * Make a move in algebraic notation in a hosted game.
+     *
+     * @param gameId   the id of the game
+     * @param notation the move in algebraic notation
+     * @return the result of the move, once it has been made
+     */
+    public CompletableFuture<MoveResult> move(String gameId, String notation) {
+        return submit(gameId, game -> game.move(notation));
+    }
+
+    /**
+     * Make a move in UCI long algebraic notation in a hosted game.
+     *
+     * @param gameId  the id of the game
+     * @param uciMove the move, such as {@code e2e4} or {@code e7e8q}
+     * @return the result of the move, once it has been made
+     */
+    public CompletableFuture<MoveResult> moveUci(String gameId, CharSequence uciMove) {
+        // copy the notation in case the caller reuses its buffer before the move is made
+        String notation = uciMove == null ? null : uciMove.toString();
+        return submit(gameId, game -> game.moveUci(notation));
+    }
+
+    /**
+     * Time a hosted game, starting the clock of the player to move once the actions already submitted have run.
+     * <p>
+     * The game is ended with {@link GameStatus#OUT_OF_TIME} as soon as the player to move runs out of time.
+     *
+     * @param gameId      the id of the game
+     * @param timeControl the time each player gets
+     * @return the clock, once it has started
+     */
+    public CompletableFuture<ChessClock> startClock(String gameId, TimeControl timeControl) {
+        if (timeControl == null) {
+            throw new IllegalArgumentException("Time control cannot be null.");
+        }
+        return submit(gameId, game -> {
+            ChessClock clock = new ChessClock(timeControl);
+            game.setClock(clock);
+            return clock;
+        });
+    }
+
+    /**
+     * Run an action on a hosted game after the actions already submitted for it.
+     * <p>
+     * The action has the game to itself while it runs, but mustn't keep the game to use afterwards.
+     *
+     * @param gameId the id of the game
+     * @param action what to do with the game
+     * @param <T>    the type of the action's result
+     * @return the result of the action, once it has run
+     */
+    public <T> CompletableFuture<T> submit(String gameId, Function<Game, T> action) {
+        if (action == null) {
+            throw new IllegalArgumentException("Action cannot be null.");
+        }
+        HostedGame hostedGame = getHostedGame(gameId);
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return action.apply(hostedGame.game);
+            }
+            finally {
+                // the action may have moved or started the clock, so its deadline may have changed
+                hostedGame.watchClock();
+            }
+        }, hostedGame.executor);
+    }
+
+    /**
+     * Stop hosting a game once the actions already submitted for it have run.
+     *
+     * @param gameId the id of the game
+     * @return the game, once its last action has run
+     */
+    public CompletableFuture<Game> removeGame(String gameId) {
+        HostedGame hostedGame = games.remove(gameId);
+        if (hostedGame == null) {
+            throw new IllegalArgumentException("There is no game with id " + gameId);
+        }
+        hostedGame.isRemoved = true;
+        return CompletableFuture.supplyAsync(() -> hostedGame.game, hostedGame.executor);
+    }
+
+    /**
+     * Whether a game with the specified id is being hosted.
+     */
+    public boolean hasGame(String gameId) {
+        return gameId != null && games.containsKey(gameId);
+    }
+
+    /**
+     * Get the number of games being hosted.
+     */
+    public int getGameCount() {
+        return games.size();
+    }
+
+    /**
+     * Stop accepting actions on the host's own thread pool and stop watching clocks. Actions already submitted still
+     * run.
+     */
+    @Override
+    public void close() {
+        timerWheel.close();
+        if (ownExecutor != null) {
+            ownExecutor.shutdown();
+        }
+    }
+
+    private HostedGame getHostedGame(String gameId) {
+        HostedGame hostedGame = gameId == null ? null : games.get(gameId);
+        if (hostedGame == null) {
+            throw new IllegalArgumentException("There is no game with id " + gameId);
+        }
+        return hostedGame;
+    }
+
+    /**
+     * Pairs a game with the executor that runs everything done to it, and watches the game's clock.
+     */
+    private static final class HostedGame extends TimerWheel.Timer {
+        private final Game game;
+        private final SerialExecutor executor;
+        private final TimerWheel timerWheel;
+        /**
+         * The clock of the game as of its last action, or null if it isn't timed.
+         */
+        private volatile ChessClock clock;
+        private volatile boolean isRemoved;
+
+        private HostedGame(Game game, SerialExecutor executor, TimerWheel timerWheel) {
+            this.game = game;
+            this.executor = executor;
+            this.timerWheel = timerWheel;
+        }
+
+        /**
+         * Schedule the clock's deadline on the timer wheel. Must run on the game's executor.
+         */
+        private void watchClock() {
+            clock = game.getClock();
+            if (clock != null && clock.isRunning()) {
+                timerWheel.schedule(this);
+            }
+        }
+
+        @Override
+        long getDeadline() {
+            ChessClock currentClock = clock;
+            return currentClock == null || isRemoved ? Long.MAX_VALUE : currentClock.getDeadline();
+        }
+
+        @Override
+        void expire() {
+            executor.execute(() -> {
+                // a move may have been made since the wheel looked at the deadline
+                game.checkFlag();
+                watchClock();
+            });
+        }
+    }
+}
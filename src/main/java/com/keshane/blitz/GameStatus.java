@@ -0,0 +1,33 @@
+package com.keshane.blitz;
+
+/**
+ * Enumerates the states a {@link Game} can be in from the point of view of the player to move.
+ */
+public enum GameStatus {
+    /**
+     * The player to move has at least one legal move.
+     */
+    IN_PROGRESS,
+    /**
+     * The player to move is in check and has no legal moves.
+     */
+    CHECKMATE,
+    /**
+     * The player to move is not in check but has no legal moves.
+     */
+    STALEMATE,
+    /**
+     * A player ran out of time on their {@link ChessClock}: the player to move, or the player who just moved if the
+     * flag fell during the move.
+     */
+    OUT_OF_TIME;
+
+    /**
+     * Whether the game cannot continue.
+     *
+     * @return true if this status ends the game
+     */
+    public boolean isGameOver() {
+        return this != IN_PROGRESS;
+    }
+}
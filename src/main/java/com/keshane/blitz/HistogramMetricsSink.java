@@ -0,0 +1,86 @@
+package com.keshane.blitz;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A {@link MetricsSink} that keeps a {@link LatencyHistogram} for each timed operation and a total for each count,
+ * to be read by whatever exports metrics.
+ */
+public final class HistogramMetricsSink implements MetricsSink {
+    private final LatencyHistogram moveLatencies = new LatencyHistogram();
+    private final LatencyHistogram generationLatencies = new LatencyHistogram();
+    private final LatencyHistogram filteringLatencies = new LatencyHistogram();
+    private final LatencyHistogram parseLatencies = new LatencyHistogram();
+    private final LongAdder pseudoLegalMoveCount = new LongAdder();
+    private final LongAdder legalMoveCount = new LongAdder();
+    private final LongAdder parseFailureCount = new LongAdder();
+    private final LongAdder illegalMoveCount = new LongAdder();
+
+    @Override
+    public void recordMoveNanos(long nanos) {
+        moveLatencies.record(nanos);
+    }
+
+    @Override
+    public void recordGenerationNanos(long nanos) {
+        generationLatencies.record(nanos);
+    }
+
+    @Override
+    public void recordFilteringNanos(long nanos) {
+        filteringLatencies.record(nanos);
+    }
+
+    @Override
+    public void recordParseNanos(long nanos) {
+        parseLatencies.record(nanos);
+    }
+
+    @Override
+    public void countGeneratedMoves(int pseudoLegalCount, int legalCount) {
+        pseudoLegalMoveCount.add(pseudoLegalCount);
+        legalMoveCount.add(legalCount);
+    }
+
+    @Override
+    public void countParseFailure() {
+        parseFailureCount.increment();
+    }
+
+    @Override
+    public void countIllegalMove() {
+        illegalMoveCount.increment();
+    }
+
+    public LatencyHistogram getMoveLatencies() {
+        return moveLatencies;
+    }
+
+    public LatencyHistogram getGenerationLatencies() {
+        return generationLatencies;
+    }
+
+    public LatencyHistogram getFilteringLatencies() {
+        return filteringLatencies;
+    }
+
+    public LatencyHistogram getParseLatencies() {
+        return parseLatencies;
+    }
+
+    public long getPseudoLegalMoveCount() {
+        return pseudoLegalMoveCount.sum();
+    }
+
+    public long getLegalMoveCount() {
+        return legalMoveCount.sum();
+    }
+
+    public long getParseFailureCount() {
+        return parseFailureCount.sum();
+    }
+
+    public long getIllegalMoveCount() {
+        return illegalMoveCount.sum();
+    }
+}
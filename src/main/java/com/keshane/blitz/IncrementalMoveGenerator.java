@@ -0,0 +1,198 @@
+package com.keshane.blitz;
+
+import java.util.Collection;
+import java.util.Set;
+
+/**
+ * Generates the legal moves of a {@link Game} from destination sets kept for every piece between plies.
+ * <p>
+ * A piece's pseudo-legal destinations only depend on what stands on a few squares: the squares it attacks, up to and
+ * including the first blocker of each ray, and for a pawn the squares in front of it. Those squares are kept with the
+ * destinations, and after a move only the pieces that moved, or whose squares had something arrive or leave, are
+ * worked out again. The rest are reused as they are.
+ * <p>
+ * Legality is then checked only where it can fail: for king moves, en passant, pieces that stand on a line with their
+ * own king and so may be pinned, and every move when the king is in check.
+ */
+final class IncrementalMoveGenerator {
+    private static final Piece[] PIECES = Piece.values();
+    private static final Role[] PROMOTION_ROLES = new Role[]{Role.QUEEN, Role.ROOK, Role.BISHOP, Role.KNIGHT};
+
+    /**
+     * The bitboard of each piece when the destinations were last brought up to date, to find the squares whose
+     * contents have changed since.
+     */
+    private final long[] pieceBitboards = new long[PIECES.length];
+    /**
+     * The pseudo-legal destinations of the piece on each square, indexed by square ordinal, leaving out castles and
+     * en passant, which depend on more than the board.
+     */
+    private final long[] destinations = new long[64];
+    /**
+     * The squares whose contents the destinations of the piece on each square depend on.
+     */
+    private final long[] dependencies = new long[64];
+    private boolean isInitialized;
+    /**
+     * The number of times the destinations of a piece have been worked out, to see how much is reused.
+     */
+    private long recomputedCount;
+
+    /**
+     * Bring the destinations up to date with a board, working out again only those of the pieces affected by what
+     * changed since the last update. Any number of moves can have been made in between.
+     *
+     * @param board the position of the pieces
+     */
+    void update(Board board) {
+        long changed = 0;
+        for (Piece piece : PIECES) {
+            long bitboard = board.getBitboard(piece);
+            changed |= bitboard ^ pieceBitboards[piece.ordinal()];
+            pieceBitboards[piece.ordinal()] = bitboard;
+        }
+        if (!isInitialized) {
+            changed = -1L;
+            isInitialized = true;
+        }
+        if (changed == 0) {
+            return;
+        }
+
+        long occupancy = board.getOccupancy();
+        for (long emptied = changed & ~occupancy; emptied != 0; emptied &= emptied - 1) {
+            int index = Long.numberOfTrailingZeros(emptied);
+            destinations[index] = 0;
+            dependencies[index] = 0;
+        }
+        for (long pieces = occupancy; pieces != 0; pieces &= pieces - 1) {
+            int index = Long.numberOfTrailingZeros(pieces);
+            if ((changed & 1L << index) != 0 || (dependencies[index] & changed) != 0) {
+                recompute(board, Square.fromIndex(index), occupancy);
+            }
+        }
+    }
+
+    /**
+     * Add every legal move of a player to a collection, once the destinations are up to date with the board.
+     *
+     * @param mover            the player to move
+     * @param board            the position of the pieces, as last passed to {@link #update(Board)}
+     * @param enPassantTarget  the square that can be moved to in an en passant or null if there is none
+     * @param availableCastles the castles still available, as described in {@link Game}
+     * @param moves            where the legal moves are added, unmarked as checks
+     * @return the number of pseudo-legal moves looked at, counting each promotion once for every piece
+     */
+    int addLegalMoves(Color mover, Board board, Square enPassantTarget, Set<Piece> availableCastles,
+        Collection<Move> moves) {
+        long own = board.getOccupancy(mover);
+        long occupancy = board.getOccupancy();
+        Square kingSquare = board.getKingLocation(mover);
+        boolean isInCheck = MoveRules.isAttacked(kingSquare, mover.opposite(), board, occupancy, 0);
+        // only a piece the king sees along a line can be pinned, and the king itself must never move into an attack
+        long needsChecking = isInCheck ? own : (Bitboard.queenAttacks(kingSquare, occupancy) & own)
+            | Bitboard.of(kingSquare);
+        long enPassantBit = enPassantTarget == null ? 0 : Bitboard.of(enPassantTarget);
+
+        int pseudoLegalCount = 0;
+        for (long pieces = own; pieces != 0; pieces &= pieces - 1) {
+            int index = Long.numberOfTrailingZeros(pieces);
+            Square source = Square.fromIndex(index);
+            Piece piece = board.getPieceOn(source);
+            boolean isPawn = piece.getRole() == Role.PAWN;
+            long targets = destinations[index];
+            if (isPawn) {
+                targets |= Bitboard.pawnAttacks(mover, source) & enPassantBit;
+            }
+            boolean isChecked = (needsChecking & 1L << index) != 0;
+            for (; targets != 0; targets &= targets - 1) {
+                Square destination = Bitboard.first(targets);
+                // taking en passant also empties the captured pawn's square, which can uncover the king on its rank
+                boolean isEnPassant = isPawn && destination == enPassantTarget;
+                boolean isPromotion = isPawn && (destination.rank == 0 || destination.rank == 7);
+                pseudoLegalCount += isPromotion ? PROMOTION_ROLES.length : 1;
+                if ((isChecked || isEnPassant)
+                    && !MoveRules.isKingSafeAfter(mover, board, source, destination, isEnPassant)) {
+                    continue;
+                }
+                if (isEnPassant) {
+                    moves.add(new EnPassant(piece, source, destination,
+                        board.getPieceOn(Square.of(destination.file, source.rank)), false, false));
+                }
+                else if (isPromotion) {
+                    Piece captured = board.getPieceOn(destination);
+                    for (Role promotion : PROMOTION_ROLES) {
+                        moves.add(new Promotion(piece, source, destination, Piece.from(mover, promotion), captured,
+                            false, false));
+                    }
+                }
+                else {
+                    moves.add(new NormalMove(piece, source, destination, board.getPieceOn(destination), false, false));
+                }
+            }
+        }
+
+        if (!isInCheck && !availableCastles.isEmpty()) {
+            Piece king = Piece.from(mover, Role.KING);
+            int backRank = mover.backRank();
+            if (availableCastles.contains(king)) {
+                pseudoLegalCount++;
+                if (MoveRules.isLegal(PackedMove.of(kingSquare.ordinal(), Square.of(6, backRank).ordinal()), mover,
+                    board, enPassantTarget, availableCastles)) {
+                    moves.add(new KingsideCastle(king, false, false));
+                }
+            }
+            if (availableCastles.contains(Piece.from(mover, Role.QUEEN))) {
+                pseudoLegalCount++;
+                if (MoveRules.isLegal(PackedMove.of(kingSquare.ordinal(), Square.of(2, backRank).ordinal()), mover,
+                    board, enPassantTarget, availableCastles)) {
+                    moves.add(new QueensideCastle(king, false, false));
+                }
+            }
+        }
+        return pseudoLegalCount;
+    }
+
+    /**
+     * Get the number of times the destinations of a piece have been worked out since the generator was made.
+     */
+    long getRecomputedCount() {
+        return recomputedCount;
+    }
+
+    private void recompute(Board board, Square square, long occupancy) {
+        recomputedCount++;
+        int index = square.ordinal();
+        Piece piece = board.getPieceOn(square);
+        Color color = piece.getColor();
+        Role role = piece.getRole();
+        if (role != Role.PAWN) {
+            long attacks = Bitboard.attacks(role, color, square, occupancy);
+            destinations[index] = attacks & ~board.getOccupancy(color);
+            dependencies[index] = attacks;
+            return;
+        }
+
+        long attacks = Bitboard.pawnAttacks(color, square);
+        long pushes = 0;
+        long pushSquares = 0;
+        int forward = color == Color.WHITE ? 1 : -1;
+        int pushRank = square.rank + forward;
+        if (pushRank >= 0 && pushRank <= 7) {
+            long push = Bitboard.of(Square.of(square.file, pushRank));
+            pushSquares = push;
+            if (square.rank == (color == Color.WHITE ? 1 : 6)) {
+                long doublePush = Bitboard.of(Square.of(square.file, pushRank + forward));
+                pushSquares |= doublePush;
+                if ((occupancy & (push | doublePush)) == 0) {
+                    pushes = doublePush;
+                }
+            }
+            if ((occupancy & push) == 0) {
+                pushes |= push;
+            }
+        }
+        destinations[index] = (attacks & board.getOccupancy(color.opposite())) | pushes;
+        dependencies[index] = attacks | pushSquares;
+    }
+}
@@ -66,6 +66,11 @@ class KingsideCastle implements Castle {
         board.move(rookSource, rookDestination);
     }
 
+    @Override
+    public Move withCheck(boolean isCheckmate) {
+        return new KingsideCastle(king, true, isCheckmate);
+    }
+
     @Override
     public boolean isAMatch(InterpretedNotation rawMove) {
         return rawMove.moveTypes.contains(MoveType.KINGSIDE_CASTLE);
@@ -0,0 +1,78 @@
+package com.keshane.blitz;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts durations in buckets by powers of two, so recording one is a single atomic increment without allocating.
+ * <p>
+ * Bucket {@code i} holds the durations of less than {@code 2^i} nanoseconds that didn't fit in the bucket before,
+ * so percentiles are accurate to within a factor of two.
+ */
+public final class LatencyHistogram {
+    private static final int BUCKET_COUNT = 64;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+
+    /**
+     * Record a duration.
+     *
+     * @param nanos the duration in nanoseconds, which counts as 0 if negative
+     */
+    public void record(long nanos) {
+        buckets.incrementAndGet(getBucket(nanos));
+    }
+
+    /**
+     * Get the number of durations recorded.
+     */
+    public long getCount() {
+        long count = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            count += buckets.get(i);
+        }
+        return count;
+    }
+
+    /**
+     * Get a duration that the specified fraction of the recorded durations were shorter than.
+     *
+     * @param fraction the fraction of durations, from 0 to 1, such as 0.99 for the 99th percentile
+     * @return the upper bound in nanoseconds of the bucket the percentile falls in, or 0 if nothing was recorded
+     */
+    public long getPercentileNanos(double fraction) {
+        if (fraction < 0 || fraction > 1) {
+            throw new IllegalArgumentException("Fraction must be between 0 and 1.");
+        }
+        long[] counts = new long[BUCKET_COUNT];
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts[i] = buckets.get(i);
+            total += counts[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(fraction * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return i == BUCKET_COUNT - 1 ? Long.MAX_VALUE : 1L << i;
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+
+    /**
+     * Forget every recorded duration.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            buckets.set(i, 0);
+        }
+    }
+
+    private static int getBucket(long nanos) {
+        return nanos <= 0 ? 0 : BUCKET_COUNT - Long.numberOfLeadingZeros(nanos);
+    }
+}
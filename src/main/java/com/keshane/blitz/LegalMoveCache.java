@@ -0,0 +1,208 @@
+package com.keshane.blitz;
+
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Remembers the legal moves of positions across every {@link Game} in the process, so positions many games pass
+ * through, such as those of common openings, only have their moves generated once.
+ * <p>
+ * The cache is an array of buckets of four entries, keyed by position hash. An entry also holds the whole position it
+ * was stored for, which is compared with the position asked about, so two positions with the same hash never share
+ * moves. Only the use count of a stored entry ever changes, so any number of threads can share a cache without
+ * locks; two threads storing into the same bucket at once can only cost one of them its entry.
+ * <p>
+ * Each entry counts how often it's used. When a bucket is full, the least used entry makes way for the new one and the
+ * others count down by one, so positions that keep coming up stay in the cache while ones seen once, or no longer
+ * seen, drop out.
+ * <p>
+ * Install a cache with {@link Game#setLegalMoveCache(LegalMoveCache)}.
+ */
+public final class LegalMoveCache {
+    /**
+     * Set in a cached move that gives check.
+     */
+    static final int CHECK = 1 << 15;
+    /**
+     * Set in a cached move that gives checkmate, along with {@link #CHECK}.
+     */
+    static final int CHECKMATE = 1 << 16;
+    /**
+     * Keeps the {@link PackedMove} of a cached move.
+     */
+    static final int MOVE_MASK = CHECK - 1;
+
+    private static final int ENTRIES_PER_BUCKET = 4;
+    private static final Piece[] PIECES = Piece.values();
+
+    private final AtomicReferenceArray<Entry> entries;
+    private final int bucketMask;
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+
+    /**
+     * Construct an empty cache.
+     *
+     * @param capacity the most positions the cache may hold, which is rounded down to a power of two and must be at
+     *                 least 4
+     */
+    public LegalMoveCache(int capacity) {
+        if (capacity < ENTRIES_PER_BUCKET) {
+            throw new IllegalArgumentException(String.format("A cache needs room for at least %d positions",
+                ENTRIES_PER_BUCKET));
+        }
+        int roundedCapacity = Integer.highestOneBit(capacity);
+        entries = new AtomicReferenceArray<>(roundedCapacity);
+        bucketMask = roundedCapacity / ENTRIES_PER_BUCKET - 1;
+    }
+
+    /**
+     * Look up the legal moves of a position.
+     *
+     * @param hash the Zobrist hash of the position
+     * @return the moves as {@link PackedMove}s with {@link #CHECK} and {@link #CHECKMATE} set where they apply, which
+     * must not be changed, or null if the cache doesn't hold the position
+     */
+    int[] get(long hash, Color mover, Board board, Square enPassantTarget, Set<Piece> availableCastles) {
+        int firstIndex = getFirstIndex(hash);
+        int state = getState(mover, enPassantTarget, availableCastles);
+        for (int i = firstIndex; i < firstIndex + ENTRIES_PER_BUCKET; i++) {
+            Entry entry = entries.get(i);
+            if (entry != null && entry.hash == hash && entry.isFor(board, state)) {
+                // a count lost to a race only makes the entry look a little less used
+                entry.useCount++;
+                hitCount.increment();
+                return entry.moves;
+            }
+        }
+        missCount.increment();
+        return null;
+    }
+
+    /**
+     * Store the legal moves of a position.
+     *
+     * @param hash  the Zobrist hash of the position
+     * @param moves the moves as described in {@link #get}, which must not be changed afterwards
+     */
+    void put(long hash, Color mover, Board board, Square enPassantTarget, Set<Piece> availableCastles, int[] moves) {
+        int firstIndex = getFirstIndex(hash);
+        Entry entry = new Entry(hash, board, getState(mover, enPassantTarget, availableCastles), moves);
+        int victimIndex = firstIndex;
+        int victimUseCount = Integer.MAX_VALUE;
+        for (int i = firstIndex; i < firstIndex + ENTRIES_PER_BUCKET; i++) {
+            Entry stored = entries.get(i);
+            if (stored == null || (stored.hash == hash && stored.isFor(board, entry.state))) {
+                entries.set(i, entry);
+                return;
+            }
+            if (stored.useCount < victimUseCount) {
+                victimIndex = i;
+                victimUseCount = stored.useCount;
+            }
+        }
+        for (int i = firstIndex; i < firstIndex + ENTRIES_PER_BUCKET; i++) {
+            Entry stored = entries.get(i);
+            if (i != victimIndex && stored != null && stored.useCount > 0) {
+                stored.useCount--;
+            }
+        }
+        entries.set(victimIndex, entry);
+        evictionCount.increment();
+    }
+
+    /**
+     * Remove every position from the cache. The counts are kept.
+     */
+    public void clear() {
+        for (int i = 0; i < entries.length(); i++) {
+            entries.set(i, null);
+        }
+    }
+
+    /**
+     * Get the most positions the cache can hold.
+     */
+    public int getCapacity() {
+        return entries.length();
+    }
+
+    /**
+     * Get the number of lookups that found their position.
+     */
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    /**
+     * Get the number of lookups that didn't find their position.
+     */
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    /**
+     * Get the number of positions that made way for another.
+     */
+    public long getEvictionCount() {
+        return evictionCount.sum();
+    }
+
+    /**
+     * Get the share of lookups that found their position.
+     *
+     * @return the share, from 0 to 1, which is 0 before the first lookup
+     */
+    public double getHitRate() {
+        long hits = getHitCount();
+        long lookups = hits + getMissCount();
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    private int getFirstIndex(long hash) {
+        return ((int) (hash ^ hash >>> 32) & bucketMask) * ENTRIES_PER_BUCKET;
+    }
+
+    /**
+     * Packs what the hash covers besides the pieces into an {@code int}: the player to move in bit 0, the available
+     * castles by {@link Piece} ordinal from bit 1 and the en passant target's ordinal plus one from bit 16.
+     */
+    private static int getState(Color mover, Square enPassantTarget, Set<Piece> availableCastles) {
+        int state = mover.ordinal();
+        for (Piece castle : availableCastles) {
+            state |= 1 << (castle.ordinal() + 1);
+        }
+        return state | (enPassantTarget == null ? 0 : enPassantTarget.ordinal() + 1) << 16;
+    }
+
+    private static final class Entry {
+        private final long hash;
+        private final long[] pieceBitboards = new long[PIECES.length];
+        private final int state;
+        private final int[] moves;
+        private volatile int useCount = 1;
+
+        private Entry(long hash, Board board, int state, int[] moves) {
+            this.hash = hash;
+            for (Piece piece : PIECES) {
+                pieceBitboards[piece.ordinal()] = board.getBitboard(piece);
+            }
+            this.state = state;
+            this.moves = moves;
+        }
+
+        private boolean isFor(Board board, int state) {
+            if (this.state != state) {
+                return false;
+            }
+            for (Piece piece : PIECES) {
+                if (pieceBitboards[piece.ordinal()] != board.getBitboard(piece)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
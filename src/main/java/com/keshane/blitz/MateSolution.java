@@ -0,0 +1,101 @@
+package com.keshane.blitz;
+
+/**
+ * Holds the outcome of a {@link MateSolver}.
+ * <p>
+ * Moves are given as {@link PackedMove}s.
+ */
+public class MateSolution {
+    private final int mateLength;
+    private final int keyMove;
+    private final boolean isUnique;
+    private final long treeSize;
+    private final long nodes;
+    private final boolean isComplete;
+
+    MateSolution(int mateLength, int keyMove, boolean isUnique, long treeSize, long nodes, boolean isComplete) {
+        this.mateLength = mateLength;
+        this.keyMove = keyMove;
+        this.isUnique = isUnique;
+        this.treeSize = treeSize;
+        this.nodes = nodes;
+        this.isComplete = isComplete;
+    }
+
+    /**
+     * Whether the player to move has a forced mate within the length searched.
+     */
+    public boolean isMate() {
+        return mateLength > 0;
+    }
+
+    /**
+     * Get the length of the shortest forced mate.
+     *
+     * @return the number of moves of the player to move, counting the mating move, or 0 if no mate was found
+     */
+    public int getMateLength() {
+        return mateLength;
+    }
+
+    /**
+     * Get the first move of the mate.
+     *
+     * @return the move as a {@link PackedMove} or {@link PackedMove#NONE} if no mate was found
+     */
+    public int getKeyMove() {
+        return keyMove;
+    }
+
+    /**
+     * Get the first move of the mate in UCI long algebraic notation.
+     *
+     * @return the notation of the move or null if no mate was found
+     */
+    public String getKeyMoveUci() {
+        return keyMove == PackedMove.NONE ? null : PackedMove.toUci(keyMove);
+    }
+
+    /**
+     * Whether the key move is the only move that forces mate within {@link #getMateLength()} moves.
+     */
+    public boolean isUnique() {
+        return isUnique;
+    }
+
+    /**
+     * Get the number of positions in the solution: one mating reply to each defence after the key move, and every
+     * defence to each of those replies.
+     *
+     * @return the number of positions, counting the starting one, or 0 if no mate was found
+     */
+    public long getTreeSize() {
+        return treeSize;
+    }
+
+    /**
+     * Get the number of positions the solver expanded.
+     */
+    public long getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Whether the solver finished within its node budget. If it didn't, a mate may exist that wasn't found.
+     */
+    public boolean isComplete() {
+        return isComplete;
+    }
+
+    @Override
+    public String toString() {
+        if (!isMate()) {
+            return isComplete ? "no mate" : "unknown";
+        }
+        if (!isComplete) {
+            return String.format("mate in %d with %s, uniqueness unknown", mateLength, getKeyMoveUci());
+        }
+        return String.format("mate in %d with %s, %s, %d positions in the solution", mateLength, getKeyMoveUci(),
+            isUnique ? "unique" : "not unique", treeSize);
+    }
+}
@@ -0,0 +1,489 @@
+package com.keshane.blitz;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Finds the shortest forced mate for the player to move in a {@link Game}, and checks whether its first move is the
+ * only one that mates that quickly.
+ * <p>
+ * This is a depth-first proof-number search (df-pn). The player to move, the attacker, needs one move that mates and
+ * the defender must have no defence that escapes, so each position is given a proof number, how many positions at
+ * least must still be shown to be mates to prove it, and a disproof number, how many must be shown to escape to
+ * disprove it. The search always expands the position that is cheapest to settle, and only goes back up the tree when
+ * a cheaper position elsewhere overtakes it.
+ * <p>
+ * The numbers are remembered in a table keyed by position hash, the attacker and the number of attacker moves left,
+ * so a position reached by different move orders is only settled once, and the tree can't loop back on itself. The
+ * table has buckets of two entries and a new entry pushes out the older of the two, so siblings sharing a bucket don't
+ * keep pushing each other out; any other lost entry only means work done again. The numbers of a position don't
+ * depend on where it was reached from, so the table is kept from one solve to the next. Mates are looked for one move
+ * longer at a time, so the first found is the shortest.
+ * <p>
+ * The Game is only read when solving starts. A MateSolver is not thread-safe; {@link #solveAll} solves puzzles on
+ * several threads with a solver per thread. Run it over a file of FEN records, one per line, as:
+ * <pre>
+ * java com.keshane.blitz.MateSolver [--threads N] [--moves N] [--nodes N] FILE
+ * </pre>
+ */
+public final class MateSolver {
+    /**
+     * The longest mate, in moves of the attacker, that can be searched for.
+     */
+    public static final int MAX_MATE_LENGTH = 16;
+
+    private static final String USAGE = "Usage: MateSolver [--threads N] [--moves N] [--nodes N] FILE";
+    private static final int MAX_PLY = MAX_MATE_LENGTH * 2;
+    /**
+     * A proof or disproof number that can't be reached: the position is settled the other way.
+     */
+    private static final int INFINITY = 100_000_000;
+    private static final String EMPTY_BOARD_FEN = "8/8/8/8/8/8/8/8";
+    private static final long DEFAULT_TABLE_SIZE = 16L * 1024 * 1024;
+    private static final int ENTRIES_PER_BUCKET = 2;
+    private static final int LONGS_PER_BUCKET = ENTRIES_PER_BUCKET * 2;
+    private static final int BYTES_PER_BUCKET = LONGS_PER_BUCKET * Long.BYTES;
+    /**
+     * The most buckets that fit in one array, which makes for a 4 GB table.
+     */
+    private static final long MAX_BUCKETS = 1L << 27;
+    /**
+     * Mixed into the position hash once per attacker move left, so one position has a key per number of moves left.
+     */
+    private static final long MOVES_LEFT_KEY = 0x9E3779B97F4A7C15L;
+    /**
+     * Mixed into the key of every position when black is the attacker, since the numbers of a position mean the
+     * opposite for the other attacker.
+     */
+    private static final long BLACK_ATTACKER_KEY = 0xD6E8FEB86659FD93L;
+
+    private final Board[] boards = new Board[MAX_PLY + 1];
+    private final Color[] colors = new Color[MAX_PLY + 1];
+    private final List<Set<Piece>> availableCastles = new ArrayList<>(MAX_PLY + 1);
+    private final Square[] enPassantTargets = new Square[MAX_PLY + 1];
+    private final List<List<Move>> movesByPly = new ArrayList<>(MAX_PLY + 1);
+    private final StagedMoveGenerator[] generators = new StagedMoveGenerator[MAX_PLY + 1];
+    private final long[][] childKeysByPly = new long[MAX_PLY + 1][];
+
+    /**
+     * Buckets of two entries, each a key and its numbers: the phi number in the high half and the delta number in the
+     * low half.
+     */
+    private final long[] table;
+    private final int bucketMask;
+
+    private long attackerKey;
+    private long nodes;
+    private long nodeBudget;
+    private boolean isStopped;
+
+    /**
+     * Construct a MateSolver with a 16 MB table.
+     */
+    public MateSolver() {
+        this(DEFAULT_TABLE_SIZE);
+    }
+
+    /**
+     * Construct a MateSolver.
+     *
+     * @param tableSizeInBytes the most memory the table of proof numbers may use, which is rounded down to a power of
+     *                         two and to at most 4 GB
+     */
+    public MateSolver(long tableSizeInBytes) {
+        if (tableSizeInBytes < BYTES_PER_BUCKET) {
+            throw new IllegalArgumentException(String.format("A table needs at least %d bytes", BYTES_PER_BUCKET));
+        }
+        long buckets = Long.highestOneBit(Math.min(tableSizeInBytes / BYTES_PER_BUCKET, MAX_BUCKETS));
+        table = new long[(int) (buckets * LONGS_PER_BUCKET)];
+        bucketMask = (int) buckets - 1;
+        Board verificationBoard = new Board(EMPTY_BOARD_FEN);
+        for (int ply = 0; ply <= MAX_PLY; ply++) {
+            boards[ply] = new Board(EMPTY_BOARD_FEN);
+            availableCastles.add(EnumSet.noneOf(Piece.class));
+            movesByPly.add(new ArrayList<>());
+            generators[ply] = new StagedMoveGenerator(verificationBoard);
+            childKeysByPly[ply] = new long[256];
+        }
+    }
+
+    /**
+     * Look for the shortest forced mate by the player to move in the current position of a game.
+     *
+     * @param game          the game to solve, which must not be changed until solving returns
+     * @param maxMateLength the longest mate to look for, in moves of the player to move
+     * @param nodeBudget    how many positions to expand, at most
+     * @return the mate found, if any
+     */
+    public MateSolution solve(Game game, int maxMateLength, long nodeBudget) {
+        if (maxMateLength < 1 || maxMateLength > MAX_MATE_LENGTH) {
+            throw new IllegalArgumentException(String.format("Mate length must be between 1 and %d",
+                MAX_MATE_LENGTH));
+        }
+        if (nodeBudget <= 0) {
+            throw new IllegalArgumentException("Node budget must be positive");
+        }
+        boards[0].replaceBoardWith(game.getBoard());
+        colors[0] = game.getPlayerToMove();
+        availableCastles.get(0).clear();
+        availableCastles.get(0).addAll(game.getAvailableCastles());
+        enPassantTargets[0] = game.getEnPassantTarget();
+        attackerKey = colors[0] == Color.BLACK ? BLACK_ATTACKER_KEY : 0;
+        this.nodeBudget = nodeBudget;
+        nodes = 0;
+        isStopped = false;
+
+        long hash = Zobrist.hash(colors[0], boards[0], enPassantTargets[0], availableCastles.get(0));
+        int mateLength = 0;
+        for (int length = 1; length <= maxMateLength && mateLength == 0; length++) {
+            long key = keyOf(hash, length);
+            search(0, key, length, INFINITY, INFINITY);
+            if (isStopped) {
+                return new MateSolution(0, PackedMove.NONE, false, 0, nodes, false);
+            }
+            if (isProven(0, key)) {
+                mateLength = length;
+            }
+        }
+        if (mateLength == 0) {
+            return new MateSolution(0, PackedMove.NONE, false, 0, nodes, true);
+        }
+
+        // every move that mates as quickly counts against uniqueness, so each one is settled
+        int keyMove = PackedMove.NONE;
+        int mateCount = 0;
+        List<Move> moves = generateMoves(0);
+        for (int i = 0; i < moves.size() && !isStopped; i++) {
+            makeMove(0, moves.get(i));
+            long childKey = keyOf(Zobrist.hash(colors[1], boards[1], enPassantTargets[1], availableCastles.get(1)),
+                mateLength - 1);
+            settle(1, childKey, mateLength - 1);
+            if (isProven(1, childKey)) {
+                mateCount++;
+                if (keyMove == PackedMove.NONE) {
+                    keyMove = PackedMove.of(moves.get(i));
+                }
+            }
+        }
+        long treeSize = 0;
+        if (!isStopped) {
+            moves = generateMoves(0);
+            for (Move move : moves) {
+                if (PackedMove.of(move) == keyMove) {
+                    makeMove(0, move);
+                    treeSize = 1 + countSolution(1, mateLength - 1);
+                    break;
+                }
+            }
+        }
+        return new MateSolution(mateLength, keyMove, mateCount == 1, treeSize, nodes, !isStopped);
+    }
+
+    /**
+     * Solve puzzles in parallel, each on the thread that takes it up, with a solver and a 16 MB table per thread.
+     *
+     * @param puzzles       the games to solve, which must not be changed until solving returns
+     * @param maxMateLength the longest mate to look for in each puzzle
+     * @param nodeBudget    how many positions to expand for each puzzle, at most
+     * @param threadCount   the number of threads to solve puzzles on at the same time
+     * @return the solution of each puzzle, in the order of the puzzles
+     * @throws InterruptedException if interrupted while waiting for the threads
+     */
+    public static List<MateSolution> solveAll(List<Game> puzzles, int maxMateLength, long nodeBudget,
+        int threadCount) throws InterruptedException {
+        if (threadCount < 1) {
+            throw new IllegalArgumentException("Thread count must be positive.");
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        ThreadLocal<MateSolver> solvers = ThreadLocal.withInitial(MateSolver::new);
+        try {
+            List<Future<MateSolution>> futures = new ArrayList<>(puzzles.size());
+            for (Game puzzle : puzzles) {
+                futures.add(executor.submit(() -> solvers.get().solve(puzzle, maxMateLength, nodeBudget)));
+            }
+            List<MateSolution> solutions = new ArrayList<>(puzzles.size());
+            for (Future<MateSolution> future : futures) {
+                solutions.add(future.get());
+            }
+            return solutions;
+        }
+        catch (ExecutionException e) {
+            throw new IllegalStateException("Solving failed", e.getCause());
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Search a position until its phi number reaches {@code thresholdPhi} or its delta number reaches
+     * {@code thresholdDelta}, then store its numbers.
+     * <p>
+     * The numbers are kept from the point of view of the player to move: phi is the proof number where the attacker is
+     * to move and the disproof number where the defender is, and delta is the other one. That way a position's phi is
+     * the smallest delta of its children and its delta is the sum of their phis, whoever is to move.
+     *
+     * @param ply       how many plies the position is from the start, which is even where the attacker is to move
+     * @param key       the key of the position in the table
+     * @param movesLeft how many moves the attacker has left to mate in
+     */
+    private void search(int ply, long key, int movesLeft, int thresholdPhi, int thresholdDelta) {
+        if (++nodes > nodeBudget) {
+            isStopped = true;
+            return;
+        }
+        boolean isAttacker = ply % 2 == 0;
+        if (isAttacker && movesLeft == 0) {
+            store(key, INFINITY, 0);
+            return;
+        }
+        List<Move> moves = generateMoves(ply);
+        if (moves.isEmpty()) {
+            // only a mated defender loses; a stalemate, or an attacker with no moves, is no mate
+            boolean isLost = isAttacker || generators[ply].isInCheck();
+            store(key, isLost ? INFINITY : 0, isLost ? 0 : INFINITY);
+            return;
+        }
+        if (!isAttacker && movesLeft == 0) {
+            store(key, 0, INFINITY);
+            return;
+        }
+
+        int childMovesLeft = isAttacker ? movesLeft - 1 : movesLeft;
+        long[] childKeys = childKeysByPly[ply];
+        if (childKeys.length < moves.size()) {
+            childKeys = new long[moves.size()];
+            childKeysByPly[ply] = childKeys;
+        }
+        int childCount = 0;
+        for (Move move : moves) {
+            makeMove(ply, move);
+            // the last move of a mate must give check, so the others needn't be searched
+            if (isAttacker && movesLeft == 1 && !Game.isKingInCheck(colors[ply + 1], boards[ply + 1])) {
+                continue;
+            }
+            long hash = Zobrist.hash(colors[ply + 1], boards[ply + 1], enPassantTargets[ply + 1],
+                availableCastles.get(ply + 1));
+            moves.set(childCount, move);
+            childKeys[childCount++] = keyOf(hash, childMovesLeft);
+        }
+        moves.subList(childCount, moves.size()).clear();
+        if (moves.isEmpty()) {
+            store(key, INFINITY, 0);
+            return;
+        }
+
+        while (true) {
+            int phi = INFINITY;
+            int delta = 0;
+            int bestIndex = 0;
+            int bestPhi = 0;
+            int secondDelta = INFINITY;
+            for (int i = 0; i < moves.size(); i++) {
+                long entry = probe(childKeys[i]);
+                int childPhi = phiOf(entry);
+                int childDelta = deltaOf(entry);
+                delta = Math.min(delta + childPhi, INFINITY);
+                if (childDelta < phi) {
+                    secondDelta = phi;
+                    phi = childDelta;
+                    bestIndex = i;
+                    bestPhi = childPhi;
+                }
+                else if (childDelta < secondDelta) {
+                    secondDelta = childDelta;
+                }
+            }
+            if (phi >= thresholdPhi || delta >= thresholdDelta || isStopped) {
+                store(key, phi, delta);
+                return;
+            }
+            // the best child is searched until it stops being best: its delta passes the second best's, or it
+            // would push this position's delta past its threshold. Letting it pass the second best's by a quarter
+            // saves switching back and forth between two children that are nearly as cheap
+            makeMove(ply, moves.get(bestIndex));
+            search(ply + 1, childKeys[bestIndex], childMovesLeft, Math.min(thresholdDelta - delta + bestPhi, INFINITY),
+                Math.min(thresholdPhi, secondDelta + secondDelta / 4 + 1));
+        }
+    }
+
+    /**
+     * Search a position until it's proven or disproven, unless the table already says which.
+     */
+    private void settle(int ply, long key, int movesLeft) {
+        long entry = probe(key);
+        if (phiOf(entry) != 0 && deltaOf(entry) != 0) {
+            search(ply, key, movesLeft, INFINITY, INFINITY);
+        }
+    }
+
+    /**
+     * Whether a position is a forced mate for the attacker, as far as the table knows.
+     */
+    private boolean isProven(int ply, long key) {
+        long entry = probe(key);
+        return ply % 2 == 0 ? phiOf(entry) == 0 : deltaOf(entry) == 0;
+    }
+
+    /**
+     * Count the positions of the solution from a proven position, settling again any the table has lost.
+     */
+    private long countSolution(int ply, int movesLeft) {
+        List<Move> moves = generateMoves(ply);
+        if (moves.isEmpty() || isStopped) {
+            return 1;
+        }
+        boolean isAttacker = ply % 2 == 0;
+        int childMovesLeft = isAttacker ? movesLeft - 1 : movesLeft;
+        long count = 1;
+        // the moves of deeper plies are generated into their own lists, so this one stays put
+        for (int i = 0; i < moves.size() && !isStopped; i++) {
+            makeMove(ply, moves.get(i));
+            long childKey = keyOf(Zobrist.hash(colors[ply + 1], boards[ply + 1], enPassantTargets[ply + 1],
+                availableCastles.get(ply + 1)), childMovesLeft);
+            settle(ply + 1, childKey, childMovesLeft);
+            if (isAttacker && !isProven(ply + 1, childKey)) {
+                continue;
+            }
+            count += countSolution(ply + 1, childMovesLeft);
+            if (isAttacker) {
+                break;
+            }
+        }
+        return count;
+    }
+
+    private List<Move> generateMoves(int ply) {
+        List<Move> moves = movesByPly.get(ply);
+        moves.clear();
+        StagedMoveGenerator generator = generators[ply];
+        generator.reset(colors[ply], boards[ply], enPassantTargets[ply], availableCastles.get(ply), false);
+        for (Move move = generator.next(); move != null; move = generator.next()) {
+            moves.add(move);
+        }
+        return moves;
+    }
+
+    private void makeMove(int ply, Move move) {
+        boards[ply + 1].replaceBoardWith(boards[ply]);
+        move.makeMoveOnBoard(boards[ply + 1]);
+        colors[ply + 1] = colors[ply].opposite();
+        Set<Piece> nextAvailableCastles = availableCastles.get(ply + 1);
+        nextAvailableCastles.clear();
+        nextAvailableCastles.addAll(availableCastles.get(ply));
+        Game.updateAvailableCastles(move, colors[ply], nextAvailableCastles);
+        enPassantTargets[ply + 1] = Game.getEnPassantTargetAfter(move);
+    }
+
+    private long keyOf(long hash, int movesLeft) {
+        return (hash ^ attackerKey) + movesLeft * MOVES_LEFT_KEY;
+    }
+
+    /**
+     * Look up the numbers of a position.
+     *
+     * @return the numbers, or one for each if the table doesn't hold the position
+     */
+    private long probe(long key) {
+        int index = bucketOf(key);
+        if (table[index] == key) {
+            return table[index + 1];
+        }
+        return table[index + 2] == key ? table[index + 3] : 1L << 32 | 1;
+    }
+
+    /**
+     * Store the numbers of a position first in its bucket, moving the entry that was first to second unless it's for
+     * the same position.
+     */
+    private void store(long key, int phi, int delta) {
+        int index = bucketOf(key);
+        if (table[index] != key) {
+            table[index + 2] = table[index];
+            table[index + 3] = table[index + 1];
+            table[index] = key;
+        }
+        table[index + 1] = (long) phi << 32 | delta;
+    }
+
+    private int bucketOf(long key) {
+        return ((int) (key ^ key >>> 32) & bucketMask) * LONGS_PER_BUCKET;
+    }
+
+    private static int phiOf(long entry) {
+        return (int) (entry >>> 32);
+    }
+
+    private static int deltaOf(long entry) {
+        return (int) entry;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int threadCount = Runtime.getRuntime().availableProcessors();
+        int maxMateLength = 5;
+        long nodeBudget = 10_000_000;
+        String file = null;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--threads") && i + 1 < args.length) {
+                threadCount = Integer.parseInt(args[++i]);
+            }
+            else if (args[i].equals("--moves") && i + 1 < args.length) {
+                maxMateLength = Integer.parseInt(args[++i]);
+            }
+            else if (args[i].equals("--nodes") && i + 1 < args.length) {
+                nodeBudget = Long.parseLong(args[++i]);
+            }
+            else if (file == null && !args[i].startsWith("--")) {
+                file = args[i];
+            }
+            else {
+                System.err.println(USAGE);
+                System.exit(2);
+            }
+        }
+        if (file == null || threadCount < 1 || maxMateLength < 1 || maxMateLength > MAX_MATE_LENGTH
+            || nodeBudget < 1) {
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+
+        // records that aren't valid are reported and left out rather than stopping the run
+        List<String> lineNumbers = new ArrayList<>();
+        List<Game> puzzles = new ArrayList<>();
+        FenValidator validator = new FenValidator();
+        try (BufferedReader reader = Files.newBufferedReader(Paths.get(file), StandardCharsets.ISO_8859_1)) {
+            int lineNumber = 0;
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                lineNumber++;
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                StringBuilder canonical = new StringBuilder();
+                String error = validator.validate(line, canonical);
+                if (error != null) {
+                    System.out.printf("%d\terror\t%s%n", lineNumber, error);
+                    continue;
+                }
+                lineNumbers.add(Integer.toString(lineNumber));
+                puzzles.add(new Game("white", "black", canonical.toString()));
+            }
+        }
+
+        List<MateSolution> solutions = solveAll(puzzles, maxMateLength, nodeBudget, threadCount);
+        for (int i = 0; i < solutions.size(); i++) {
+            MateSolution solution = solutions.get(i);
+            System.out.printf("%s\t%s\t%d nodes%n", lineNumbers.get(i), solution, solution.getNodes());
+        }
+    }
+}
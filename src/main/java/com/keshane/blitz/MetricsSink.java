@@ -0,0 +1,136 @@
+package com.keshane.blitz;
+
+/**
+ * Receives measurements from the hot paths of {@link Game} and its notation parser, once installed with
+ * {@link Game#setMetricsSink(MetricsSink)}.
+ * <p>
+ * Every method is called on the thread doing the work, with plain values so nothing is allocated to report them, and
+ * does nothing unless overridden. Implementations must be thread-safe and quick, since they run inside every move.
+ * <p>
+ * The {@code record} methods carry everything known about an operation, such as the hash of the position, and pass
+ * the parts the simpler methods take on to them. Overriding them instead suits a sink that traces single operations,
+ * such as one that commits Java Flight Recorder events on a JDK that has them:
+ * <pre>{@code
+ * public void recordGeneration(long positionHash, int pseudoLegalCount, int legalCount, long generationNanos,
+ *     long filteringNanos) {
+ *     MoveGenerationEvent event = new MoveGenerationEvent(); // extends jdk.jfr.Event
+ *     if (event.shouldCommit()) {
+ *         event.positionHash = positionHash;
+ *         event.pseudoLegalCount = pseudoLegalCount;
+ *         event.legalCount = legalCount;
+ *         event.commit();
+ *     }
+ * }
+ * }</pre>
+ */
+public interface MetricsSink {
+    /**
+     * The sink installed by default, which records nothing. Nothing is timed while it's installed.
+     */
+    MetricsSink NONE = new MetricsSink() {
+        @Override
+        public boolean isEnabled() {
+            return false;
+        }
+    };
+
+    /**
+     * Whether measurements should be taken at all. Only {@link #NONE} returns false.
+     */
+    default boolean isEnabled() {
+        return true;
+    }
+
+    /**
+     * Record a call to {@link Game#move(String)} or {@link Game#moveUci(int)}.
+     *
+     * @param positionHash the hash of the position the move was made in
+     * @param packedMove   the move made as a {@link PackedMove} or {@link PackedMove#NONE} if it was refused
+     * @param nanos        how long the call took
+     */
+    default void recordMove(long positionHash, int packedMove, long nanos) {
+        recordMoveNanos(nanos);
+    }
+
+    /**
+     * Record the generation of the legal moves of a position.
+     * <p>
+     * A game keeps the destinations of each of its pieces between plies, so for the moves of its own position the
+     * generation time only covers updating the destinations the last move affected. The filtering time then covers
+     * checking the moves that could leave the king in check and building every legal move, castles included. When
+     * moves are generated from scratch, such as to verify a game's moves, the time is split between building the
+     * pseudo-legal moves and filtering out the illegal ones.
+     *
+     * @param positionHash     the hash of the position
+     * @param pseudoLegalCount the number of moves before illegal ones were filtered out
+     * @param legalCount       the number of legal moves
+     * @param generationNanos  how long generating the pseudo-legal moves, or updating the destinations, took
+     * @param filteringNanos   how long filtering out the illegal moves, or checking and building the moves, took
+     */
+    default void recordGeneration(long positionHash, int pseudoLegalCount, int legalCount, long generationNanos,
+        long filteringNanos) {
+        recordGenerationNanos(generationNanos);
+        recordFilteringNanos(filteringNanos);
+        countGeneratedMoves(pseudoLegalCount, legalCount);
+    }
+
+    /**
+     * Record the parsing of a move in algebraic notation.
+     *
+     * @param isParsed whether the notation could be parsed
+     * @param nanos    how long parsing took
+     */
+    default void recordParse(boolean isParsed, long nanos) {
+        recordParseNanos(nanos);
+        if (!isParsed) {
+            countParseFailure();
+        }
+    }
+
+    /**
+     * Record how long a call to {@link Game#move(String)} or {@link Game#moveUci(int)} took, including failed ones.
+     */
+    default void recordMoveNanos(long nanos) {
+    }
+
+    /**
+     * Record how long generating the pseudo-legal moves of a position took, before illegal ones are filtered out, or
+     * how long updating the destinations of the pieces took, as described in {@link #recordGeneration}.
+     */
+    default void recordGenerationNanos(long nanos) {
+    }
+
+    /**
+     * Record how long filtering out the pseudo-legal moves that leave the king in check took, or how long checking
+     * and building the legal moves took, as described in {@link #recordGeneration}.
+     */
+    default void recordFilteringNanos(long nanos) {
+    }
+
+    /**
+     * Record how long parsing a move in algebraic notation took, including failed parses.
+     */
+    default void recordParseNanos(long nanos) {
+    }
+
+    /**
+     * Count the moves generated for a position.
+     *
+     * @param pseudoLegalCount the number of moves before illegal ones were filtered out
+     * @param legalCount       the number of legal moves
+     */
+    default void countGeneratedMoves(int pseudoLegalCount, int legalCount) {
+    }
+
+    /**
+     * Count a move whose notation couldn't be parsed.
+     */
+    default void countParseFailure() {
+    }
+
+    /**
+     * Count a move that was refused because it isn't legal in the position.
+     */
+    default void countIllegalMove() {
+    }
+}
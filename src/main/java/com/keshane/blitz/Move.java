@@ -1,7 +1,12 @@
 package com.keshane.blitz;
 
 // TODO rename this to Move after deleting previous Move
-interface Move {
+/**
+ * A move that can be made by the player to move.
+ * <p>
+ * Moves are obtained from a {@link Game} and are only meaningful in the position they were generated for.
+ */
+public interface Move {
     Square getSource();
     Square getDestination();
     Piece getMovingPiece();
@@ -10,4 +15,12 @@ interface Move {
     void makeMoveOnBoard(Board board);
     boolean isAMatch(InterpretedNotation rawMove);
 
+    /**
+     * Create a copy of this move that is marked as putting the enemy king in check.
+     *
+     * @param isCheckmate whether the check is also checkmate
+     * @return the marked copy
+     */
+    Move withCheck(boolean isCheckmate);
+
 }
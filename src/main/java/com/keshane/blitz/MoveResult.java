@@ -6,6 +6,7 @@ import java.util.List;
 public class MoveResult {
     private List<String> errors = new ArrayList<>();
     private List<String> warnings = new ArrayList<>();
+    private GameStatus status = GameStatus.IN_PROGRESS;
 
     MoveResult() {
     }
@@ -40,6 +41,31 @@ public class MoveResult {
         warnings.add(warningMessage);
     }
 
+    /**
+     * Get the state of the game after the move was attempted.
+     *
+     * @return the {@link GameStatus} for the player that is now to move
+     */
+    public GameStatus getStatus() {
+        return status;
+    }
+
+    void setStatus(GameStatus status) {
+        if (status == null) {
+            throw new IllegalArgumentException("Game status can't be null");
+        }
+        this.status = status;
+    }
+
+    /**
+     * Forget the errors and warnings, so the result can be used for another move.
+     */
+    void clear() {
+        errors.clear();
+        warnings.clear();
+        status = GameStatus.IN_PROGRESS;
+    }
+
     private void checkInputMessage(String message) {
         if (message == null) {
             throw new IllegalArgumentException("Error or warning message can't be null");
@@ -0,0 +1,274 @@
+package com.keshane.blitz;
+
+import java.util.Set;
+
+/**
+ * Applies the rules of chess to moves given as {@link PackedMove}s, working only on {@link Bitboard}s so that
+ * nothing is allocated.
+ * <p>
+ * This is what lets a {@link Game} check and make a move without generating every legal move as an object first:
+ * a move is legal if the piece on its source can get to its destination and the mover's king isn't attacked
+ * afterwards, which is worked out from the occupancy the move leaves behind without making it on a board.
+ */
+final class MoveRules {
+    private static final Role[] ROLES_WITHOUT_KING = new Role[]{Role.KNIGHT, Role.PAWN, Role.BISHOP, Role.ROOK,
+        Role.QUEEN};
+    private static final Color[] COLORS = Color.values();
+
+    private MoveRules() {
+        // no instances
+    }
+
+    /**
+     * Checks whether a square is attacked by any piece of a color.
+     *
+     * @param target    the square
+     * @param attacker  the color whose pieces may attack it
+     * @param board     the position of the pieces
+     * @param occupancy the occupied squares, which block sliding pieces
+     * @param ignored   squares whose pieces don't attack, such as a piece just captured
+     * @return whether any of the attacker's pieces that aren't ignored attack the square
+     */
+    static boolean isAttacked(Square target, Color attacker, Board board, long occupancy, long ignored) {
+        long candidates = board.getOccupancy(attacker) & ~ignored;
+        if ((Bitboard.pawnAttacks(attacker.opposite(), target) & candidates
+            & board.getBitboard(Piece.from(attacker, Role.PAWN))) != 0) {
+            return true;
+        }
+        if ((Bitboard.knightAttacks(target) & candidates & board.getBitboard(Piece.from(attacker, Role.KNIGHT)))
+            != 0) {
+            return true;
+        }
+        if ((Bitboard.kingAttacks(target) & candidates & board.getBitboard(Piece.from(attacker, Role.KING))) != 0) {
+            return true;
+        }
+        long queens = board.getBitboard(Piece.from(attacker, Role.QUEEN));
+        long diagonalAttackers = (board.getBitboard(Piece.from(attacker, Role.BISHOP)) | queens) & candidates;
+        if (diagonalAttackers != 0 && (Bitboard.bishopAttacks(target, occupancy) & diagonalAttackers) != 0) {
+            return true;
+        }
+        long straightAttackers = (board.getBitboard(Piece.from(attacker, Role.ROOK)) | queens) & candidates;
+        return straightAttackers != 0 && (Bitboard.rookAttacks(target, occupancy) & straightAttackers) != 0;
+    }
+
+    /**
+     * Checks whether a move is legal.
+     *
+     * @param packedMove       the move as a {@link PackedMove}, with castles given as the king's move
+     * @param mover            the player to move
+     * @param board            the position of the pieces
+     * @param enPassantTarget  the square that can be moved to in an en passant or null if there is none
+     * @param availableCastles the castles still available, as described in {@link Game}
+     * @return whether the move is legal
+     */
+    static boolean isLegal(int packedMove, Color mover, Board board, Square enPassantTarget,
+        Set<Piece> availableCastles) {
+        if (!PackedMove.isValid(packedMove)) {
+            return false;
+        }
+        Square source = Square.fromIndex(PackedMove.sourceIndex(packedMove));
+        Square destination = Square.fromIndex(PackedMove.destinationIndex(packedMove));
+        Role promotion = PackedMove.promotion(packedMove);
+        Piece piece = board.getPieceOn(source);
+        if (piece == null || piece.getColor() != mover
+            || (board.getOccupancy(mover) & Bitboard.of(destination)) != 0) {
+            return false;
+        }
+
+        Role role = piece.getRole();
+        if (role == Role.PAWN) {
+            if ((destination.rank == mover.opposite().backRank()) != (promotion != null)) {
+                return false;
+            }
+            return isPawnMovePossible(mover, board, source, destination, enPassantTarget)
+                && isKingSafeAfter(mover, board, source, destination, destination == enPassantTarget);
+        }
+        if (promotion != null) {
+            return false;
+        }
+        if (role == Role.KING && Math.abs(destination.file - source.file) == 2) {
+            return isCastlePossible(mover, board, source, destination, availableCastles);
+        }
+        return (Bitboard.attacks(role, mover, source, board.getOccupancy()) & Bitboard.of(destination)) != 0
+            && isKingSafeAfter(mover, board, source, destination, false);
+    }
+
+    /**
+     * Checks whether the specified player has at least one legal move, stopping at the first one found.
+     * <p>
+     * Castles don't need to be considered: a legal castle requires the square next to the king to be empty and not
+     * attacked, in which case the king can also legally step onto that square.
+     */
+    static boolean hasAnyLegalMove(Color mover, Board board, Square enPassantTarget) {
+        long own = board.getOccupancy(mover);
+        long occupancy = board.getOccupancy();
+        Square kingSquare = board.getKingLocation(mover);
+        // king moves are tried first since there are few of them and they are the likeliest way out of a check
+        if (hasLegalDestination(mover, board, kingSquare, Bitboard.kingAttacks(kingSquare) & ~own, false)) {
+            return true;
+        }
+        for (Role role : ROLES_WITHOUT_KING) {
+            for (long pieces = board.getBitboard(Piece.from(mover, role)); pieces != 0; pieces &= pieces - 1) {
+                Square source = Bitboard.first(pieces);
+                long destinations;
+                if (role == Role.PAWN) {
+                    destinations = getPawnDestinations(mover, board, source, enPassantTarget);
+                }
+                else {
+                    destinations = Bitboard.attacks(role, mover, source, occupancy) & ~own;
+                }
+                if (hasLegalDestination(mover, board, source, destinations, role == Role.PAWN)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Make a legal move on a board, including the rook's part of a castle, the pawn taken en passant and the piece
+     * a pawn promotes to.
+     */
+    static void makeMove(int packedMove, Board board, Square enPassantTarget) {
+        Square source = Square.fromIndex(PackedMove.sourceIndex(packedMove));
+        Square destination = Square.fromIndex(PackedMove.destinationIndex(packedMove));
+        Piece piece = board.getPieceOn(source);
+        Role promotion = PackedMove.promotion(packedMove);
+        if (promotion != null) {
+            if (board.getPieceOn(destination) != null) {
+                board.remove(destination);
+            }
+            board.remove(source);
+            board.place(Piece.from(piece.getColor(), promotion), destination);
+            return;
+        }
+        board.move(source, destination);
+        if (piece.getRole() == Role.PAWN && destination == enPassantTarget) {
+            board.remove(Square.of(destination.file, source.rank));
+        }
+        else if (piece.getRole() == Role.KING && Math.abs(destination.file - source.file) == 2) {
+            boolean isKingside = destination.file > source.file;
+            board.move(Square.of(isKingside ? 7 : 0, source.rank), Square.of(isKingside ? 5 : 3, source.rank));
+        }
+    }
+
+    /**
+     * Removes the castles that are no longer available after a move: a castle is lost when anything moves from or to
+     * the square of its king or rook.
+     */
+    static void updateAvailableCastles(int packedMove, Set<Piece> availableCastles) {
+        if (availableCastles.isEmpty()) {
+            return;
+        }
+        removeCastlesOf(Square.fromIndex(PackedMove.sourceIndex(packedMove)), availableCastles);
+        removeCastlesOf(Square.fromIndex(PackedMove.destinationIndex(packedMove)), availableCastles);
+    }
+
+    /**
+     * Gets the square that can be moved to in an en passant after a move is made.
+     *
+     * @param board the position before the move
+     * @return the square skipped over by a pawn moving two squares or null if the move isn't one
+     */
+    static Square getEnPassantTargetAfter(int packedMove, Board board) {
+        Square source = Square.fromIndex(PackedMove.sourceIndex(packedMove));
+        Square destination = Square.fromIndex(PackedMove.destinationIndex(packedMove));
+        Piece piece = board.getPieceOn(source);
+        if (piece != null && piece.getRole() == Role.PAWN && Math.abs(destination.rank - source.rank) == 2) {
+            return Square.of(source.file, (source.rank + destination.rank) / 2);
+        }
+        return null;
+    }
+
+    private static void removeCastlesOf(Square square, Set<Piece> availableCastles) {
+        for (Color color : COLORS) {
+            if (square.rank != color.backRank()) {
+                continue;
+            }
+            if (square.file == 4 || square.file == 7) {
+                availableCastles.remove(Piece.from(color, Role.KING));
+            }
+            if (square.file == 4 || square.file == 0) {
+                availableCastles.remove(Piece.from(color, Role.QUEEN));
+            }
+        }
+    }
+
+    private static boolean hasLegalDestination(Color mover, Board board, Square source, long destinations,
+        boolean isPawn) {
+        for (; destinations != 0; destinations &= destinations - 1) {
+            Square destination = Bitboard.first(destinations);
+            boolean isEnPassant = isPawn && destination.file != source.file && board.getPieceOn(destination) == null;
+            if (isKingSafeAfter(mover, board, source, destination, isEnPassant)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static long getPawnDestinations(Color mover, Board board, Square source, Square enPassantTarget) {
+        long occupancy = board.getOccupancy();
+        long captures = board.getOccupancy(mover.opposite());
+        if (enPassantTarget != null) {
+            captures |= Bitboard.of(enPassantTarget);
+        }
+        long destinations = Bitboard.pawnAttacks(mover, source) & captures;
+        int forward = mover == Color.WHITE ? 1 : -1;
+        Square push = Square.of(source.file, source.rank + forward);
+        if ((occupancy & Bitboard.of(push)) == 0) {
+            destinations |= Bitboard.of(push);
+            if (source.rank == (mover == Color.WHITE ? 1 : 6)) {
+                Square doublePush = Square.of(source.file, source.rank + 2 * forward);
+                if ((occupancy & Bitboard.of(doublePush)) == 0) {
+                    destinations |= Bitboard.of(doublePush);
+                }
+            }
+        }
+        return destinations;
+    }
+
+    private static boolean isPawnMovePossible(Color mover, Board board, Square source, Square destination,
+        Square enPassantTarget) {
+        return (getPawnDestinations(mover, board, source, enPassantTarget) & Bitboard.of(destination)) != 0;
+    }
+
+    private static boolean isCastlePossible(Color mover, Board board, Square source, Square destination,
+        Set<Piece> availableCastles) {
+        int backRank = mover.backRank();
+        boolean isKingside = destination.file > source.file;
+        if (source != Square.of(4, backRank) || destination.rank != backRank
+            || !availableCastles.contains(Piece.from(mover, isKingside ? Role.KING : Role.QUEEN))
+            || board.getPieceOn(Square.of(isKingside ? 7 : 0, backRank)) != Piece.from(mover, Role.ROOK)) {
+            return false;
+        }
+        Square rookSquare = Square.of(isKingside ? 7 : 0, backRank);
+        long occupancy = board.getOccupancy();
+        if ((Bitboard.between(source, rookSquare) & occupancy) != 0) {
+            return false;
+        }
+        // the king can't castle out of, through or into check
+        Color enemy = mover.opposite();
+        Square passedSquare = Square.of(isKingside ? 5 : 3, backRank);
+        if (isAttacked(source, enemy, board, occupancy, 0) || isAttacked(passedSquare, enemy, board, occupancy, 0)) {
+            return false;
+        }
+        long occupancyAfter = occupancy ^ Bitboard.of(source) ^ Bitboard.of(rookSquare) | Bitboard.of(destination)
+            | Bitboard.of(passedSquare);
+        return !isAttacked(destination, enemy, board, occupancyAfter, 0);
+    }
+
+    /**
+     * Checks whether the mover's king is safe after a move that isn't a castle, without making the move.
+     */
+    static boolean isKingSafeAfter(Color mover, Board board, Square source, Square destination,
+        boolean isEnPassant) {
+        long captured = Bitboard.of(destination);
+        if (isEnPassant) {
+            captured = Bitboard.of(Square.of(destination.file, source.rank));
+        }
+        long occupancy = (board.getOccupancy() & ~captured & ~Bitboard.of(source)) | Bitboard.of(destination);
+        Square kingSquare = board.getPieceOn(source).getRole() == Role.KING ? destination
+            : board.getKingLocation(mover);
+        return !isAttacked(kingSquare, mover.opposite(), board, occupancy, captured);
+    }
+}
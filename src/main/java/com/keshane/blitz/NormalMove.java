@@ -67,6 +67,11 @@ class NormalMove implements Move, Capture {
         return capturedPiece == null ? null : destination;
     }
 
+    @Override
+    public Move withCheck(boolean isCheckmate) {
+        return new NormalMove(movingPiece, source, destination, capturedPiece, true, isCheckmate);
+    }
+
     @Override
     public boolean isAMatch(InterpretedNotation rawMove) {
         if (!rawMove.moveTypes.contains(MoveType.NORMAL)) {
@@ -24,6 +24,23 @@ class NotationParser {
 
 
     static InterpretedNotation parseMove(String notation) throws ParseException {
+        MetricsSink metrics = Game.getMetricsSink();
+        if (!metrics.isEnabled()) {
+            return parse(notation);
+        }
+        long startNanos = System.nanoTime();
+        boolean isParsed = false;
+        try {
+            InterpretedNotation move = parse(notation);
+            isParsed = true;
+            return move;
+        }
+        finally {
+            metrics.recordParse(isParsed, System.nanoTime() - startNanos);
+        }
+    }
+
+    private static InterpretedNotation parse(String notation) throws ParseException {
         if (notation == null || notation.isEmpty()) {
             throw new ParseException("Notation must be a non-empty input", 0);
         }
@@ -0,0 +1,99 @@
+package com.keshane.blitz;
+
+/**
+ * Writes algebraic notation for moves, the counterpart of {@link NotationParser}.
+ */
+class NotationWriter {
+    private static final String CASTLE_KINGSIDE = "O-O";
+    private static final String CASTLE_QUEENSIDE = "O-O-O";
+    private static final char MINIMUM_FILE_CHARACTER = 'a';
+    private static final char MINIMUM_RANK_CHARACTER = '1';
+    private static final char CAPTURE = 'x';
+    private static final char PROMOTION = '=';
+    private static final char CHECK = '+';
+    private static final char CHECKMATE = '#';
+
+    /**
+     * Appends the standard algebraic notation (SAN) of a move.
+     * <p>
+     * The source square is only written to the extent needed to tell the move apart from other legal moves of the
+     * same role to the same destination: the file if that's enough, otherwise the rank, otherwise both.
+     *
+     * @param move                   the legal move to write
+     * @param sameDestinationSources a {@link Bitboard} of the sources of every legal move with the same moving role
+     *                               and destination as the move, including the move itself
+     * @param notation               where to write the notation
+     */
+    static void appendSan(Move move, long sameDestinationSources, StringBuilder notation) {
+        if (move instanceof KingsideCastle) {
+            notation.append(CASTLE_KINGSIDE);
+        }
+        else if (move instanceof QueensideCastle) {
+            notation.append(CASTLE_QUEENSIDE);
+        }
+        else {
+            Square source = move.getSource();
+            Role role = move.getMovingPiece().getRole();
+            boolean isCapture = move instanceof Capture && ((Capture) move).isCapture();
+            if (role == Role.PAWN) {
+                // a pawn capture always names the file the pawn came from
+                if (isCapture) {
+                    appendFile(source.file, notation);
+                }
+            }
+            else {
+                notation.append(role.getNotation());
+                appendDisambiguation(source, sameDestinationSources & ~Bitboard.of(source), notation);
+            }
+            if (isCapture) {
+                notation.append(CAPTURE);
+            }
+            appendFile(move.getDestination().file, notation);
+            appendRank(move.getDestination().rank, notation);
+            if (move instanceof Promotion) {
+                notation.append(PROMOTION);
+                notation.append(((Promotion) move).getPromotedPiece().getRole().getNotation());
+            }
+        }
+        appendCheckSuffix(move, notation);
+    }
+
+    private static void appendDisambiguation(Square source, long otherSources, StringBuilder notation) {
+        if (otherSources == 0) {
+            return;
+        }
+        if ((otherSources & Bitboard.fileMask(source.file)) == 0) {
+            appendFile(source.file, notation);
+        }
+        else if ((otherSources & Bitboard.rankMask(source.rank)) == 0) {
+            appendRank(source.rank, notation);
+        }
+        else {
+            appendFile(source.file, notation);
+            appendRank(source.rank, notation);
+        }
+    }
+
+    private static void appendFile(int file, StringBuilder notation) {
+        notation.append((char) (MINIMUM_FILE_CHARACTER + file));
+    }
+
+    private static void appendRank(int rank, StringBuilder notation) {
+        notation.append((char) (MINIMUM_RANK_CHARACTER + rank));
+    }
+
+    /**
+     * Appends the suffix that marks a move as check ({@code +}) or checkmate ({@code #}), if any.
+     *
+     * @param move     the move whose check flags should be written
+     * @param notation where to write the suffix
+     */
+    static void appendCheckSuffix(Move move, StringBuilder notation) {
+        if (move.isCheckmate()) {
+            notation.append(CHECKMATE);
+        }
+        else if (move.isCheck()) {
+            notation.append(CHECK);
+        }
+    }
+}
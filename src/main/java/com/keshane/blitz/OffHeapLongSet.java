@@ -0,0 +1,430 @@
+package com.keshane.blitz;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * A set of {@code long}s, such as position hashes, kept outside the Java heap so it can grow to billions of values.
+ * <p>
+ * The values live in an open-addressing table with linear probing, held in direct {@link ByteBuffer}s of up to 1 GB
+ * each. 0 marks an empty slot, so the value 0 itself is tracked apart from the table. The table doubles when it gets
+ * 70% full, as long as the memory limit allows both the old and the new table, which are held together while the
+ * values move over.
+ * <p>
+ * Once the limit is reached, the set can spill to disk: the table is sorted in place, written to a file as a sorted
+ * run and emptied. {@link #add(long)} then only knows about the values added since the last spill, and
+ * {@link #getUniqueCount()} merges the runs to count the distinct values. Without a directory to spill to, a full set
+ * throws.
+ * <p>
+ * Direct memory is limited by {@code -XX:MaxDirectMemorySize}, which is the maximum heap size by default. A set isn't
+ * safe for use by more than one thread at a time.
+ */
+public final class OffHeapLongSet implements AutoCloseable {
+    /**
+     * The most slots in one buffer, which makes a 1 GB buffer.
+     */
+    private static final int SEGMENT_SHIFT = 27;
+    private static final long SEGMENT_MASK = (1L << SEGMENT_SHIFT) - 1;
+    private static final int INITIAL_CAPACITY = 1 << 16;
+    private static final int MAX_LOAD_PERCENT = 70;
+
+    private final long maxMemoryBytes;
+    private final Path spillDirectory;
+    private final List<Path> spillFiles = new ArrayList<>();
+
+    private ByteBuffer[] segments;
+    private long capacity;
+    private long mask;
+    /**
+     * The number of values in the table, which doesn't count 0.
+     */
+    private long size;
+    private boolean containsZero;
+
+    private long addCount;
+    /**
+     * The number of adds of values other than 0, which are the ones that probe the table.
+     */
+    private long probedAddCount;
+    /**
+     * The number of adds that found their first slot taken by another value.
+     */
+    private long collisionCount;
+    private long totalProbeLength;
+    private long maxProbeLength;
+    /**
+     * The number of distinct values counted when the runs were last merged, or -1 if they have changed since.
+     */
+    private long mergedUniqueCount = -1;
+
+    /**
+     * Construct an empty set that throws once it outgrows its memory.
+     *
+     * @param maxMemoryBytes the most direct memory the table may use, which must be at least 1 KB
+     */
+    public OffHeapLongSet(long maxMemoryBytes) {
+        this(maxMemoryBytes, null);
+    }
+
+    /**
+     * Construct an empty set.
+     *
+     * @param maxMemoryBytes the most direct memory the table may use, which must be at least 1 KB
+     * @param spillDirectory where to write sorted runs once the table outgrows its memory, or null to throw instead
+     */
+    public OffHeapLongSet(long maxMemoryBytes, Path spillDirectory) {
+        if (maxMemoryBytes < 1024) {
+            throw new IllegalArgumentException("A set needs at least 1 KB of memory.");
+        }
+        this.maxMemoryBytes = maxMemoryBytes;
+        this.spillDirectory = spillDirectory;
+        allocate(Math.min(INITIAL_CAPACITY, Long.highestOneBit(maxMemoryBytes / Long.BYTES)));
+    }
+
+    /**
+     * Add a value.
+     *
+     * @param value the value
+     * @return whether the value is new since the last spill to disk
+     * @throws IllegalStateException if the set is full and can't spill
+     * @throws UncheckedIOException  if spilling fails
+     */
+    public boolean add(long value) {
+        addCount++;
+        if (value == 0) {
+            boolean isNew = !containsZero;
+            containsZero = true;
+            return isNew;
+        }
+        probedAddCount++;
+        if ((size + 1) * 100 > capacity * MAX_LOAD_PERCENT) {
+            makeRoom();
+        }
+
+        long slot = mix(value) & mask;
+        long probeLength = 0;
+        for (long stored = get(slot); stored != 0; stored = get(slot)) {
+            if (stored == value) {
+                recordProbe(probeLength);
+                return false;
+            }
+            slot = (slot + 1) & mask;
+            probeLength++;
+        }
+        set(slot, value);
+        size++;
+        mergedUniqueCount = -1;
+        recordProbe(probeLength);
+        return true;
+    }
+
+    /**
+     * Checks whether a value has been added since the last spill to disk.
+     */
+    public boolean contains(long value) {
+        if (value == 0) {
+            return containsZero;
+        }
+        long slot = mix(value) & mask;
+        for (long stored = get(slot); stored != 0; stored = get(slot)) {
+            if (stored == value) {
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * Count the distinct values ever added, merging the runs on disk if there are any.
+     * <p>
+     * With runs on disk, the values in memory are spilled too, so the table starts over empty.
+     *
+     * @return the number of distinct values
+     * @throws UncheckedIOException if the runs can't be read
+     */
+    public long getUniqueCount() {
+        long zeroCount = containsZero ? 1 : 0;
+        if (spillFiles.isEmpty()) {
+            return size + zeroCount;
+        }
+        if (size > 0) {
+            spill();
+        }
+        if (mergedUniqueCount < 0) {
+            mergedUniqueCount = mergeRuns();
+        }
+        return mergedUniqueCount + zeroCount;
+    }
+
+    public long getAddCount() {
+        return addCount;
+    }
+
+    /**
+     * Get the number of adds that found their first slot taken by another value and had to probe further.
+     */
+    public long getCollisionCount() {
+        return collisionCount;
+    }
+
+    /**
+     * Get the average number of slots probed past the first per add of a value other than 0.
+     */
+    public double getAverageProbeLength() {
+        return probedAddCount == 0 ? 0 : (double) totalProbeLength / probedAddCount;
+    }
+
+    public long getMaxProbeLength() {
+        return maxProbeLength;
+    }
+
+    /**
+     * Get the number of sorted runs written to disk.
+     */
+    public int getSpillCount() {
+        return spillFiles.size();
+    }
+
+    /**
+     * Get the number of slots in the table.
+     */
+    public long getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Estimate how many pairs of distinct values from a uniformly random 64-bit hash, such as a Zobrist hash, are
+     * expected to share a hash among a number of unique values. Such pairs are counted as one value.
+     *
+     * @param uniqueCount the number of unique values
+     * @return the expected number of pairs sharing a hash
+     */
+    public static double getExpectedHashCollisions(long uniqueCount) {
+        double count = uniqueCount;
+        return count * (count - 1) / 2 / Math.pow(2, 64);
+    }
+
+    /**
+     * Let go of the table's memory and delete the runs on disk.
+     *
+     * @throws UncheckedIOException if a run can't be deleted
+     */
+    @Override
+    public void close() {
+        segments = new ByteBuffer[0];
+        capacity = 0;
+        size = 0;
+        try {
+            for (Path file : spillFiles) {
+                Files.deleteIfExists(file);
+            }
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        spillFiles.clear();
+    }
+
+    private void recordProbe(long probeLength) {
+        if (probeLength > 0) {
+            collisionCount++;
+            totalProbeLength += probeLength;
+            maxProbeLength = Math.max(maxProbeLength, probeLength);
+        }
+    }
+
+    private void makeRoom() {
+        // the old table is kept while its values move to the new one, so both count against the limit
+        if ((capacity + capacity * 2) * Long.BYTES <= maxMemoryBytes) {
+            ByteBuffer[] oldSegments = segments;
+            long oldCapacity = capacity;
+            allocate(capacity * 2);
+            size = 0;
+            for (long slot = 0; slot < oldCapacity; slot++) {
+                long value = get(oldSegments, slot);
+                if (value != 0) {
+                    insertNew(value);
+                }
+            }
+        }
+        else if (spillDirectory != null) {
+            spill();
+        }
+        else {
+            throw new IllegalStateException(String.format("The set is full at %d values", size));
+        }
+    }
+
+    /**
+     * Insert a value known not to be in the table, such as while rehashing.
+     */
+    private void insertNew(long value) {
+        long slot = mix(value) & mask;
+        while (get(slot) != 0) {
+            slot = (slot + 1) & mask;
+        }
+        set(slot, value);
+        size++;
+    }
+
+    /**
+     * Sort the values in the table and write them to a new run on disk, then empty the table.
+     */
+    private void spill() {
+        // move the values to the front of the table, which makes room to sort them in place
+        long count = 0;
+        for (long slot = 0; slot < capacity; slot++) {
+            long value = get(slot);
+            if (value != 0) {
+                set(slot, 0);
+                set(count++, value);
+            }
+        }
+        heapSort(count);
+        try {
+            Path file = Files.createTempFile(spillDirectory, "positions-", ".run");
+            spillFiles.add(file);
+            try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(file), 1 << 16))) {
+                for (long slot = 0; slot < count; slot++) {
+                    output.writeLong(get(slot));
+                }
+            }
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        for (long slot = 0; slot < count; slot++) {
+            set(slot, 0);
+        }
+        size = 0;
+        mergedUniqueCount = -1;
+    }
+
+    /**
+     * Count the distinct values across the runs on disk by merging them.
+     */
+    private long mergeRuns() {
+        List<DataInputStream> inputs = new ArrayList<>();
+        PriorityQueue<long[]> heads = new PriorityQueue<>((first, second) -> Long.compare(first[0], second[0]));
+        try {
+            for (Path file : spillFiles) {
+                DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file),
+                    1 << 16));
+                inputs.add(input);
+                // each head holds the run's current value and its index in inputs
+                heads.add(new long[]{input.readLong(), inputs.size() - 1});
+            }
+            long uniqueCount = 0;
+            boolean isFirst = true;
+            long previous = 0;
+            while (!heads.isEmpty()) {
+                long[] head = heads.poll();
+                if (isFirst || head[0] != previous) {
+                    uniqueCount++;
+                    previous = head[0];
+                    isFirst = false;
+                }
+                try {
+                    head[0] = inputs.get((int) head[1]).readLong();
+                    heads.add(head);
+                }
+                catch (EOFException e) {
+                    // the run is used up
+                }
+            }
+            return uniqueCount;
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        finally {
+            for (DataInputStream input : inputs) {
+                try {
+                    input.close();
+                }
+                catch (IOException e) {
+                    // nothing more to read from it anyway
+                }
+            }
+        }
+    }
+
+    /**
+     * Sort the first values of the table in place, as signed {@code long}s.
+     */
+    private void heapSort(long count) {
+        for (long parent = count / 2 - 1; parent >= 0; parent--) {
+            siftDown(parent, count);
+        }
+        for (long end = count - 1; end > 0; end--) {
+            long largest = get(0);
+            set(0, get(end));
+            set(end, largest);
+            siftDown(0, end);
+        }
+    }
+
+    private void siftDown(long parent, long count) {
+        long value = get(parent);
+        for (long child = parent * 2 + 1; child < count; child = parent * 2 + 1) {
+            if (child + 1 < count && get(child + 1) > get(child)) {
+                child++;
+            }
+            long childValue = get(child);
+            if (value >= childValue) {
+                break;
+            }
+            set(parent, childValue);
+            parent = child;
+        }
+        set(parent, value);
+    }
+
+    private void allocate(long newCapacity) {
+        int segmentCount = (int) Math.max(1, newCapacity >>> SEGMENT_SHIFT);
+        long slotsPerSegment = Math.min(newCapacity, 1L << SEGMENT_SHIFT);
+        segments = new ByteBuffer[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = ByteBuffer.allocateDirect((int) (slotsPerSegment * Long.BYTES))
+                .order(ByteOrder.nativeOrder());
+        }
+        capacity = newCapacity;
+        mask = newCapacity - 1;
+    }
+
+    private long get(long slot) {
+        return get(segments, slot);
+    }
+
+    private static long get(ByteBuffer[] segments, long slot) {
+        return segments[(int) (slot >>> SEGMENT_SHIFT)].getLong((int) (slot & SEGMENT_MASK) * Long.BYTES);
+    }
+
+    private void set(long slot, long value) {
+        segments[(int) (slot >>> SEGMENT_SHIFT)].putLong((int) (slot & SEGMENT_MASK) * Long.BYTES, value);
+    }
+
+    /**
+     * Spread the bits of a value over the slot index, since values other than hashes may differ only in a few bits.
+     */
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        return value;
+    }
+}
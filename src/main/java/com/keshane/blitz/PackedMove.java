@@ -0,0 +1,189 @@
+package com.keshane.blitz;
+
+/**
+ * Encodes moves as {@code int}s and converts them to and from UCI long algebraic notation (such as {@code e2e4} or
+ * {@code e7e8q}).
+ * <p>
+ * Squares are given by index, {@code rank * 8 + file}, so a1 is 0, h1 is 7 and h8 is 63. A packed move holds the
+ * source index in bits 0-5, the destination index in bits 6-11 and the ordinal of the {@link Role} promoted to in
+ * bits 12-14, which is 0 when the move is not a promotion. Castles are encoded as the king's move, such as
+ * {@code e1g1}.
+ */
+public final class PackedMove {
+    /**
+     * Returned in place of a packed move when there is no valid move to return.
+     */
+    public static final int NONE = -1;
+
+    private static final int SQUARE_MASK = 0x3F;
+    private static final int DESTINATION_SHIFT = 6;
+    private static final int PROMOTION_SHIFT = 12;
+    private static final int PROMOTION_MASK = 0x7;
+    private static final Role[] ROLES = Role.values();
+    private static final char MINIMUM_FILE_CHARACTER = 'a';
+    private static final char MINIMUM_RANK_CHARACTER = '1';
+
+    private PackedMove() {
+        // no instances
+    }
+
+    /**
+     * Pack a move that is not a promotion.
+     *
+     * @param sourceIndex      the index of the square moved from
+     * @param destinationIndex the index of the square moved to
+     * @return the packed move
+     */
+    public static int of(int sourceIndex, int destinationIndex) {
+        checkIndex(sourceIndex);
+        checkIndex(destinationIndex);
+        return sourceIndex | destinationIndex << DESTINATION_SHIFT;
+    }
+
+    /**
+     * Pack a move.
+     *
+     * @param sourceIndex      the index of the square moved from
+     * @param destinationIndex the index of the square moved to
+     * @param promotion        the role a pawn is promoted to or null if the move isn't a promotion
+     * @return the packed move
+     */
+    public static int of(int sourceIndex, int destinationIndex, Role promotion) {
+        if (promotion == Role.PAWN || promotion == Role.KING) {
+            throw new IllegalArgumentException("Can't promote to " + promotion);
+        }
+        int packedPromotion = promotion == null ? 0 : promotion.ordinal();
+        return of(sourceIndex, destinationIndex) | packedPromotion << PROMOTION_SHIFT;
+    }
+
+    static int of(Move move) {
+        return of(move.getSource().ordinal(), move.getDestination().ordinal(), getPromotionRole(move));
+    }
+
+    /**
+     * Get the role a move promotes to.
+     *
+     * @return the promoted role or null if the move isn't a promotion
+     */
+    static Role getPromotionRole(Move move) {
+        return move instanceof Promotion ? ((Promotion) move).getPromotedPiece().getRole() : null;
+    }
+
+    public static int sourceIndex(int packedMove) {
+        return packedMove & SQUARE_MASK;
+    }
+
+    public static int destinationIndex(int packedMove) {
+        return packedMove >>> DESTINATION_SHIFT & SQUARE_MASK;
+    }
+
+    /**
+     * Checks whether an int could be a packed move, with a promotion to a role that can be promoted to if any.
+     */
+    static boolean isValid(int packedMove) {
+        return packedMove >= 0 && packedMove >>> PROMOTION_SHIFT <= Role.QUEEN.ordinal();
+    }
+
+    /**
+     * Get the role a packed move promotes to.
+     *
+     * @return the promoted role or null if the move isn't a promotion
+     */
+    public static Role promotion(int packedMove) {
+        int packedPromotion = packedMove >>> PROMOTION_SHIFT & PROMOTION_MASK;
+        return packedPromotion == 0 ? null : ROLES[packedPromotion];
+    }
+
+    /**
+     * Parse UCI long algebraic notation.
+     *
+     * @param uciMove the notation, such as {@code e2e4} or {@code e7e8q}
+     * @return the packed move or {@link #NONE} if the notation isn't valid
+     */
+    public static int parseUci(CharSequence uciMove) {
+        if (uciMove == null || (uciMove.length() != 4 && uciMove.length() != 5)) {
+            return NONE;
+        }
+        int sourceIndex = parseSquare(uciMove, 0);
+        int destinationIndex = parseSquare(uciMove, 2);
+        if (sourceIndex == NONE || destinationIndex == NONE) {
+            return NONE;
+        }
+        if (uciMove.length() == 4) {
+            return of(sourceIndex, destinationIndex);
+        }
+        Role promotion = parsePromotion(uciMove.charAt(4));
+        if (promotion == null) {
+            return NONE;
+        }
+        return of(sourceIndex, destinationIndex, promotion);
+    }
+
+    private static Role parsePromotion(char notation) {
+        switch (Character.toLowerCase(notation)) {
+            case 'q':
+                return Role.QUEEN;
+            case 'r':
+                return Role.ROOK;
+            case 'b':
+                return Role.BISHOP;
+            case 'n':
+                return Role.KNIGHT;
+            default:
+                return null;
+        }
+    }
+
+    private static int parseSquare(CharSequence notation, int index) {
+        int file = notation.charAt(index) - MINIMUM_FILE_CHARACTER;
+        int rank = notation.charAt(index + 1) - MINIMUM_RANK_CHARACTER;
+        if (file < 0 || file > 7 || rank < 0 || rank > 7) {
+            return NONE;
+        }
+        return rank * 8 + file;
+    }
+
+    /**
+     * Write the UCI long algebraic notation of a packed move.
+     * <p>
+     * An int that isn't a packed move, such as {@link #NONE}, is written as the null move {@code 0000}.
+     *
+     * @param packedMove the move to write
+     * @param notation   where to write the notation
+     */
+    public static void appendUci(int packedMove, StringBuilder notation) {
+        if (!isValid(packedMove)) {
+            notation.append("0000");
+            return;
+        }
+        appendSquare(sourceIndex(packedMove), notation);
+        appendSquare(destinationIndex(packedMove), notation);
+        Role promotion = promotion(packedMove);
+        if (promotion != null) {
+            notation.append(Character.toLowerCase(promotion.getNotation().charAt(0)));
+        }
+    }
+
+    /**
+     * Get the UCI long algebraic notation of a packed move.
+     *
+     * @param packedMove the move to write
+     * @return the notation, such as {@code e2e4} or {@code e7e8q}, or {@code 0000} if the int isn't a packed move
+     */
+    public static String toUci(int packedMove) {
+        StringBuilder notation = new StringBuilder(5);
+        appendUci(packedMove, notation);
+        return notation.toString();
+    }
+
+    private static void appendSquare(int index, StringBuilder notation) {
+        notation.append((char) (MINIMUM_FILE_CHARACTER + index % 8));
+        notation.append((char) (MINIMUM_RANK_CHARACTER + index / 8));
+    }
+
+    private static void checkIndex(int index) {
+        if (index < 0 || index > 63) {
+            throw new IllegalArgumentException(String.format("No square with index %d", index));
+        }
+    }
+}
@@ -22,18 +22,17 @@ public enum Piece {
     BLACK_KING(Color.BLACK, Role.KING, "k");
 
     private static final Map<String, Piece> PIECE_FROM_FEN;
-    private static final Map<Color, Map<Role, Piece>> PIECE_FROM_COLOR_AND_ROLE;
+    /**
+     * Indexed by {@link Color} ordinal and then by {@link Role} ordinal, since move generation looks pieces up often.
+     */
+    private static final Piece[][] PIECE_FROM_COLOR_AND_ROLE;
 
     static {
         PIECE_FROM_FEN = new HashMap<>();
-        PIECE_FROM_COLOR_AND_ROLE = new HashMap<>();
+        PIECE_FROM_COLOR_AND_ROLE = new Piece[Color.values().length][Role.values().length];
         for (Piece piece : Piece.values()) {
             PIECE_FROM_FEN.put(piece.getFenNotation(), piece);
-
-            if (!PIECE_FROM_COLOR_AND_ROLE.containsKey(piece.getColor())) {
-                PIECE_FROM_COLOR_AND_ROLE.put(piece.getColor(), new HashMap<>());
-            }
-            PIECE_FROM_COLOR_AND_ROLE.get(piece.getColor()).put(piece.getRole(), piece);
+            PIECE_FROM_COLOR_AND_ROLE[piece.getColor().ordinal()][piece.getRole().ordinal()] = piece;
         }
 
 
@@ -62,7 +61,7 @@ public enum Piece {
         if (color == null || pieceType == null) {
             throw new IllegalArgumentException("Cannot have a null Color or Role");
         }
-        return PIECE_FROM_COLOR_AND_ROLE.get(color).get(pieceType);
+        return PIECE_FROM_COLOR_AND_ROLE[color.ordinal()][pieceType.ordinal()];
     }
 
     /**
@@ -0,0 +1,209 @@
+package com.keshane.blitz;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * An immutable snapshot of the position of a {@link Game} at one point in time.
+ * <p>
+ * A Game publishes a new Position after every move, which {@link Game#snapshot()} returns. A Position never changes,
+ * so any number of threads can read it while the game goes on, without locking. It holds only a {@link Bitboard} per
+ * piece and a few fields, and works out its FEN and legal moves the first time they're asked for.
+ */
+public final class Position {
+    private static final Piece[] PIECES = Piece.values();
+    /**
+     * The pieces standing for the castles in the order FEN writes them.
+     */
+    private static final Piece[] CASTLES_IN_FEN_ORDER = new Piece[]{Piece.WHITE_KING, Piece.WHITE_QUEEN,
+        Piece.BLACK_KING, Piece.BLACK_QUEEN};
+
+    private final long[] pieceBitboards = new long[PIECES.length];
+    private final Color playerToMove;
+    /**
+     * The available castles, with a bit set for the ordinal of each {@link Piece} standing for a castle.
+     */
+    private final int availableCastles;
+    /**
+     * The index of the en passant target or -1 if there is none.
+     */
+    private final int enPassantIndex;
+    private final long hash;
+    private final GameStatus status;
+
+    /**
+     * Written once when first asked for. A thread that races another to work it out gets an equal value.
+     */
+    private volatile String fen;
+    /**
+     * The legal moves as sorted {@link PackedMove}s, written once when first asked for.
+     */
+    private volatile int[] legalMoves;
+
+    Position(Board board, Color playerToMove, Set<Piece> availableCastles, Square enPassantTarget,
+        GameStatus status, long hash) {
+        for (Piece piece : PIECES) {
+            pieceBitboards[piece.ordinal()] = board.getBitboard(piece);
+        }
+        this.playerToMove = playerToMove;
+        int castles = 0;
+        for (Piece castle : availableCastles) {
+            castles |= 1 << castle.ordinal();
+        }
+        this.availableCastles = castles;
+        enPassantIndex = enPassantTarget == null ? -1 : enPassantTarget.ordinal();
+        this.hash = hash;
+        this.status = status;
+    }
+
+    /**
+     * Get the piece on a square.
+     *
+     * @param squareIndex the index of the square, as described in {@link PackedMove}
+     * @return the piece or null if the square is empty
+     */
+    public Piece getPieceAt(int squareIndex) {
+        if (squareIndex < 0 || squareIndex > 63) {
+            throw new IllegalArgumentException(String.format("No square with index %d", squareIndex));
+        }
+        long squareBit = 1L << squareIndex;
+        for (Piece piece : PIECES) {
+            if ((pieceBitboards[piece.ordinal()] & squareBit) != 0) {
+                return piece;
+            }
+        }
+        return null;
+    }
+
+    public boolean isWhiteToMove() {
+        return playerToMove == Color.WHITE;
+    }
+
+    /**
+     * Get the Zobrist hash of the position, the same as {@link Game#getPositionHash()} gave for it.
+     */
+    public long getHash() {
+        return hash;
+    }
+
+    /**
+     * Get the state of the game in this position from the point of view of the player to move.
+     */
+    public GameStatus getStatus() {
+        return status;
+    }
+
+    /**
+     * Get the number of legal moves of the player to move.
+     */
+    public int getLegalMoveCount() {
+        return getLegalMoves().length;
+    }
+
+    /**
+     * Get one of the legal moves of the player to move. The moves are sorted by their packed value.
+     *
+     * @param index the index of the move, from 0 to one less than {@link #getLegalMoveCount()}
+     * @return the move as a {@link PackedMove}
+     */
+    public int getLegalMove(int index) {
+        return getLegalMoves()[index];
+    }
+
+    /**
+     * Checks whether a move is legal for the player to move.
+     *
+     * @param packedMove the move as a {@link PackedMove}
+     * @return whether the move is legal
+     */
+    public boolean isLegal(int packedMove) {
+        return Arrays.binarySearch(getLegalMoves(), packedMove) >= 0;
+    }
+
+    private int[] getLegalMoves() {
+        int[] moves = legalMoves;
+        if (moves == null) {
+            moves = generateLegalMoves();
+            legalMoves = moves;
+        }
+        return moves;
+    }
+
+    private int[] generateLegalMoves() {
+        Board board = new Board(toFenNotation().split(" ")[0]);
+        Set<Piece> castles = EnumSet.noneOf(Piece.class);
+        for (Piece castle : CASTLES_IN_FEN_ORDER) {
+            if ((availableCastles & 1 << castle.ordinal()) != 0) {
+                castles.add(castle);
+            }
+        }
+        Square enPassantTarget = enPassantIndex < 0 ? null : Square.fromIndex(enPassantIndex);
+        List<Move> moves = new ArrayList<>();
+        Game.generateLegalMoves(playerToMove, board, enPassantTarget, castles, new Board("8/8/8/8/8/8/8/8"), moves);
+
+        int[] packedMoves = new int[moves.size()];
+        for (int i = 0; i < packedMoves.length; i++) {
+            packedMoves[i] = PackedMove.of(moves.get(i));
+        }
+        Arrays.sort(packedMoves);
+        return packedMoves;
+    }
+
+    /**
+     * Output the position in Forsyth-Edwards Notation (FEN).
+     *
+     * @return a FEN record in a String
+     */
+    public String toFenNotation() {
+        String notation = fen;
+        if (notation == null) {
+            notation = writeFen();
+            fen = notation;
+        }
+        return notation;
+    }
+
+    private String writeFen() {
+        StringBuilder notation = new StringBuilder(90);
+        for (int rank = 7; rank >= 0; rank--) {
+            if (rank < 7) {
+                notation.append('/');
+            }
+            int emptySquareCount = 0;
+            for (int file = 0; file <= 7; file++) {
+                Piece piece = getPieceAt(rank * 8 + file);
+                if (piece == null) {
+                    emptySquareCount++;
+                    continue;
+                }
+                if (emptySquareCount > 0) {
+                    notation.append(emptySquareCount);
+                    emptySquareCount = 0;
+                }
+                notation.append(piece.getFenNotation());
+            }
+            if (emptySquareCount > 0) {
+                notation.append(emptySquareCount);
+            }
+        }
+
+        notation.append(' ').append(playerToMove.getNotation()).append(' ');
+        if (availableCastles == 0) {
+            notation.append('-');
+        }
+        for (Piece castle : CASTLES_IN_FEN_ORDER) {
+            if ((availableCastles & 1 << castle.ordinal()) != 0) {
+                notation.append(castle.getFenNotation());
+            }
+        }
+
+        notation.append(' ');
+        notation.append(enPassantIndex < 0 ? "-" : Square.fromIndex(enPassantIndex).toString().toLowerCase());
+        // TODO halfmove and fullmove
+        notation.append(" - -");
+        return notation.toString();
+    }
+}
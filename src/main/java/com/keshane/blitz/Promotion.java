@@ -74,6 +74,11 @@ class Promotion implements Move, Capture {
         return destination;
     }
 
+    @Override
+    public Move withCheck(boolean isCheckmate) {
+        return new Promotion(pawn, source, destination, promotedPiece, capturedPiece, true, isCheckmate);
+    }
+
     @Override
     public boolean isAMatch(InterpretedNotation rawMove) {
         if (!rawMove.moveTypes.contains(MoveType.PROMOTION) || rawMove.promotionPiece == null) {
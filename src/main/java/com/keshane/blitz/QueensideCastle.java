@@ -66,6 +66,11 @@ class QueensideCastle implements Castle {
         return rookDestination;
     }
 
+    @Override
+    public Move withCheck(boolean isCheckmate) {
+        return new QueensideCastle(king, true, isCheckmate);
+    }
+
     @Override
     public boolean isAMatch(InterpretedNotation rawMove) {
         return rawMove.moveTypes.contains(MoveType.QUEENSIDE_CASTLE);
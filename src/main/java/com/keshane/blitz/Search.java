@@ -0,0 +1,557 @@
+package com.keshane.blitz;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Searches for the best move of the player to move in a {@link Game}.
+ * <p>
+ * This is a negamax alpha-beta search with principal variation search, deepened one ply at a time until the depth,
+ * time or node budget runs out. Each iteration after the first few starts with a narrow aspiration window around the
+ * previous iteration's score. Null-move pruning and late-move reductions cut down the tree, and a quiescence search
+ * over captures settles the leaves.
+ * <p>
+ * Positions already searched are remembered in a {@link TranspositionTable}, which gives a move to try first and can
+ * cut a search short when the earlier result was deep enough.
+ * <p>
+ * The Game is only read when a search starts: the search makes moves on its own copy of each position. A Search is
+ * not thread-safe, but separate instances can search at the same time, sharing one table if they are given it.
+ */
+public class Search {
+    /**
+     * The score of delivering checkmate right away. A mate found {@code n} plies away scores {@code MATE_SCORE - n}.
+     */
+    public static final int MATE_SCORE = 30000;
+    /**
+     * The deepest the search looks, counting quiescence plies.
+     */
+    public static final int MAX_PLY = 64;
+
+    private static final int INFINITY = 32000;
+    private static final int ASPIRATION_WINDOW = 50;
+    private static final int FIRST_ASPIRATION_DEPTH = 4;
+    private static final int NULL_MOVE_REDUCTION = 2;
+    private static final int NODES_BETWEEN_TIME_CHECKS = 1024;
+    private static final String EMPTY_BOARD_FEN = "8/8/8/8/8/8/8/8";
+    private static final long DEFAULT_TABLE_SIZE = 16L * 1024 * 1024;
+
+    /**
+     * Values of the pieces in centipawns for ordering captures, indexed by {@link Role} ordinal.
+     */
+    private static final int[] ROLE_VALUES = new int[]{100, 330, 320, 500, 900, 20000};
+    private static final int TABLE_MOVE_SCORE = 2_000_000;
+    private static final int PRINCIPAL_VARIATION_MOVE_SCORE = 1_000_000;
+    private static final int CAPTURE_SCORE = 100_000;
+    private static final int PROMOTION_SCORE = 90_000;
+    private static final int FIRST_KILLER_SCORE = 80_000;
+    private static final int SECOND_KILLER_SCORE = 79_000;
+    private static final int LOSING_CAPTURE_SCORE = 50_000;
+
+    private final Board[] boards = new Board[MAX_PLY + 1];
+    private final Color[] colors = new Color[MAX_PLY + 1];
+    private final List<Set<Piece>> availableCastles = new ArrayList<>(MAX_PLY + 1);
+    private final Square[] enPassantTargets = new Square[MAX_PLY + 1];
+    private final Board verificationBoard = new Board(EMPTY_BOARD_FEN);
+    private final TranspositionTable transpositionTable;
+
+    private final List<List<Move>> movesByPly = new ArrayList<>(MAX_PLY + 1);
+    private final StagedMoveGenerator[] generators = new StagedMoveGenerator[MAX_PLY + 1];
+    private final int[][] moveScoresByPly = new int[MAX_PLY + 1][];
+    /**
+     * The best line found from each ply, as a triangular table: row {@code ply} holds moves {@code ply} onwards.
+     */
+    private final int[][] principalVariation = new int[MAX_PLY + 1][MAX_PLY + 1];
+    private final int[] principalVariationLength = new int[MAX_PLY + 1];
+    /**
+     * The best line of the last finished iteration, tried first at each ply of the next iteration.
+     */
+    private int[] previousPrincipalVariation = new int[0];
+    /**
+     * Two quiet moves per ply that recently caused a beta cutoff.
+     */
+    private final int[][] killers = new int[MAX_PLY + 1][2];
+    /**
+     * How often a quiet move caused a beta cutoff, weighted by depth, indexed by source and destination ordinal.
+     */
+    private final int[][] history = new int[64][64];
+
+    private long nodes;
+    private long nodeBudget;
+    private long deadline;
+    private boolean isStopped;
+    private boolean canStop;
+
+    /**
+     * Construct a Search with a transposition table of its own.
+     */
+    public Search() {
+        this(new TranspositionTable(DEFAULT_TABLE_SIZE));
+    }
+
+    /**
+     * Construct a Search that remembers positions in the specified table.
+     *
+     * @param transpositionTable the table to use, which can be shared with other searches
+     */
+    public Search(TranspositionTable transpositionTable) {
+        if (transpositionTable == null) {
+            throw new IllegalArgumentException("Transposition table cannot be null.");
+        }
+        this.transpositionTable = transpositionTable;
+        for (int ply = 0; ply <= MAX_PLY; ply++) {
+            boards[ply] = new Board(EMPTY_BOARD_FEN);
+            availableCastles.add(EnumSet.noneOf(Piece.class));
+            movesByPly.add(new ArrayList<>());
+            generators[ply] = new StagedMoveGenerator(verificationBoard);
+            moveScoresByPly[ply] = new int[256];
+        }
+    }
+
+    /**
+     * Search the current position of a game until the time or node budget runs out.
+     *
+     * @param game             the game to search, which must not be changed until the search returns
+     * @param timeBudgetMillis how long to search for, in milliseconds
+     * @param nodeBudget       how many positions to look at, at most
+     * @return the best move found by the deepest finished iteration
+     */
+    public SearchResult search(Game game, long timeBudgetMillis, long nodeBudget) {
+        if (timeBudgetMillis <= 0 || nodeBudget <= 0) {
+            throw new IllegalArgumentException("Search budgets must be positive");
+        }
+        return search(game, MAX_PLY - 1, timeBudgetMillis * 1_000_000L, nodeBudget);
+    }
+
+    /**
+     * Search the current position of a game to a fixed depth.
+     *
+     * @param game  the game to search, which must not be changed until the search returns
+     * @param depth how many plies to look ahead before the quiescence search
+     * @return the best move found
+     */
+    public SearchResult searchToDepth(Game game, int depth) {
+        if (depth < 1 || depth >= MAX_PLY) {
+            throw new IllegalArgumentException(String.format("Depth must be between 1 and %d", MAX_PLY - 1));
+        }
+        return search(game, depth, Long.MAX_VALUE, Long.MAX_VALUE);
+    }
+
+    private SearchResult search(Game game, int maxDepth, long timeBudgetNanos, long nodeBudget) {
+        boards[0].replaceBoardWith(game.getBoard());
+        colors[0] = game.getPlayerToMove();
+        availableCastles.get(0).clear();
+        availableCastles.get(0).addAll(game.getAvailableCastles());
+        enPassantTargets[0] = game.getEnPassantTarget();
+
+        long start = System.nanoTime();
+        this.nodeBudget = nodeBudget;
+        deadline = timeBudgetNanos == Long.MAX_VALUE ? Long.MAX_VALUE : start + timeBudgetNanos;
+        nodes = 0;
+        isStopped = false;
+        canStop = false;
+        previousPrincipalVariation = new int[0];
+        transpositionTable.newSearch();
+        for (int[] plyKillers : killers) {
+            Arrays.fill(plyKillers, PackedMove.NONE);
+        }
+        for (int[] sourceHistory : history) {
+            Arrays.fill(sourceHistory, 0);
+        }
+
+        if (game.getStatus().isGameOver()) {
+            int score = game.getStatus() == GameStatus.CHECKMATE ? -MATE_SCORE : 0;
+            return new SearchResult(PackedMove.NONE, new int[0], score, 0, 0);
+        }
+
+        int completedScore = 0;
+        int completedDepth = 0;
+        for (int depth = 1; depth <= maxDepth; depth++) {
+            int window = ASPIRATION_WINDOW;
+            int alpha = -INFINITY;
+            int beta = INFINITY;
+            if (depth >= FIRST_ASPIRATION_DEPTH) {
+                alpha = Math.max(completedScore - window, -INFINITY);
+                beta = Math.min(completedScore + window, INFINITY);
+            }
+
+            int score;
+            while (true) {
+                score = search(0, depth, alpha, beta, false);
+                if (isStopped) {
+                    break;
+                }
+                // widen the side of the window that failed and search again
+                if (score <= alpha && alpha > -INFINITY) {
+                    window *= 2;
+                    alpha = Math.max(score - window, -INFINITY);
+                }
+                else if (score >= beta && beta < INFINITY) {
+                    window *= 2;
+                    beta = Math.min(score + window, INFINITY);
+                }
+                else {
+                    break;
+                }
+            }
+            if (isStopped) {
+                break;
+            }
+
+            completedScore = score;
+            completedDepth = depth;
+            previousPrincipalVariation = Arrays.copyOf(principalVariation[0], principalVariationLength[0]);
+            // the first iteration always finishes so there is a move to return
+            canStop = true;
+
+            if (Math.abs(score) >= MATE_SCORE - depth) {
+                // a forced mate within the searched depth won't change with more depth
+                break;
+            }
+            if (timeBudgetNanos != Long.MAX_VALUE && System.nanoTime() - start > timeBudgetNanos / 2) {
+                // the next iteration is unlikely to finish in the time left
+                break;
+            }
+        }
+
+        int bestMove = previousPrincipalVariation.length > 0 ? previousPrincipalVariation[0] : PackedMove.NONE;
+        return new SearchResult(bestMove, previousPrincipalVariation, completedScore, completedDepth, nodes);
+    }
+
+    private int search(int ply, int depth, int alpha, int beta, boolean isNullMoveAllowed) {
+        principalVariationLength[ply] = ply;
+        Color color = colors[ply];
+        Board board = boards[ply];
+        boolean isInCheck = Game.isKingInCheck(color, board);
+        if (isInCheck) {
+            // look further when in check so the search doesn't stop just before a mate
+            depth++;
+        }
+        if (depth <= 0 || ply >= MAX_PLY - 1) {
+            return quiescence(ply, alpha, beta);
+        }
+        if (shouldStop()) {
+            return 0;
+        }
+        nodes++;
+
+        long hash = Zobrist.hash(color, board, enPassantTargets[ply], availableCastles.get(ply));
+        long entry = transpositionTable.probe(hash);
+        int tableMove = PackedMove.NONE;
+        if (entry != TranspositionTable.NO_ENTRY) {
+            tableMove = TranspositionTable.move(entry);
+            // only trust the table away from the principal variation, so the full line is still found
+            if (ply > 0 && beta - alpha == 1 && TranspositionTable.depth(entry) >= depth) {
+                int score = fromTableScore(TranspositionTable.score(entry), ply);
+                int bound = TranspositionTable.bound(entry);
+                if (bound == TranspositionTable.EXACT
+                    || (bound == TranspositionTable.LOWER_BOUND && score >= beta)
+                    || (bound == TranspositionTable.UPPER_BOUND && score <= alpha)) {
+                    return score;
+                }
+            }
+        }
+
+        // If passing the turn still leaves the score above beta, a real move almost certainly will too.
+        // This isn't safe with only pawns left, where being forced to move can be a disadvantage.
+        if (isNullMoveAllowed && !isInCheck && depth >= 3 && hasPiecesOtherThanPawns(color, board)
+            && evaluate(ply) >= beta) {
+            makeNullMove(ply);
+            int score = -search(ply + 1, depth - 1 - NULL_MOVE_REDUCTION, -beta, -beta + 1, false);
+            if (isStopped) {
+                return 0;
+            }
+            if (score >= beta) {
+                return beta;
+            }
+        }
+
+        List<Move> moves = movesByPly.get(ply);
+        moves.clear();
+        StagedMoveGenerator generator = generators[ply];
+        generator.reset(color, board, enPassantTargets[ply], availableCastles.get(ply), false);
+        for (Move move = generator.next(); move != null; move = generator.next()) {
+            moves.add(move);
+        }
+        if (moves.isEmpty()) {
+            return isInCheck ? -MATE_SCORE + ply : 0;
+        }
+        scoreMoves(ply, moves, tableMove);
+
+        int originalAlpha = alpha;
+        int bestScore = -INFINITY;
+        int bestMove = PackedMove.NONE;
+        for (int i = 0; i < moves.size(); i++) {
+            Move move = pickNextMove(ply, moves, i);
+            int packedMove = PackedMove.of(move);
+            boolean isQuiet = isQuiet(move);
+            makeMove(ply, move);
+            boolean givesCheck = Game.isKingInCheck(colors[ply + 1], boards[ply + 1]);
+
+            int score;
+            if (i == 0) {
+                score = -search(ply + 1, depth - 1, -beta, -alpha, true);
+            }
+            else {
+                // moves ordered late are rarely best, so look at quiet ones less deeply first
+                int reduction = 0;
+                if (i >= 3 && depth >= 3 && isQuiet && !isInCheck && !givesCheck
+                    && packedMove != killers[ply][0] && packedMove != killers[ply][1]) {
+                    reduction = i >= 6 ? 2 : 1;
+                }
+                score = -search(ply + 1, depth - 1 - reduction, -alpha - 1, -alpha, true);
+                if (score > alpha && reduction > 0) {
+                    score = -search(ply + 1, depth - 1, -alpha - 1, -alpha, true);
+                }
+                if (score > alpha && score < beta) {
+                    score = -search(ply + 1, depth - 1, -beta, -alpha, true);
+                }
+            }
+            if (isStopped) {
+                return 0;
+            }
+
+            if (score > bestScore) {
+                bestScore = score;
+                bestMove = packedMove;
+            }
+            if (score > alpha) {
+                alpha = score;
+                updatePrincipalVariation(ply, packedMove);
+            }
+            if (alpha >= beta) {
+                if (isQuiet) {
+                    if (killers[ply][0] != packedMove) {
+                        killers[ply][1] = killers[ply][0];
+                        killers[ply][0] = packedMove;
+                    }
+                    history[move.getSource().ordinal()][move.getDestination().ordinal()] += depth * depth;
+                }
+                break;
+            }
+        }
+
+        int bound = bestScore >= beta ? TranspositionTable.LOWER_BOUND
+            : bestScore > originalAlpha ? TranspositionTable.EXACT : TranspositionTable.UPPER_BOUND;
+        transpositionTable.store(hash, bestMove, toTableScore(bestScore, ply), depth, bound);
+        return bestScore;
+    }
+
+    /**
+     * Convert a score to store in the table. Mate scores count plies from the root, but the same position can be
+     * reached at different plies, so they're stored counting plies from the position instead.
+     */
+    private static int toTableScore(int score, int ply) {
+        if (score >= MATE_SCORE - MAX_PLY) {
+            return score + ply;
+        }
+        if (score <= -MATE_SCORE + MAX_PLY) {
+            return score - ply;
+        }
+        return score;
+    }
+
+    private static int fromTableScore(int score, int ply) {
+        if (score >= MATE_SCORE - MAX_PLY) {
+            return score - ply;
+        }
+        if (score <= -MATE_SCORE + MAX_PLY) {
+            return score + ply;
+        }
+        return score;
+    }
+
+    /**
+     * Search only captures and promotions until the position is quiet, so that the static evaluation isn't taken in
+     * the middle of an exchange. In check, every way out of check is searched instead, so mates are still found.
+     */
+    private int quiescence(int ply, int alpha, int beta) {
+        principalVariationLength[ply] = ply;
+        if (shouldStop()) {
+            return 0;
+        }
+        nodes++;
+        if (ply >= MAX_PLY) {
+            return evaluate(ply);
+        }
+
+        StagedMoveGenerator generator = generators[ply];
+        generator.reset(colors[ply], boards[ply], enPassantTargets[ply], availableCastles.get(ply), true);
+        int bestScore;
+        if (generator.isInCheck()) {
+            // stays the score if there's no way out of check
+            bestScore = -MATE_SCORE + ply;
+        }
+        else {
+            bestScore = evaluate(ply);
+            if (bestScore >= beta) {
+                return bestScore;
+            }
+            if (bestScore > alpha) {
+                alpha = bestScore;
+            }
+        }
+
+        // the generator hands out captures best first, so they don't need scoring here
+        for (Move move = generator.next(); move != null; move = generator.next()) {
+            if (!generator.isInCheck() && !(move instanceof Promotion)
+                && StaticExchange.evaluate(move, boards[ply]) < 0) {
+                // a capture that loses material in the exchange can't raise the score
+                continue;
+            }
+            makeMove(ply, move);
+            int score = -quiescence(ply + 1, -beta, -alpha);
+            if (isStopped) {
+                return 0;
+            }
+            if (score > bestScore) {
+                bestScore = score;
+            }
+            if (score > alpha) {
+                alpha = score;
+                updatePrincipalVariation(ply, PackedMove.of(move));
+            }
+            if (alpha >= beta) {
+                break;
+            }
+        }
+        return bestScore;
+    }
+
+    private boolean shouldStop() {
+        if (isStopped) {
+            return true;
+        }
+        if (!canStop) {
+            return false;
+        }
+        if (nodes >= nodeBudget || (deadline != Long.MAX_VALUE && nodes % NODES_BETWEEN_TIME_CHECKS == 0
+            && System.nanoTime() - deadline >= 0)) {
+            isStopped = true;
+        }
+        return isStopped;
+    }
+
+    private void makeMove(int ply, Move move) {
+        boards[ply + 1].replaceBoardWith(boards[ply]);
+        move.makeMoveOnBoard(boards[ply + 1]);
+        colors[ply + 1] = colors[ply].opposite();
+        Set<Piece> nextAvailableCastles = availableCastles.get(ply + 1);
+        nextAvailableCastles.clear();
+        nextAvailableCastles.addAll(availableCastles.get(ply));
+        Game.updateAvailableCastles(move, colors[ply], nextAvailableCastles);
+        enPassantTargets[ply + 1] = Game.getEnPassantTargetAfter(move);
+    }
+
+    private void makeNullMove(int ply) {
+        boards[ply + 1].replaceBoardWith(boards[ply]);
+        colors[ply + 1] = colors[ply].opposite();
+        Set<Piece> nextAvailableCastles = availableCastles.get(ply + 1);
+        nextAvailableCastles.clear();
+        nextAvailableCastles.addAll(availableCastles.get(ply));
+        enPassantTargets[ply + 1] = null;
+    }
+
+    private void updatePrincipalVariation(int ply, int packedMove) {
+        principalVariation[ply][ply] = packedMove;
+        int childLength = principalVariationLength[ply + 1];
+        for (int i = ply + 1; i < childLength; i++) {
+            principalVariation[ply][i] = principalVariation[ply + 1][i];
+        }
+        principalVariationLength[ply] = Math.max(childLength, ply + 1);
+    }
+
+    /**
+     * Give each move a score so that the likeliest best moves are searched first: the move from the table, the move
+     * from the last iteration's best line, then captures of the most valuable piece by the least valuable one,
+     * promotions, killer moves, and quiet moves by their history.
+     */
+    private void scoreMoves(int ply, List<Move> moves, int tableMove) {
+        if (moveScoresByPly[ply].length < moves.size()) {
+            moveScoresByPly[ply] = new int[moves.size()];
+        }
+        int[] scores = moveScoresByPly[ply];
+        int previousBestMove = ply < previousPrincipalVariation.length ? previousPrincipalVariation[ply]
+            : PackedMove.NONE;
+        for (int i = 0; i < moves.size(); i++) {
+            Move move = moves.get(i);
+            int packedMove = PackedMove.of(move);
+            int score;
+            if (packedMove == tableMove) {
+                score = TABLE_MOVE_SCORE;
+            }
+            else if (packedMove == previousBestMove) {
+                score = PRINCIPAL_VARIATION_MOVE_SCORE;
+            }
+            else if (isCapture(move)) {
+                Piece victim = ((Capture) move).getCapturedPiece();
+                score = CAPTURE_SCORE + ROLE_VALUES[victim.getRole().ordinal()] * 10
+                    - ROLE_VALUES[move.getMovingPiece().getRole().ordinal()] / 10;
+                if (StaticExchange.evaluate(move, boards[ply]) < 0) {
+                    // captures that lose material go after the killers
+                    score -= CAPTURE_SCORE - LOSING_CAPTURE_SCORE;
+                }
+            }
+            else if (move instanceof Promotion) {
+                score = PROMOTION_SCORE + ROLE_VALUES[((Promotion) move).getPromotedPiece().getRole().ordinal()];
+            }
+            else if (packedMove == killers[ply][0]) {
+                score = FIRST_KILLER_SCORE;
+            }
+            else if (packedMove == killers[ply][1]) {
+                score = SECOND_KILLER_SCORE;
+            }
+            else {
+                score = history[move.getSource().ordinal()][move.getDestination().ordinal()];
+            }
+            scores[i] = score;
+        }
+    }
+
+    /**
+     * Move the highest scored of the moves from {@code index} onwards to {@code index}.
+     * <p>
+     * Picking one move at a time is cheaper than sorting when a cutoff comes early.
+     */
+    private Move pickNextMove(int ply, List<Move> moves, int index) {
+        int[] scores = moveScoresByPly[ply];
+        int bestIndex = index;
+        for (int i = index + 1; i < moves.size(); i++) {
+            if (scores[i] > scores[bestIndex]) {
+                bestIndex = i;
+            }
+        }
+        if (bestIndex != index) {
+            Move best = moves.get(bestIndex);
+            moves.set(bestIndex, moves.get(index));
+            moves.set(index, best);
+            int bestScore = scores[bestIndex];
+            scores[bestIndex] = scores[index];
+            scores[index] = bestScore;
+        }
+        return moves.get(index);
+    }
+
+    private static boolean isCapture(Move move) {
+        return move instanceof Capture && ((Capture) move).isCapture();
+    }
+
+    private static boolean isQuiet(Move move) {
+        return !isCapture(move) && !(move instanceof Promotion);
+    }
+
+    private static boolean hasPiecesOtherThanPawns(Color color, Board board) {
+        long pawnsAndKing = board.getBitboard(Piece.from(color, Role.PAWN))
+            | board.getBitboard(Piece.from(color, Role.KING));
+        return (board.getOccupancy(color) & ~pawnsAndKing) != 0;
+    }
+
+    /**
+     * Evaluate the position at a ply from the point of view of the player to move.
+     */
+    private int evaluate(int ply) {
+        return Evaluation.evaluate(boards[ply], colors[ply]);
+    }
+}
@@ -0,0 +1,99 @@
+package com.keshane.blitz;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Holds the outcome of a {@link Search}.
+ * <p>
+ * Moves are given as {@link PackedMove}s.
+ */
+public class SearchResult {
+    private final int bestMove;
+    private final int[] principalVariation;
+    private final int score;
+    private final int depth;
+    private final long nodes;
+
+    SearchResult(int bestMove, int[] principalVariation, int score, int depth, long nodes) {
+        this.bestMove = bestMove;
+        this.principalVariation = principalVariation;
+        this.score = score;
+        this.depth = depth;
+        this.nodes = nodes;
+    }
+
+    /**
+     * Get the best move found.
+     *
+     * @return the best move as a {@link PackedMove} or {@link PackedMove#NONE} if the player to move has no moves
+     */
+    public int getBestMove() {
+        return bestMove;
+    }
+
+    /**
+     * Get the best move found in UCI long algebraic notation.
+     *
+     * @return the notation of the best move or null if the player to move has no moves
+     */
+    public String getBestMoveUci() {
+        return bestMove == PackedMove.NONE ? null : PackedMove.toUci(bestMove);
+    }
+
+    /**
+     * Get the line of play the search expects, starting with the best move.
+     *
+     * @return the moves of the line as {@link PackedMove}s
+     */
+    public int[] getPrincipalVariation() {
+        return Arrays.copyOf(principalVariation, principalVariation.length);
+    }
+
+    /**
+     * Get the line of play the search expects in UCI long algebraic notation.
+     *
+     * @return the notation of each move in the line, starting with the best move
+     */
+    public List<String> getPrincipalVariationUci() {
+        List<String> notations = new ArrayList<>(principalVariation.length);
+        for (int move : principalVariation) {
+            notations.add(PackedMove.toUci(move));
+        }
+        return notations;
+    }
+
+    /**
+     * Get the score of the best move in centipawns from the point of view of the player to move.
+     * <p>
+     * Scores of forced mates are within {@link Search#MAX_PLY} of {@link Search#MATE_SCORE}, positive if the player to
+     * move delivers it.
+     *
+     * @return the score of the position
+     */
+    public int getScore() {
+        return score;
+    }
+
+    /**
+     * Whether the score is a forced mate for one side.
+     */
+    public boolean isMateScore() {
+        return Math.abs(score) >= Search.MATE_SCORE - Search.MAX_PLY;
+    }
+
+    /**
+     * Get the depth of the deepest iteration the search finished.
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * Get the number of positions the search looked at.
+     */
+    public long getNodes() {
+        return nodes;
+    }
+}
@@ -0,0 +1,80 @@
+package com.keshane.blitz;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Runs tasks one at a time, in the order they were submitted, on threads borrowed from another executor.
+ * <p>
+ * No thread is kept for the tasks: when a task is submitted to an idle SerialExecutor, it schedules a run on the
+ * underlying executor that works through the queued tasks and then gives the thread back. Many SerialExecutors can
+ * share one thread pool while each one still runs its own tasks strictly in order, and each task sees everything the
+ * earlier tasks did.
+ */
+final class SerialExecutor implements Executor {
+    /**
+     * The most tasks run before the thread is handed back, so a busy executor doesn't starve the others sharing the
+     * pool.
+     */
+    private static final int TASKS_PER_RUN = 64;
+
+    private final Executor executor;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    /**
+     * Whether a run has been handed to the underlying executor and hasn't finished yet.
+     */
+    private final AtomicBoolean isScheduled = new AtomicBoolean();
+
+    SerialExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        if (task == null) {
+            throw new IllegalArgumentException("Task cannot be null.");
+        }
+        tasks.add(task);
+        schedule();
+    }
+
+    private void schedule() {
+        if (isScheduled.compareAndSet(false, true)) {
+            try {
+                executor.execute(this::runTasks);
+            }
+            catch (RuntimeException e) {
+                isScheduled.set(false);
+                throw e;
+            }
+        }
+    }
+
+    private void runTasks() {
+        try {
+            for (int i = 0; i < TASKS_PER_RUN; i++) {
+                Runnable task = tasks.poll();
+                if (task == null) {
+                    break;
+                }
+                try {
+                    task.run();
+                }
+                catch (RuntimeException e) {
+                    // a failing task mustn't stop the ones queued after it
+                    Thread currentThread = Thread.currentThread();
+                    currentThread.getUncaughtExceptionHandler().uncaughtException(currentThread, e);
+                }
+            }
+        }
+        finally {
+            isScheduled.set(false);
+            // tasks submitted while the last one ran may have seen the run still scheduled
+            if (!tasks.isEmpty()) {
+                schedule();
+            }
+        }
+    }
+}
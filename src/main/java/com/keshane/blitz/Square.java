@@ -3,7 +3,7 @@ package com.keshane.blitz;
 /**
  * Enumerates all the squares on a chessboard.
  */
-enum Square {
+public enum Square {
     A1(0, 0),
     B1(1, 0),
     C1(2, 0),
@@ -80,6 +80,11 @@ enum Square {
      */
     static Square[][] grid;
 
+    /**
+     * Maps an ordinal to the corresponding {@link Square} enum without copying {@link #values()} on each lookup.
+     */
+    private static final Square[] BY_INDEX = Square.values();
+
     static {
         grid = new Square[8][8];
         for (Square square : Square.values()) {
@@ -124,4 +129,14 @@ enum Square {
         return grid[file][rank];
     }
 
+    /**
+     * Get the Square with the specified ordinal.
+     *
+     * @param index the ordinal of the square, which is {@code rank * 8 + file}
+     * @return the Square with the specified ordinal
+     */
+    static Square fromIndex(int index) {
+        return BY_INDEX[index];
+    }
+
 }
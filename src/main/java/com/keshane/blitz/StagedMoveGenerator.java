@@ -0,0 +1,338 @@
+package com.keshane.blitz;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Generates the legal moves of a position one stage at a time, so a caller that finds what it needs among the first
+ * moves never pays for generating the rest.
+ * <p>
+ * When the player to move is not in check, the first stage holds the captures and promotions, ordered by the value of
+ * the captured piece and then by the lowest value of capturing piece (MVV-LVA), and the second stage holds the quiet
+ * moves. When the player is in check, a single stage holds the moves that get out of check, ordered the same way.
+ * <p>
+ * The moves are found with {@link Bitboard}s, and each stage is checked for legality only when it is reached. One
+ * generator can be reused for any number of positions.
+ */
+final class StagedMoveGenerator {
+    private static final Role[] PROMOTION_ROLES = new Role[]{Role.QUEEN, Role.ROOK, Role.BISHOP, Role.KNIGHT};
+    /**
+     * Roles of the pieces other than pawns, whose moves are all generated the same way.
+     */
+    private static final Role[] PIECE_ROLES = new Role[]{Role.KNIGHT, Role.BISHOP, Role.ROOK, Role.QUEEN, Role.KING};
+    private static final Role[] PIECE_ROLES_WITHOUT_KING = new Role[]{Role.KNIGHT, Role.BISHOP, Role.ROOK,
+        Role.QUEEN};
+    /**
+     * Values of the pieces used to order captures, indexed by {@link Role} ordinal.
+     */
+    private static final int[] ROLE_VALUES = new int[]{100, 330, 320, 500, 900, 20000};
+
+    private enum Stage {
+        CAPTURES,
+        QUIETS,
+        EVASIONS,
+        DONE
+    }
+
+    private final Board verificationBoard;
+    private final List<Move> moves = new ArrayList<>();
+    private int[] scores = new int[64];
+    private int nextIndex;
+    private Stage stage = Stage.DONE;
+    private boolean isCapturesOnly;
+    private boolean isInCheck;
+
+    private Color color;
+    private Board board;
+    private Square enPassantTarget;
+    private Set<Piece> availableCastles;
+
+    /**
+     * Construct a generator.
+     *
+     * @param verificationBoard scratch space used to verify the legality of moves
+     */
+    StagedMoveGenerator(Board verificationBoard) {
+        this.verificationBoard = verificationBoard;
+    }
+
+    /**
+     * Start generating the moves of a position.
+     * <p>
+     * The position is read as the stages are reached, so it must not change until {@link #next()} returns null.
+     *
+     * @param color            the player to generate moves for
+     * @param board            the position of the pieces
+     * @param enPassantTarget  the square that can be moved to in an en passant or null if there is none
+     * @param availableCastles the castles still available, as kept by {@link Game}
+     * @param isCapturesOnly   whether to stop after the captures and promotions, which doesn't apply in check
+     */
+    void reset(Color color, Board board, Square enPassantTarget, Set<Piece> availableCastles,
+        boolean isCapturesOnly) {
+        this.color = color;
+        this.board = board;
+        this.enPassantTarget = enPassantTarget;
+        this.availableCastles = availableCastles;
+        this.isCapturesOnly = isCapturesOnly;
+        moves.clear();
+        nextIndex = 0;
+
+        long checkers = findCheckers(color, board);
+        isInCheck = checkers != 0;
+        if (isInCheck) {
+            generateEvasions(color, board, enPassantTarget, checkers, moves);
+            Game.filterOutIllegalMoves(moves, board, verificationBoard);
+            scoreMoves();
+            stage = Stage.EVASIONS;
+        }
+        else {
+            generateCaptures(color, board, enPassantTarget, ~0L, moves);
+            Game.filterOutIllegalMoves(moves, board, verificationBoard);
+            scoreMoves();
+            stage = Stage.CAPTURES;
+        }
+    }
+
+    /**
+     * Whether the player to move was in check in the position given to {@link #reset}.
+     */
+    boolean isInCheck() {
+        return isInCheck;
+    }
+
+    /**
+     * Get the next legal move, generating the next stage if the current one has run out.
+     *
+     * @return the next move or null if there are no more moves
+     */
+    Move next() {
+        while (nextIndex == moves.size()) {
+            if (stage != Stage.CAPTURES || isCapturesOnly) {
+                stage = Stage.DONE;
+                return null;
+            }
+            moves.clear();
+            nextIndex = 0;
+            generateQuiets(color, board, availableCastles, moves);
+            Game.filterOutIllegalMoves(moves, board, verificationBoard);
+            stage = Stage.QUIETS;
+        }
+        if (stage == Stage.QUIETS) {
+            return moves.get(nextIndex++);
+        }
+        return pickBestMove();
+    }
+
+    /**
+     * Move the highest scored remaining move of the stage to the front and return it.
+     */
+    private Move pickBestMove() {
+        int bestIndex = nextIndex;
+        for (int i = nextIndex + 1; i < moves.size(); i++) {
+            if (scores[i] > scores[bestIndex]) {
+                bestIndex = i;
+            }
+        }
+        Move best = moves.get(bestIndex);
+        if (bestIndex != nextIndex) {
+            moves.set(bestIndex, moves.get(nextIndex));
+            moves.set(nextIndex, best);
+            scores[bestIndex] = scores[nextIndex];
+        }
+        nextIndex++;
+        return best;
+    }
+
+    private void scoreMoves() {
+        if (scores.length < moves.size()) {
+            scores = new int[moves.size()];
+        }
+        for (int i = 0; i < moves.size(); i++) {
+            scores[i] = captureScore(moves.get(i));
+        }
+    }
+
+    /**
+     * Score a move by the value of the piece it captures and, to break ties, by the value of the piece moving, lowest
+     * first. A promotion also counts the value of the piece promoted to.
+     */
+    static int captureScore(Move move) {
+        int score = 0;
+        if (move instanceof Capture && ((Capture) move).isCapture()) {
+            score += ROLE_VALUES[((Capture) move).getCapturedPiece().getRole().ordinal()] * 16
+                - ROLE_VALUES[move.getMovingPiece().getRole().ordinal()] / 100;
+        }
+        if (move instanceof Promotion) {
+            score += ROLE_VALUES[((Promotion) move).getPromotedPiece().getRole().ordinal()] * 16;
+        }
+        return score;
+    }
+
+    /**
+     * Generates the captures and promotions of a player, which may leave the player's own king in check.
+     *
+     * @param targets the squares moves may end on, which don't limit en passant captures
+     * @param moves   where the moves are added
+     */
+    static void generateCaptures(Color color, Board board, Square enPassantTarget, long targets,
+        Collection<Move> moves) {
+        generateCaptures(color, board, enPassantTarget, targets, PIECE_ROLES, moves);
+    }
+
+    private static void generateCaptures(Color color, Board board, Square enPassantTarget, long targets,
+        Role[] pieceRoles, Collection<Move> moves) {
+        long enemies = board.getOccupancy(color.opposite()) & targets;
+        long occupancy = board.getOccupancy();
+        for (Role role : pieceRoles) {
+            Piece piece = Piece.from(color, role);
+            for (long pieces = board.getBitboard(piece); pieces != 0; pieces &= pieces - 1) {
+                Square source = Bitboard.first(pieces);
+                long captures = Bitboard.attacks(role, color, source, occupancy) & enemies;
+                for (; captures != 0; captures &= captures - 1) {
+                    Square destination = Bitboard.first(captures);
+                    moves.add(new NormalMove(piece, source, destination, board.getPieceOn(destination), false,
+                        false));
+                }
+            }
+        }
+
+        Piece pawn = Piece.from(color, Role.PAWN);
+        int lastRank = color.opposite().backRank();
+        int forward = color == Color.WHITE ? 8 : -8;
+        long emptyTargets = ~occupancy & targets;
+        for (long pawns = board.getBitboard(pawn); pawns != 0; pawns &= pawns - 1) {
+            Square source = Bitboard.first(pawns);
+            long pawnAttacks = Bitboard.pawnAttacks(color, source);
+            for (long captures = pawnAttacks & enemies; captures != 0; captures &= captures - 1) {
+                Square destination = Bitboard.first(captures);
+                Piece capturedPiece = board.getPieceOn(destination);
+                if (destination.rank == lastRank) {
+                    addPromotions(pawn, source, destination, capturedPiece, moves);
+                }
+                else {
+                    moves.add(new NormalMove(pawn, source, destination, capturedPiece, false, false));
+                }
+            }
+            if (enPassantTarget != null && (pawnAttacks & Bitboard.of(enPassantTarget)) != 0) {
+                moves.add(new EnPassant(pawn, source, enPassantTarget,
+                    board.getPieceOn(Square.of(enPassantTarget.file, source.rank)), false, false));
+            }
+            if (source.rank + forward / 8 == lastRank) {
+                Square destination = Square.fromIndex(source.ordinal() + forward);
+                if ((emptyTargets & Bitboard.of(destination)) != 0) {
+                    addPromotions(pawn, source, destination, null, moves);
+                }
+            }
+        }
+    }
+
+    /**
+     * Generates the moves of a player that neither capture nor promote, which may leave the player's own king in
+     * check.
+     *
+     * @param availableCastles the castles still available or an empty set to leave castles out
+     * @param moves            where the moves are added
+     */
+    static void generateQuiets(Color color, Board board, Set<Piece> availableCastles, Collection<Move> moves) {
+        generateQuiets(color, board, ~0L, PIECE_ROLES, moves);
+        if (!availableCastles.isEmpty()) {
+            moves.addAll(Game.generateCastles(color, board, availableCastles));
+        }
+    }
+
+    private static void generateQuiets(Color color, Board board, long targets, Role[] pieceRoles,
+        Collection<Move> moves) {
+        long occupancy = board.getOccupancy();
+        long emptyTargets = ~occupancy & targets;
+        for (Role role : pieceRoles) {
+            Piece piece = Piece.from(color, role);
+            for (long pieces = board.getBitboard(piece); pieces != 0; pieces &= pieces - 1) {
+                Square source = Bitboard.first(pieces);
+                long quiets = Bitboard.attacks(role, color, source, occupancy) & emptyTargets;
+                for (; quiets != 0; quiets &= quiets - 1) {
+                    moves.add(new NormalMove(piece, source, Bitboard.first(quiets), null, false, false));
+                }
+            }
+        }
+
+        Piece pawn = Piece.from(color, Role.PAWN);
+        int lastRank = color.opposite().backRank();
+        int startingRank = color == Color.WHITE ? 1 : 6;
+        int forward = color == Color.WHITE ? 8 : -8;
+        for (long pawns = board.getBitboard(pawn); pawns != 0; pawns &= pawns - 1) {
+            Square source = Bitboard.first(pawns);
+            if (source.rank + forward / 8 == lastRank) {
+                // pushes to the last rank are promotions
+                continue;
+            }
+            Square destination = Square.fromIndex(source.ordinal() + forward);
+            if ((occupancy & Bitboard.of(destination)) != 0) {
+                continue;
+            }
+            if ((targets & Bitboard.of(destination)) != 0) {
+                moves.add(new NormalMove(pawn, source, destination, null, false, false));
+            }
+            if (source.rank == startingRank) {
+                Square doubleDestination = Square.fromIndex(destination.ordinal() + forward);
+                if ((emptyTargets & Bitboard.of(doubleDestination)) != 0) {
+                    moves.add(new NormalMove(pawn, source, doubleDestination, null, false, false));
+                }
+            }
+        }
+    }
+
+    /**
+     * Generates the moves of a player in check that might get out of it: king moves, and with a single checker,
+     * captures of the checker and moves onto the squares between it and the king. They may still leave the king in
+     * check.
+     *
+     * @param checkers a {@link Bitboard} of the pieces giving check
+     * @param moves    where the moves are added
+     */
+    static void generateEvasions(Color color, Board board, Square enPassantTarget, long checkers,
+        Collection<Move> moves) {
+        Piece king = Piece.from(color, Role.KING);
+        Square kingLocation = board.getKingLocation(color);
+        for (long destinations = Bitboard.kingAttacks(kingLocation) & ~board.getOccupancy(color); destinations != 0;
+             destinations &= destinations - 1) {
+            Square destination = Bitboard.first(destinations);
+            moves.add(new NormalMove(king, kingLocation, destination, board.getPieceOn(destination), false, false));
+        }
+        if (Long.bitCount(checkers) > 1) {
+            // only the king can get out of a double check
+            return;
+        }
+        long blockOrCapture = checkers | Bitboard.between(kingLocation, Bitboard.first(checkers));
+        generateCaptures(color, board, enPassantTarget, blockOrCapture, PIECE_ROLES_WITHOUT_KING, moves);
+        generateQuiets(color, board, blockOrCapture, PIECE_ROLES_WITHOUT_KING, moves);
+    }
+
+    /**
+     * Find the pieces giving check to the king of the specified color.
+     *
+     * @return a {@link Bitboard} of the checking pieces
+     */
+    static long findCheckers(Color color, Board board) {
+        Square kingLocation = board.getKingLocation(color);
+        Color enemy = color.opposite();
+        long occupancy = board.getOccupancy();
+        long rooksAndQueens = board.getBitboard(Piece.from(enemy, Role.ROOK))
+            | board.getBitboard(Piece.from(enemy, Role.QUEEN));
+        long bishopsAndQueens = board.getBitboard(Piece.from(enemy, Role.BISHOP))
+            | board.getBitboard(Piece.from(enemy, Role.QUEEN));
+        return (Bitboard.rookAttacks(kingLocation, occupancy) & rooksAndQueens)
+            | (Bitboard.bishopAttacks(kingLocation, occupancy) & bishopsAndQueens)
+            | (Bitboard.knightAttacks(kingLocation) & board.getBitboard(Piece.from(enemy, Role.KNIGHT)))
+            | (Bitboard.pawnAttacks(color, kingLocation) & board.getBitboard(Piece.from(enemy, Role.PAWN)));
+    }
+
+    private static void addPromotions(Piece pawn, Square source, Square destination, Piece capturedPiece,
+        Collection<Move> moves) {
+        for (Role role : PROMOTION_ROLES) {
+            moves.add(new Promotion(pawn, source, destination, Piece.from(pawn.getColor(), role), capturedPiece,
+                false, false));
+        }
+    }
+}
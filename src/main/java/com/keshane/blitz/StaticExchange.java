@@ -0,0 +1,118 @@
+package com.keshane.blitz;
+
+/**
+ * Works out the material result of a sequence of captures on one square without making any moves.
+ * <p>
+ * After a capture, each side in turn recaptures with its least valuable piece attacking the square, and either side
+ * can stop when going on would lose material. Pieces that attack the square through a piece that has just captured,
+ * such as a rook behind a rook, join in once the piece in front has moved (x-ray attackers). Pins are not taken into
+ * account.
+ */
+final class StaticExchange {
+    /**
+     * Values of the pieces in centipawns, indexed by {@link Role} ordinal. The king is worth more than everything
+     * else together, so it only captures when it can't be captured back.
+     */
+    private static final int[] ROLE_VALUES = new int[]{100, 330, 320, 500, 900, 100_000};
+    /**
+     * Roles in the order they're used to recapture, least valuable first.
+     */
+    private static final Role[] ROLES_BY_VALUE = new Role[]{Role.PAWN, Role.KNIGHT, Role.BISHOP, Role.ROOK,
+        Role.QUEEN, Role.KING};
+    /**
+     * At most 32 pieces can take part in an exchange.
+     */
+    private static final int MAX_CAPTURES = 32;
+
+    private StaticExchange() {
+        // no instances
+    }
+
+    /**
+     * Evaluate the exchange started by a move.
+     *
+     * @param move  the move starting the exchange, which doesn't have to be a capture
+     * @param board the position before the move
+     * @return the material gained by the player making the move, in centipawns, or a negative number if it loses
+     * material
+     */
+    static int evaluate(Move move, Board board) {
+        if (move instanceof Castle) {
+            return 0;
+        }
+        Square target = move.getDestination();
+        int[] gains = new int[MAX_CAPTURES];
+        Role pieceOnTarget = move.getMovingPiece().getRole();
+        if (move instanceof Capture && ((Capture) move).isCapture()) {
+            gains[0] = ROLE_VALUES[((Capture) move).getCapturedPiece().getRole().ordinal()];
+        }
+        if (move instanceof Promotion) {
+            pieceOnTarget = ((Promotion) move).getPromotedPiece().getRole();
+            gains[0] += ROLE_VALUES[pieceOnTarget.ordinal()] - ROLE_VALUES[Role.PAWN.ordinal()];
+        }
+
+        long occupancy = board.getOccupancy() & ~Bitboard.of(move.getSource());
+        if (move instanceof EnPassant) {
+            occupancy &= ~Bitboard.of(((EnPassant) move).getCapturedPieceLocation());
+        }
+        long attackers = attackersOf(target, board, occupancy) & occupancy;
+        Color side = move.getMovingPiece().getColor().opposite();
+
+        int depth = 0;
+        while (true) {
+            long sideAttackers = attackers & board.getOccupancy(side);
+            if (sideAttackers == 0) {
+                break;
+            }
+            Role attackerRole = null;
+            long attacker = 0;
+            for (Role role : ROLES_BY_VALUE) {
+                long candidates = sideAttackers & board.getBitboard(Piece.from(side, role));
+                if (candidates != 0) {
+                    attackerRole = role;
+                    attacker = Long.lowestOneBit(candidates);
+                    break;
+                }
+            }
+
+            depth++;
+            // the score for the side if it captures and the exchange stops there
+            gains[depth] = ROLE_VALUES[pieceOnTarget.ordinal()] - gains[depth - 1];
+            if (depth == MAX_CAPTURES - 1) {
+                break;
+            }
+            pieceOnTarget = attackerRole;
+            occupancy &= ~attacker;
+            // moving the attacker may uncover a sliding piece behind it
+            attackers = attackersOf(target, board, occupancy) & occupancy;
+            side = side.opposite();
+        }
+
+        // each side chooses between capturing and stopping, from the last capture back to the first
+        for (; depth > 0; depth--) {
+            gains[depth - 1] = -Math.max(-gains[depth - 1], gains[depth]);
+        }
+        return gains[0];
+    }
+
+    /**
+     * Get the pieces of both colors that attack a square, with sliding pieces blocked by the specified occupancy.
+     *
+     * @return a {@link Bitboard} of the attackers, including pieces no longer in the occupancy
+     */
+    private static long attackersOf(Square target, Board board, long occupancy) {
+        long rooksAndQueens = board.getBitboard(Piece.WHITE_ROOK) | board.getBitboard(Piece.BLACK_ROOK)
+            | board.getBitboard(Piece.WHITE_QUEEN) | board.getBitboard(Piece.BLACK_QUEEN);
+        long bishopsAndQueens = board.getBitboard(Piece.WHITE_BISHOP) | board.getBitboard(Piece.BLACK_BISHOP)
+            | board.getBitboard(Piece.WHITE_QUEEN) | board.getBitboard(Piece.BLACK_QUEEN);
+        long knights = board.getBitboard(Piece.WHITE_KNIGHT) | board.getBitboard(Piece.BLACK_KNIGHT);
+        long kings = board.getBitboard(Piece.WHITE_KING) | board.getBitboard(Piece.BLACK_KING);
+        // a white pawn attacks the target from where a black pawn on the target would capture, and vice versa
+        return (Bitboard.rookAttacks(target, occupancy) & rooksAndQueens)
+            | (Bitboard.bishopAttacks(target, occupancy) & bishopsAndQueens)
+            | (Bitboard.knightAttacks(target) & knights)
+            | (Bitboard.kingAttacks(target) & kings)
+            | (Bitboard.pawnAttacks(Color.BLACK, target) & board.getBitboard(Piece.WHITE_PAWN))
+            | (Bitboard.pawnAttacks(Color.WHITE, target) & board.getBitboard(Piece.BLACK_PAWN));
+    }
+}
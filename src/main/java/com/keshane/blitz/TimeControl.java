@@ -0,0 +1,53 @@
+package com.keshane.blitz;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Describes how much time each player gets for a game: a base time for the whole game, an increment added after
+ * every move, and a delay at the start of every move before the player's time starts going down.
+ */
+public final class TimeControl {
+    private final long baseNanos;
+    private final long incrementNanos;
+    private final long delayNanos;
+
+    /**
+     * Construct a time control.
+     *
+     * @param baseTime  the time each player starts with
+     * @param increment the time added to a player's clock after each of their moves
+     * @param delay     the time at the start of each move that isn't taken off the player's clock
+     * @param unit      the unit of the times
+     */
+    public TimeControl(long baseTime, long increment, long delay, TimeUnit unit) {
+        if (baseTime <= 0 || increment < 0 || delay < 0) {
+            throw new IllegalArgumentException("Base time must be positive and increment and delay not negative.");
+        }
+        baseNanos = unit.toNanos(baseTime);
+        incrementNanos = unit.toNanos(increment);
+        delayNanos = unit.toNanos(delay);
+    }
+
+    /**
+     * Construct a time control with an increment and no delay, such as 3+2 blitz.
+     *
+     * @param baseSeconds      the time each player starts with in seconds
+     * @param incrementSeconds the time added after each move in seconds
+     * @return the time control
+     */
+    public static TimeControl ofSeconds(long baseSeconds, long incrementSeconds) {
+        return new TimeControl(baseSeconds, incrementSeconds, 0, TimeUnit.SECONDS);
+    }
+
+    public long getBaseNanos() {
+        return baseNanos;
+    }
+
+    public long getIncrementNanos() {
+        return incrementNanos;
+    }
+
+    public long getDelayNanos() {
+        return delayNanos;
+    }
+}
@@ -0,0 +1,203 @@
+package com.keshane.blitz;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Fires any number of timers from a single thread using a hashed timing wheel.
+ * <p>
+ * The wheel is a ring of buckets, each covering one tick. A timer sits in the bucket its deadline falls in, with the
+ * number of turns of the wheel still to go, so each tick only looks at one bucket instead of every timer. Timers are
+ * handed to the wheel's thread through a lock-free queue and everything else about them is only touched by that
+ * thread, so scheduling one costs a compare-and-set and no lock.
+ * <p>
+ * A timer is asked for its deadline when it's scheduled and again when its bucket comes up, so a timer whose deadline
+ * moves later doesn't need to be scheduled again. One whose deadline moves earlier does.
+ */
+final class TimerWheel implements AutoCloseable {
+    private final long tickNanos;
+    private final int mask;
+    /**
+     * The first timer in each bucket, only used by the wheel's thread.
+     */
+    private final Timer[] buckets;
+    private final Queue<Timer> scheduledTimers = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean isStarted = new AtomicBoolean();
+    private volatile boolean isClosed;
+    private volatile Thread thread;
+    /**
+     * When the wheel started, by {@link System#nanoTime()}.
+     */
+    private long startNanos;
+    /**
+     * The number of the tick being processed, counted from the start. Only used by the wheel's thread.
+     */
+    private long currentTick;
+
+    /**
+     * Construct a wheel, which starts its thread when the first timer is scheduled.
+     *
+     * @param tickNanos   how often the wheel turns, which is how late a timer can fire
+     * @param bucketCount the number of buckets, which must be a power of two
+     */
+    TimerWheel(long tickNanos, int bucketCount) {
+        if (tickNanos <= 0 || bucketCount < 1 || Integer.bitCount(bucketCount) != 1) {
+            throw new IllegalArgumentException("Tick must be positive and bucket count a positive power of two.");
+        }
+        this.tickNanos = tickNanos;
+        mask = bucketCount - 1;
+        buckets = new Timer[bucketCount];
+    }
+
+    /**
+     * Schedule a timer, or schedule it again after its deadline has changed.
+     * <p>
+     * Can be called from any thread. A timer that's already waiting in the wheel is moved.
+     *
+     * @param timer the timer
+     */
+    void schedule(Timer timer) {
+        if (isClosed) {
+            return;
+        }
+        if (!isStarted.get() && isStarted.compareAndSet(false, true)) {
+            startNanos = System.nanoTime();
+            thread = new Thread(this::run, "blitz-timer-wheel");
+            thread.setDaemon(true);
+            thread.start();
+        }
+        if (timer.isQueued.compareAndSet(false, true)) {
+            scheduledTimers.add(timer);
+        }
+    }
+
+    /**
+     * Stop the wheel's thread. Timers still waiting never fire.
+     */
+    @Override
+    public void close() {
+        isClosed = true;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    private void run() {
+        while (!isClosed) {
+            long tickStart = startNanos + currentTick * tickNanos;
+            long now = System.nanoTime();
+            while (now < tickStart && !isClosed) {
+                LockSupport.parkNanos(tickStart - now);
+                now = System.nanoTime();
+            }
+            placeScheduledTimers();
+            expireTimers(now);
+            currentTick++;
+        }
+    }
+
+    private void placeScheduledTimers() {
+        for (Timer timer = scheduledTimers.poll(); timer != null; timer = scheduledTimers.poll()) {
+            // reset first, so a change of deadline after the read below schedules the timer again
+            timer.isQueued.set(false);
+            unlink(timer);
+            long deadline = timer.getDeadline();
+            if (deadline != Long.MAX_VALUE) {
+                place(timer, deadline);
+            }
+        }
+    }
+
+    private void expireTimers(long now) {
+        int bucket = (int) currentTick & mask;
+        Timer timer = buckets[bucket];
+        while (timer != null) {
+            Timer next = timer.next;
+            if (timer.remainingTurns > 0) {
+                timer.remainingTurns--;
+            }
+            else {
+                unlink(timer);
+                long deadline = timer.getDeadline();
+                if (deadline <= now) {
+                    try {
+                        timer.expire();
+                    }
+                    catch (RuntimeException e) {
+                        // a failing timer mustn't stop the wheel
+                        Thread currentThread = Thread.currentThread();
+                        currentThread.getUncaughtExceptionHandler().uncaughtException(currentThread, e);
+                    }
+                }
+                else if (deadline != Long.MAX_VALUE) {
+                    // the deadline moved later, so the timer waits for its new bucket
+                    place(timer, deadline);
+                }
+            }
+            timer = next;
+        }
+    }
+
+    private void place(Timer timer, long deadline) {
+        // the first tick that starts at or after the deadline, but never one already processed
+        long tick = Math.max(currentTick, ceilDiv(deadline - startNanos, tickNanos));
+        long ticksAway = tick - currentTick;
+        timer.remainingTurns = ticksAway / buckets.length;
+        int bucket = (int) tick & mask;
+        timer.bucket = bucket;
+        timer.previous = null;
+        timer.next = buckets[bucket];
+        if (timer.next != null) {
+            timer.next.previous = timer;
+        }
+        buckets[bucket] = timer;
+    }
+
+    private void unlink(Timer timer) {
+        if (timer.bucket < 0) {
+            return;
+        }
+        if (timer.previous == null) {
+            buckets[timer.bucket] = timer.next;
+        }
+        else {
+            timer.previous.next = timer.next;
+        }
+        if (timer.next != null) {
+            timer.next.previous = timer.previous;
+        }
+        timer.previous = null;
+        timer.next = null;
+        timer.bucket = -1;
+    }
+
+    private static long ceilDiv(long dividend, long divisor) {
+        return dividend <= 0 ? dividend / divisor : (dividend - 1) / divisor + 1;
+    }
+
+    /**
+     * Something to do at a deadline, which can be scheduled on a {@link TimerWheel} again and again.
+     */
+    abstract static class Timer {
+        private final AtomicBoolean isQueued = new AtomicBoolean();
+        // the links of the bucket's list, only used by the wheel's thread
+        private Timer previous;
+        private Timer next;
+        private int bucket = -1;
+        private long remainingTurns;
+
+        /**
+         * Get when the timer should fire, which can be called from the wheel's thread at any time.
+         *
+         * @return the time by {@link System#nanoTime()} or {@link Long#MAX_VALUE} if the timer shouldn't fire
+         */
+        abstract long getDeadline();
+
+        /**
+         * Do what the timer is for. Runs on the wheel's thread, so it must hand off anything slow.
+         */
+        abstract void expire();
+    }
+}
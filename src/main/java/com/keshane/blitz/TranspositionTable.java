@@ -0,0 +1,214 @@
+package com.keshane.blitz;
+
+import java.util.Arrays;
+
+/**
+ * Remembers the results of searching positions, keyed by position hash, so a search doesn't repeat work it has
+ * already done.
+ * <p>
+ * The table is a flat {@code long[]} split into buckets of four entries, each bucket filling a 64-byte cache line. An
+ * entry is two {@code long}s: the entry's data, and the position hash XORed with the data. An entry only belongs to a
+ * position when XORing the two together gives back the position's hash, so an entry half overwritten by another
+ * thread is simply a miss. That lets any number of threads share one table without locks.
+ * <p>
+ * The data of an entry holds the best move as a {@link PackedMove} in bits 0-15, the score in bits 16-31, the depth
+ * searched in bits 32-39, the kind of bound the score is in bits 40-41 and the search the entry was stored in bits
+ * 42-49. Use the static methods of this class to read them.
+ */
+public final class TranspositionTable {
+    /**
+     * Returned by {@link #probe(long)} when the table holds nothing for a position.
+     */
+    public static final long NO_ENTRY = 0L;
+    /**
+     * The score is at most the stored score: no move reached the lower bound of the search window.
+     */
+    public static final int UPPER_BOUND = 1;
+    /**
+     * The score is at least the stored score: a move reached the upper bound of the search window.
+     */
+    public static final int LOWER_BOUND = 2;
+    /**
+     * The stored score is the exact score.
+     */
+    public static final int EXACT = 3;
+
+    private static final int ENTRIES_PER_BUCKET = 4;
+    private static final int LONGS_PER_BUCKET = ENTRIES_PER_BUCKET * 2;
+    private static final int BYTES_PER_BUCKET = LONGS_PER_BUCKET * Long.BYTES;
+    /**
+     * The most buckets that fit in one array, which makes for an 8 GB table.
+     */
+    private static final long MAX_BUCKETS = 1L << 27;
+
+    private static final int SCORE_SHIFT = 16;
+    private static final int DEPTH_SHIFT = 32;
+    private static final int BOUND_SHIFT = 40;
+    private static final int GENERATION_SHIFT = 42;
+    private static final long MOVE_MASK = 0xFFFF;
+    private static final long DEPTH_MASK = 0xFF;
+    private static final long BOUND_MASK = 0x3;
+    private static final int GENERATION_MASK = 0xFF;
+    /**
+     * How many plies of depth one search of age is worth when choosing which entry of a bucket to replace.
+     */
+    private static final int AGE_WEIGHT = 8;
+
+    private final long[] table;
+    private final long bucketMask;
+    /**
+     * Counts searches so entries left over from earlier searches are replaced first.
+     */
+    private volatile int generation;
+
+    /**
+     * Construct an empty table.
+     *
+     * @param sizeInBytes the most memory the table may use, which is rounded down to a power of two and to at most
+     *                    8 GB
+     */
+    public TranspositionTable(long sizeInBytes) {
+        if (sizeInBytes < BYTES_PER_BUCKET) {
+            throw new IllegalArgumentException(String.format("A table needs at least %d bytes", BYTES_PER_BUCKET));
+        }
+        long buckets = Long.highestOneBit(Math.min(sizeInBytes / BYTES_PER_BUCKET, MAX_BUCKETS));
+        table = new long[(int) (buckets * LONGS_PER_BUCKET)];
+        bucketMask = buckets - 1;
+    }
+
+    /**
+     * Look up the entry for a position.
+     *
+     * @param hash the hash of the position
+     * @return the data of the entry or {@link #NO_ENTRY} if there isn't one
+     */
+    public long probe(long hash) {
+        int bucket = bucketOf(hash);
+        for (int i = bucket; i < bucket + LONGS_PER_BUCKET; i += 2) {
+            long data = table[i + 1];
+            if (data != NO_ENTRY && (table[i] ^ data) == hash) {
+                return data;
+            }
+        }
+        return NO_ENTRY;
+    }
+
+    /**
+     * Store the result of searching a position.
+     * <p>
+     * An earlier entry for the same position is replaced. Otherwise an empty entry of the position's bucket is
+     * used, or the entry searched least deeply, counting entries from earlier searches as shallower.
+     *
+     * @param hash  the hash of the position
+     * @param move  the best move found as a {@link PackedMove} or {@link PackedMove#NONE}
+     * @param score the score found, which must fit in a {@code short}
+     * @param depth the depth searched, which is clamped to 0-255
+     * @param bound one of {@link #UPPER_BOUND}, {@link #LOWER_BOUND} and {@link #EXACT}
+     */
+    public void store(long hash, int move, int score, int depth, int bound) {
+        int currentGeneration = generation;
+        int bucket = bucketOf(hash);
+        int replaced = bucket;
+        int lowestPriority = Integer.MAX_VALUE;
+        for (int i = bucket; i < bucket + LONGS_PER_BUCKET; i += 2) {
+            long data = table[i + 1];
+            if (data == NO_ENTRY) {
+                replaced = i;
+                break;
+            }
+            if ((table[i] ^ data) == hash) {
+                if (move == PackedMove.NONE) {
+                    // keep the move of the earlier entry, which is still the best guess to try first
+                    move = move(data);
+                }
+                replaced = i;
+                break;
+            }
+            int age = (currentGeneration - generation(data)) & GENERATION_MASK;
+            int priority = depth(data) - age * AGE_WEIGHT;
+            if (priority < lowestPriority) {
+                lowestPriority = priority;
+                replaced = i;
+            }
+        }
+
+        long data = pack(move, score, depth, bound, currentGeneration);
+        table[replaced] = hash ^ data;
+        table[replaced + 1] = data;
+    }
+
+    /**
+     * Mark the start of a new search, so entries stored by earlier searches are replaced before newer ones.
+     */
+    public void newSearch() {
+        generation = (generation + 1) & GENERATION_MASK;
+    }
+
+    /**
+     * Remove every entry.
+     */
+    public void clear() {
+        Arrays.fill(table, 0L);
+    }
+
+    /**
+     * Get the number of entries the table can hold.
+     */
+    public long getCapacity() {
+        return (bucketMask + 1) * ENTRIES_PER_BUCKET;
+    }
+
+    /**
+     * Get the best move of an entry.
+     *
+     * @param data the data returned by {@link #probe(long)}
+     * @return the move as a {@link PackedMove} or {@link PackedMove#NONE} if the entry has none
+     */
+    public static int move(long data) {
+        int move = (int) (data & MOVE_MASK);
+        // no move goes from a square to itself, so a1a1 stands for no move
+        return move == 0 ? PackedMove.NONE : move;
+    }
+
+    public static int score(long data) {
+        return (short) (data >>> SCORE_SHIFT);
+    }
+
+    public static int depth(long data) {
+        return (int) (data >>> DEPTH_SHIFT & DEPTH_MASK);
+    }
+
+    /**
+     * Get the kind of bound the score of an entry is.
+     *
+     * @param data the data returned by {@link #probe(long)}
+     * @return one of {@link #UPPER_BOUND}, {@link #LOWER_BOUND} and {@link #EXACT}
+     */
+    public static int bound(long data) {
+        return (int) (data >>> BOUND_SHIFT & BOUND_MASK);
+    }
+
+    private static int generation(long data) {
+        return (int) (data >>> GENERATION_SHIFT) & GENERATION_MASK;
+    }
+
+    private static long pack(int move, int score, int depth, int bound, int generation) {
+        if (bound < UPPER_BOUND || bound > EXACT) {
+            throw new IllegalArgumentException(String.format("%d is not a bound", bound));
+        }
+        if (score < Short.MIN_VALUE || score > Short.MAX_VALUE) {
+            throw new IllegalArgumentException(String.format("Score %d is out of range", score));
+        }
+        long packedMove = move == PackedMove.NONE ? 0 : move & MOVE_MASK;
+        long packedDepth = Math.max(0, Math.min(depth, (int) DEPTH_MASK));
+        return packedMove
+            | (score & 0xFFFFL) << SCORE_SHIFT
+            | packedDepth << DEPTH_SHIFT
+            | (long) bound << BOUND_SHIFT
+            | (long) generation << GENERATION_SHIFT;
+    }
+
+    private int bucketOf(long hash) {
+        return (int) (hash & bucketMask) * LONGS_PER_BUCKET;
+    }
+}
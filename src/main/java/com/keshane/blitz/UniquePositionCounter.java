@@ -0,0 +1,150 @@
+package com.keshane.blitz;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Counts the distinct positions reached in a directory of game files, by replaying every game through a {@link Game}
+ * and adding the hash of each position to an {@link OffHeapLongSet}.
+ * <p>
+ * The files are read in the formats {@link CorpusReplay} takes, one file at a time, so only the games of one file are
+ * on the heap at once. Positions are told apart by their Zobrist hash, so two positions sharing a hash count as one;
+ * the report gives how many such pairs to expect. Run it as:
+ * <pre>
+ * java com.keshane.blitz.UniquePositionCounter [--memory MEGABYTES] [--spill DIRECTORY] [--json] DIRECTORY
+ * </pre>
+ * Without {@code --spill}, counting fails once the set outgrows its memory, which is 1024 MB unless given.
+ */
+public final class UniquePositionCounter {
+    private static final String USAGE =
+        "Usage: UniquePositionCounter [--memory MEGABYTES] [--spill DIRECTORY] [--json] DIRECTORY";
+
+    private UniquePositionCounter() {
+        // no instances
+    }
+
+    public static void main(String[] args) throws IOException {
+        long memoryMegabytes = 1024;
+        Path spillDirectory = null;
+        boolean isJson = false;
+        Path directory = null;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--memory") && i + 1 < args.length) {
+                memoryMegabytes = Long.parseLong(args[++i]);
+            }
+            else if (args[i].equals("--spill") && i + 1 < args.length) {
+                spillDirectory = Paths.get(args[++i]);
+            }
+            else if (args[i].equals("--json")) {
+                isJson = true;
+            }
+            else if (directory == null && !args[i].startsWith("--")) {
+                directory = Paths.get(args[i]);
+            }
+            else {
+                System.err.println(USAGE);
+                System.exit(2);
+            }
+        }
+        if (directory == null || memoryMegabytes < 1) {
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+
+        try (OffHeapLongSet positions = new OffHeapLongSet(memoryMegabytes << 20, spillDirectory)) {
+            long startNanos = System.nanoTime();
+            Report report = count(directory, positions);
+            report.nanos = System.nanoTime() - startNanos;
+            System.out.println(isJson ? report.toJson() : report.toString());
+        }
+    }
+
+    /**
+     * Replay every game in a directory, in order of file name, and add each position reached to a set, including the
+     * starting position.
+     *
+     * @param directory the directory, whose subdirectories are skipped
+     * @param positions where the position hashes are added
+     * @return the counts, without the time taken
+     * @throws IOException if a file can't be read
+     */
+    static Report count(Path directory, OffHeapLongSet positions) throws IOException {
+        Report report = new Report();
+        for (Path file : CorpusReplay.listFiles(directory)) {
+            List<List<String>> games;
+            try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.ISO_8859_1)) {
+                games = CorpusReplay.readGames(reader);
+            }
+            for (List<String> moves : games) {
+                add(moves, positions, report);
+            }
+        }
+        report.uniqueCount = positions.getUniqueCount();
+        report.collisionCount = positions.getCollisionCount();
+        report.averageProbeLength = positions.getAverageProbeLength();
+        report.maxProbeLength = positions.getMaxProbeLength();
+        report.spillCount = positions.getSpillCount();
+        return report;
+    }
+
+    /**
+     * Replay one game, stopping at its first move that can't be made.
+     */
+    private static void add(List<String> moves, OffHeapLongSet positions, Report report) {
+        Game game = new Game("white", "black");
+        positions.add(game.getPositionHash());
+        report.positionCount++;
+        for (String move : moves) {
+            if (game.move(move).hasErrors()) {
+                report.failedGameCount++;
+                break;
+            }
+            positions.add(game.getPositionHash());
+            report.positionCount++;
+        }
+        report.gameCount++;
+    }
+
+    /**
+     * The counts of a run.
+     */
+    static final class Report {
+        long gameCount;
+        long failedGameCount;
+        long positionCount;
+        long uniqueCount;
+        long collisionCount;
+        double averageProbeLength;
+        long maxProbeLength;
+        int spillCount;
+        long nanos;
+
+        /**
+         * Write the counts as a JSON object on one line.
+         */
+        String toJson() {
+            return String.format(Locale.US, "{\"games\":%d,\"failedGames\":%d,\"positions\":%d,\"unique\":%d,"
+                    + "\"expectedHashCollisions\":%.3e,\"probeCollisions\":%d,\"averageProbeLength\":%.3f,"
+                    + "\"maxProbeLength\":%d,\"spills\":%d,\"nanos\":%d}",
+                gameCount, failedGameCount, positionCount, uniqueCount,
+                OffHeapLongSet.getExpectedHashCollisions(uniqueCount), collisionCount, averageProbeLength,
+                maxProbeLength, spillCount, nanos);
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%d games (%d failed), %d positions, %d unique in %.3f s%n"
+                    + "%.3e expected hash collisions%n"
+                    + "%d probe collisions, %.3f average and %d longest probe, %d spills to disk",
+                gameCount, failedGameCount, positionCount, uniqueCount, nanos / 1e9,
+                OffHeapLongSet.getExpectedHashCollisions(uniqueCount), collisionCount, averageProbeLength,
+                maxProbeLength, spillCount);
+        }
+    }
+}
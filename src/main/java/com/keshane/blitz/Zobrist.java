@@ -0,0 +1,84 @@
+package com.keshane.blitz;
+
+import java.util.Set;
+import java.util.SplittableRandom;
+
+/**
+ * Holds the random keys that are combined into the hash of a position.
+ * <p>
+ * The hash of a position is the XOR of a key for each piece on its square, a key for each available castle, a key for
+ * the file of the en passant target and a key when black is to move. A move changes the hash by XORing out the keys
+ * of what it removes and XORing in the keys of what it adds, so {@link Board} can keep the piece part up to date as
+ * pieces move.
+ */
+final class Zobrist {
+    /**
+     * Fixed so that hashes are the same from run to run.
+     */
+    private static final long SEED = 0x2545F4914F6CDD1DL;
+
+    /**
+     * Keys for each piece on each square, indexed by {@link Piece} ordinal and then by {@link Square} ordinal.
+     */
+    private static final long[][] PIECE_SQUARE_KEYS = new long[Piece.values().length][64];
+    /**
+     * Keys for each available castle, indexed by the ordinal of the {@link Piece} that stands for the castle.
+     */
+    private static final long[] CASTLE_KEYS = new long[Piece.values().length];
+    private static final Piece[] CASTLES = new Piece[]{Piece.WHITE_KING, Piece.WHITE_QUEEN, Piece.BLACK_KING,
+        Piece.BLACK_QUEEN};
+    private static final long[] EN_PASSANT_FILE_KEYS = new long[8];
+    private static final long BLACK_TO_MOVE_KEY;
+
+    static {
+        SplittableRandom random = new SplittableRandom(SEED);
+        for (long[] squareKeys : PIECE_SQUARE_KEYS) {
+            for (int i = 0; i < squareKeys.length; i++) {
+                squareKeys[i] = random.nextLong();
+            }
+        }
+        for (int i = 0; i < CASTLE_KEYS.length; i++) {
+            CASTLE_KEYS[i] = random.nextLong();
+        }
+        for (int i = 0; i < EN_PASSANT_FILE_KEYS.length; i++) {
+            EN_PASSANT_FILE_KEYS[i] = random.nextLong();
+        }
+        BLACK_TO_MOVE_KEY = random.nextLong();
+    }
+
+    private Zobrist() {
+        // no instances
+    }
+
+    static long pieceSquareKey(Piece piece, Square square) {
+        return PIECE_SQUARE_KEYS[piece.ordinal()][square.ordinal()];
+    }
+
+    /**
+     * Get the hash of a position.
+     *
+     * @param playerToMove     the color whose turn it is
+     * @param board            the pieces of the position
+     * @param enPassantTarget  the square a pawn can be captured en passant on or null if there isn't one
+     * @param availableCastles the castles still available, as kept by {@link Game}
+     * @return the hash of the position
+     */
+    static long hash(Color playerToMove, Board board, Square enPassantTarget, Set<Piece> availableCastles) {
+        long hash = board.getPieceHash();
+        if (!availableCastles.isEmpty()) {
+            // looked up rather than iterated, which would allocate an iterator
+            for (Piece castle : CASTLES) {
+                if (availableCastles.contains(castle)) {
+                    hash ^= CASTLE_KEYS[castle.ordinal()];
+                }
+            }
+        }
+        if (enPassantTarget != null) {
+            hash ^= EN_PASSANT_FILE_KEYS[enPassantTarget.file];
+        }
+        if (playerToMove == Color.BLACK) {
+            hash ^= BLACK_TO_MOVE_KEY;
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,64 @@
+package com.keshane.blitz;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+public class BitbasesTest {
+    private static final String[] POSITIONS = {
+        "4k3/8/4K3/4P3/8/8/8/8 w - - 0 1",
+        "4k3/8/4K3/4P3/8/8/8/8 b - - 0 1",
+        "k7/8/8/8/8/8/P7/K7 w - - 0 1",
+        "8/8/8/8/8/2K5/8/k2r4 w - - 0 1",
+        "8/8/8/8/8/8/1r6/K1k5 w - - 0 1",
+        "8/8/8/4k3/8/8/8/Q3K3 b - - 0 1",
+        "8/8/8/8/8/8/1q6/K1k5 w - - 0 1",
+        "4k3/8/8/8/8/8/8/4K2R w - - 0 1",
+    };
+
+    @Test
+    public void roundTripTest() throws IOException {
+        List<Adjudication> expected = adjudicateAll();
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        Bitbases.writeTo(output);
+        byte[] saved = output.toByteArray();
+
+        Bitbases.readFrom(new ByteArrayInputStream(saved));
+        Assert.assertEquals(expected, adjudicateAll());
+        ByteArrayOutputStream resaved = new ByteArrayOutputStream();
+        Bitbases.writeTo(resaved);
+        Assert.assertArrayEquals(saved, resaved.toByteArray());
+    }
+
+    @Test
+    public void badMagicTest() throws IOException {
+        List<Adjudication> expected = adjudicateAll();
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        Bitbases.writeTo(output);
+        byte[] saved = output.toByteArray();
+        saved[0] ^= 1;
+
+        try {
+            Bitbases.readFrom(new ByteArrayInputStream(saved));
+            Assert.fail("Bitbases with a bad magic number were read");
+        }
+        catch (IOException expectedException) {
+            Assert.assertEquals("Not a saved set of bitbases", expectedException.getMessage());
+        }
+        // the bitbases already loaded are kept
+        Assert.assertEquals(expected, adjudicateAll());
+    }
+
+    private static List<Adjudication> adjudicateAll() {
+        List<Adjudication> results = new ArrayList<>();
+        for (String fen : POSITIONS) {
+            results.add(new Game("white name", "black name", fen).adjudicate());
+        }
+        return results;
+    }
+}
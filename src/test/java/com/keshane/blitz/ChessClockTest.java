@@ -0,0 +1,84 @@
+package com.keshane.blitz;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+public class ChessClockTest {
+    private long now;
+
+    @Test
+    public void incrementTest() {
+        ChessClock clock = new ChessClock(TimeControl.ofSeconds(180, 2), () -> now);
+        clock.start(true);
+        now += TimeUnit.SECONDS.toNanos(5);
+        Assert.assertTrue(clock.press());
+
+        Assert.assertEquals(TimeUnit.SECONDS.toNanos(177), clock.getWhiteRemainingNanos());
+        Assert.assertFalse(clock.isWhiteRunning());
+        now += 1;
+        Assert.assertEquals(TimeUnit.SECONDS.toNanos(180) - 1, clock.getBlackRemainingNanos());
+        Assert.assertEquals(now - 1 + TimeUnit.SECONDS.toNanos(180), clock.getDeadline());
+    }
+
+    @Test
+    public void delayTest() {
+        ChessClock clock = new ChessClock(new TimeControl(60, 0, 3, TimeUnit.SECONDS), () -> now);
+        clock.start(true);
+        now += TimeUnit.SECONDS.toNanos(2);
+        clock.press();
+        now += TimeUnit.SECONDS.toNanos(10);
+        clock.press();
+
+        Assert.assertEquals(TimeUnit.SECONDS.toNanos(60), clock.getWhiteRemainingNanos());
+        Assert.assertEquals(TimeUnit.SECONDS.toNanos(53), clock.getBlackRemainingNanos());
+    }
+
+    @Test
+    public void flagTest() {
+        Game game = new Game("white player", "black player");
+        game.setClock(new ChessClock(TimeControl.ofSeconds(1, 0), () -> now));
+        Assert.assertFalse(game.move("e4").hasErrors());
+        now += TimeUnit.SECONDS.toNanos(1);
+
+        Assert.assertTrue(game.move("e5").hasErrors());
+        Assert.assertEquals(GameStatus.OUT_OF_TIME, game.getStatus());
+        Assert.assertEquals(Adjudication.LOSS, game.adjudicate());
+        Assert.assertFalse(game.getClock().isRunning());
+        Assert.assertFalse(game.checkFlag());
+    }
+
+    @Test
+    public void flagKeepsRepetitionsTest() {
+        Game game = new Game("white player", "black player");
+        game.setClock(new ChessClock(TimeControl.ofSeconds(1, 0), () -> now));
+        for (String move : new String[]{"Nf3", "Nf6", "Ng1", "Ng8"}) {
+            Assert.assertFalse(game.move(move).hasErrors());
+        }
+        now += TimeUnit.SECONDS.toNanos(1);
+
+        Assert.assertTrue(game.checkFlag());
+        Assert.assertEquals(GameStatus.OUT_OF_TIME, game.snapshot().getStatus());
+        // the starting position has come up twice, and the flag falling doesn't make it three times
+        Assert.assertFalse(game.claimDraw());
+    }
+
+    @Test
+    public void flagDuringMoveTest() {
+        Game game = new Game("white player", "black player");
+        // each reading of the clock takes 600 ms, so white has time left before e4 but not after it
+        long step = TimeUnit.MILLISECONDS.toNanos(600);
+        game.setClock(new ChessClock(TimeControl.ofSeconds(1, 0), () -> now += step));
+
+        MoveResult result = game.move("e4");
+        Assert.assertFalse(result.hasErrors());
+        Assert.assertEquals(GameStatus.OUT_OF_TIME, result.getStatus());
+        Assert.assertTrue(result.getWarnings().contains("Time has run out"));
+        Assert.assertEquals(GameStatus.OUT_OF_TIME, game.getStatus());
+        // white flagged, so black, to move, has won
+        Assert.assertEquals(Adjudication.WIN, game.adjudicate());
+        Assert.assertFalse(game.getClock().isRunning());
+        Assert.assertTrue(game.move("e5").hasErrors());
+    }
+}
@@ -0,0 +1,45 @@
+package com.keshane.blitz;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.List;
+
+public class CorpusReplayTest {
+    private static final String GAMES = "[Event \"Test\"]\n"
+        + "[Result \"1-0\"]\n"
+        + "\n"
+        + "1. e4 e5 2. Nf3 {a comment\n"
+        + "over two lines} Nc6 (2... d6 3. d4) 3. Bb5 a6!? $1 4.Ba4 Nf6 1-0\n"
+        + "\n"
+        + "e4 e5\n"
+        + "Qh5 Nc6\n"
+        + "Bc4 Nf6\n"
+        + "Qxf7#\n"
+        + "\n"
+        + "d4 Ke7 *\n";
+
+    @Test
+    public void readGamesTest() throws IOException {
+        List<List<String>> games = CorpusReplay.readGames(new StringReader(GAMES));
+        Assert.assertEquals(3, games.size());
+        Assert.assertEquals(Arrays.asList("e4", "e5", "Nf3", "Nc6", "Bb5", "a6", "Ba4", "Nf6"), games.get(0));
+        Assert.assertEquals(Arrays.asList("e4", "e5", "Qh5", "Nc6", "Bc4", "Nf6", "Qxf7#"), games.get(1));
+    }
+
+    @Test
+    public void replayTest() throws IOException, InterruptedException {
+        List<List<String>> games = CorpusReplay.readGames(new StringReader(GAMES));
+        for (int threadCount : new int[]{1, 3}) {
+            CorpusReplay.Report report = CorpusReplay.replay(games, threadCount, true);
+            Assert.assertEquals(3, report.gameCount);
+            // the last game stops at its illegal second move
+            Assert.assertEquals(1, report.failedGameCount);
+            Assert.assertEquals(16, report.plyCount);
+            Assert.assertEquals(0, report.mismatchCount);
+        }
+    }
+}
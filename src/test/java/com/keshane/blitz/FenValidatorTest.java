@@ -0,0 +1,117 @@
+package com.keshane.blitz;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class FenValidatorTest {
+    private static final String STARTING_FEN = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+
+    @Test
+    public void canonicalTest() {
+        String[] fens = new String[]{
+            STARTING_FEN,
+            "rnbqkbnr/pppp1ppp/8/4p3/4P3/8/PPPP1PPP/RNBQKBNR w KQkq e6 0 2",
+            "r3k2r/8/8/8/8/8/8/R3K2R b Kq - 10 40",
+            "8/8/8/8/8/8/8/K6k w - - - -"};
+        for (String fen : fens) {
+            StringBuilder canonical = new StringBuilder();
+            Assert.assertNull(new FenValidator().validate(fen, canonical));
+            Assert.assertEquals(new Game("white", "black", fen).toFenNotation(), canonical.toString());
+        }
+    }
+
+    @Test
+    public void normalizeTest() {
+        FenValidator validator = new FenValidator();
+        StringBuilder canonical = new StringBuilder();
+        // the rooks have left a1 and h8, and no pawn can have just skipped d3
+        Assert.assertNull(validator.validate("  4k2r/8/8/8/8/8/8/4K2R   b KQk d3 3 9 ", canonical));
+        Assert.assertEquals("4k2r/8/8/8/8/8/8/4K2R b Kk - - -", canonical.toString());
+    }
+
+    @Test
+    public void normalizeLikeGameTest() {
+        // each drops a castle or en passant target that Game keeps
+        String[] fens = new String[]{
+            "4k2r/8/8/8/8/8/8/4K2R b KQk d3 3 9",
+            "r3k3/8/8/8/8/8/8/R3K3 w KQq - 0 1",
+            "4k3/8/8/8/4P3/8/8/4K3 w - e3 0 1",
+            "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq e6 0 1"};
+        FenValidator validator = new FenValidator();
+        for (String fen : fens) {
+            StringBuilder canonical = new StringBuilder();
+            Assert.assertNull(validator.validate(fen, canonical));
+            Game fromRecord = new Game("white", "black", fen);
+            Game fromCanonical = new Game("white", "black", canonical.toString());
+            Assert.assertNotEquals(fromRecord.toFenNotation(), canonical.toString());
+            // Game writes the canonical form back as it is, and plays the same from it
+            Assert.assertEquals(canonical.toString(), fromCanonical.toFenNotation());
+            Assert.assertEquals(fromRecord.toFenNotation().split(" ")[0], canonical.toString().split(" ")[0]);
+            Assert.assertEquals(sorted(fromRecord.legalMovesAsSan()), sorted(fromCanonical.legalMovesAsSan()));
+        }
+    }
+
+    @Test
+    public void errorTest() {
+        String[] fens = new String[]{
+            "",
+            "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0",
+            "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1 extra",
+            "rnbqkbnr/pppppppp/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+            "rnbqkbnr/pppppppp/9/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+            "rnbqkbnr/ppppxppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+            "rnbq1bnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQ - 0 1",
+            "rnbqkbnP/pppppppp/8/8/8/8/PPPPPPP1/RNBQKBNR w KQkq - 0 1",
+            "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR x KQkq - 0 1",
+            "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KKkq - 0 1",
+            "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq e4 0 1",
+            "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - x 1",
+            "4k3/8/8/8/8/8/8/K3K3 w - - 0 1",
+            "4k3/4R3/8/8/8/8/8/4K3 w - - 0 1"};
+        FenValidator validator = new FenValidator();
+        for (String fen : fens) {
+            StringBuilder canonical = new StringBuilder();
+            Assert.assertNotNull(validator.validate(fen, canonical));
+            Assert.assertEquals(0, canonical.length());
+        }
+    }
+
+    @Test
+    public void validateFileTest() throws IOException, InterruptedException {
+        Path directory = Files.createTempDirectory("fen");
+        Path input = directory.resolve("in.fen");
+        Path output = directory.resolve("out.tsv");
+        Files.write(input, Arrays.asList(STARTING_FEN, "", "8/8/8/8/8/8/8/8 w - - 0 1", "8/8/8/8/8/8/8/K6k b - - 0 1"),
+            StandardCharsets.ISO_8859_1);
+        try {
+            FenValidator.Summary summary = FenValidator.validateFile(input, output, 2);
+            Assert.assertEquals(3, summary.getLineCount());
+            Assert.assertEquals(1, summary.getInvalidCount());
+            List<String> results = Files.readAllLines(output, StandardCharsets.ISO_8859_1);
+            Assert.assertEquals(3, results.size());
+            Assert.assertEquals("1\tok\trnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - - -", results.get(0));
+            Assert.assertTrue(results.get(1).startsWith("3\terror\t"));
+            Assert.assertEquals("4\tok\t8/8/8/8/8/8/8/K6k b - - - -", results.get(2));
+        }
+        finally {
+            Files.deleteIfExists(input);
+            Files.deleteIfExists(output);
+            Files.delete(directory);
+        }
+    }
+
+    private static List<String> sorted(List<String> notations) {
+        List<String> sortedNotations = new ArrayList<>(notations);
+        Collections.sort(sortedNotations);
+        return sortedNotations;
+    }
+}
@@ -0,0 +1,67 @@
+package com.keshane.blitz;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class GameEventStreamTest {
+    @Test
+    public void batchTest() {
+        GameEventStream events = new GameEventStream(8);
+        List<Long> sequences = new ArrayList<>();
+        List<Boolean> batchEnds = new ArrayList<>();
+        GameEventStream.Subscription subscription = events.subscribe(
+            (type, packedMove, positionHash, status, sequence, isEndOfBatch) -> {
+                sequences.add(sequence);
+                batchEnds.add(isEndOfBatch);
+            });
+        for (int i = 0; i < 5; i++) {
+            events.publish(GameEventType.MOVE_APPLIED, i, i, GameStatus.IN_PROGRESS);
+        }
+
+        Assert.assertEquals(3, subscription.poll(3));
+        Assert.assertEquals(2, subscription.poll());
+        Assert.assertEquals(0, subscription.poll());
+        Assert.assertEquals(4, events.getCursor());
+        Assert.assertEquals(Arrays.asList(0L, 1L, 2L, 3L, 4L), sequences);
+        Assert.assertEquals(Arrays.asList(false, false, true, false, true), batchEnds);
+    }
+
+    @Test
+    public void backpressureTest() throws InterruptedException {
+        GameEventStream events = new GameEventStream(4);
+        long[] hashes = new long[10];
+        GameEventStream.Subscription subscription = events.subscribe(
+            (type, packedMove, positionHash, status, sequence, isEndOfBatch) -> hashes[(int) sequence] = positionHash);
+        CountDownLatch isPublished = new CountDownLatch(1);
+        Thread publisher = new Thread(() -> {
+            for (int i = 0; i < hashes.length; i++) {
+                events.publish(GameEventType.MOVE_APPLIED, PackedMove.NONE, i * 31L, GameStatus.IN_PROGRESS);
+            }
+            isPublished.countDown();
+        });
+        publisher.start();
+
+        // the publisher can't get more than the capacity ahead of the subscription
+        Assert.assertFalse(isPublished.await(100, TimeUnit.MILLISECONDS));
+        Assert.assertEquals(3, events.getCursor());
+        int handled = 0;
+        while (handled < hashes.length) {
+            handled += subscription.poll();
+        }
+        Assert.assertTrue(isPublished.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < hashes.length; i++) {
+            Assert.assertEquals(i * 31L, hashes[i]);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void capacityTest() {
+        new GameEventStream(12);
+    }
+}
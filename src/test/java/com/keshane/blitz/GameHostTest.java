@@ -0,0 +1,107 @@
+package com.keshane.blitz;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+public class GameHostTest {
+    private static final String[] SCHOLARS_MATE = new String[]{"e4", "e5", "Bc4", "Nc6", "Qh5", "Nf6", "Qxf7"};
+
+    private GameHost host;
+
+    @Before
+    public void setupTest() {
+        host = new GameHost();
+    }
+
+    @After
+    public void tearDown() {
+        host.close();
+    }
+
+    @Test
+    public void movesRunInOrderTest() throws Exception {
+        host.createGame("game", "white player", "black player");
+        CompletableFuture<MoveResult> lastMove = null;
+        for (String move : SCHOLARS_MATE) {
+            lastMove = host.move("game", move);
+        }
+        Assert.assertEquals(GameStatus.CHECKMATE, lastMove.get(10, TimeUnit.SECONDS).getStatus());
+    }
+
+    @Test
+    public void gamesRunInParallelTest() throws Exception {
+        int gameCount = 200;
+        ExecutorService clients = Executors.newFixedThreadPool(8);
+        List<CompletableFuture<MoveResult>> lastMoves = new ArrayList<>();
+        try {
+            List<CompletableFuture<CompletableFuture<MoveResult>>> submissions = new ArrayList<>();
+            for (int i = 0; i < gameCount; i++) {
+                String gameId = "game " + i;
+                host.createGame(gameId, "white player", "black player");
+                submissions.add(CompletableFuture.supplyAsync(() -> {
+                    CompletableFuture<MoveResult> lastMove = null;
+                    for (String move : SCHOLARS_MATE) {
+                        lastMove = host.move(gameId, move);
+                    }
+                    return lastMove;
+                }, clients));
+            }
+            for (CompletableFuture<CompletableFuture<MoveResult>> submission : submissions) {
+                lastMoves.add(submission.get(10, TimeUnit.SECONDS));
+            }
+        }
+        finally {
+            clients.shutdown();
+        }
+
+        for (CompletableFuture<MoveResult> lastMove : lastMoves) {
+            Assert.assertEquals(GameStatus.CHECKMATE, lastMove.get(10, TimeUnit.SECONDS).getStatus());
+        }
+        Assert.assertEquals(gameCount, host.getGameCount());
+    }
+
+    @Test
+    public void removeGameTest() throws Exception {
+        host.createGame("game", "white player", "black player");
+        host.move("game", "e4");
+        Game game = host.removeGame("game").get(10, TimeUnit.SECONDS);
+        Assert.assertEquals("rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq e3 - -", game.toFenNotation());
+        Assert.assertFalse(host.hasGame("game"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void duplicateGameTest() {
+        host.createGame("game", "white player", "black player");
+        host.createGame("game", "white player", "black player");
+    }
+
+    @Test
+    public void flagFallTest() throws Exception {
+        int gameCount = 100;
+        TimeControl timeControl = new TimeControl(50, 0, 0, TimeUnit.MILLISECONDS);
+        for (int i = 0; i < gameCount; i++) {
+            host.createGame("game " + i, "white player", "black player");
+            host.startClock("game " + i, timeControl);
+            host.move("game " + i, "e4");
+        }
+        Thread.sleep(300);
+
+        for (int i = 0; i < gameCount; i++) {
+            Game game = host.submit("game " + i, g -> g).get(10, TimeUnit.SECONDS);
+            Assert.assertEquals(GameStatus.OUT_OF_TIME, game.getStatus());
+            Assert.assertFalse(game.getClock().isRunning());
+            Assert.assertTrue(game.getClock().getBlackRemainingNanos() <= 0);
+            Assert.assertTrue(game.getClock().getWhiteRemainingNanos() > 0);
+        }
+        Assert.assertTrue(host.move("game 0", "e5").get(10, TimeUnit.SECONDS).hasErrors());
+    }
+}
@@ -4,7 +4,16 @@ import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
+import com.sun.management.ThreadMXBean;
+
 import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
 
 public class GameTest {
     private Game chessGame;
@@ -78,6 +87,491 @@ public class GameTest {
         Assert.assertEquals(expectedFenNotation, actualFenNotation);
     }
 
+    @Test
+    public void checkmateStatusTest() {
+        chessGame.move("f3");
+        chessGame.move("e5");
+        chessGame.move("g4");
+        MoveResult result = chessGame.move("Qh4");
+        Assert.assertEquals(GameStatus.CHECKMATE, result.getStatus());
+        Assert.assertEquals("Checkmate!", result.getWarnings().get(0));
+        Assert.assertEquals(GameStatus.CHECKMATE, chessGame.getStatus());
+    }
+
+    @Test
+    public void stalemateStatusTest() {
+        chessGame = new Game("white name", "black name", "7k/8/5QK1/8/8/8/8/8 w - - 0 1");
+        Assert.assertEquals(GameStatus.IN_PROGRESS, chessGame.getStatus());
+        MoveResult result = chessGame.move("Qf7");
+        Assert.assertEquals(GameStatus.STALEMATE, result.getStatus());
+        Assert.assertEquals("Stalemate!", result.getWarnings().get(0));
+        Assert.assertTrue(chessGame.move("Kg8").hasErrors());
+    }
+
+    @Test
+    public void legalMovesAsSanTest() {
+        List<String> notations = chessGame.legalMovesAsSan();
+        Assert.assertEquals(20, notations.size());
+        Assert.assertTrue(notations.contains("Nf3"));
+        Assert.assertTrue(notations.contains("e4"));
+
+        chessGame.move("e4");
+        chessGame.move("e5");
+        chessGame.move("Bc4");
+        chessGame.move("Nc6");
+        chessGame.move("Qh5");
+        chessGame.move("Nf6");
+        notations = chessGame.legalMovesAsSan();
+        Assert.assertTrue(notations.contains("Qxf7#"));
+        Assert.assertTrue(notations.contains("Bxf7+"));
+        Assert.assertTrue(notations.contains("Qxe5+"));
+    }
+
+    @Test
+    public void discoveredCheckTest() {
+        chessGame = new Game("white name", "black name", "4k3/8/8/8/4N3/8/8/4R1K1 w - - 0 1");
+        List<String> notations = chessGame.legalMovesAsSan();
+        // every knight move uncovers the rook, and Nd6 and Nf6 check the king as well
+        Assert.assertTrue(notations.contains("Nc3+"));
+        Assert.assertTrue(notations.contains("Ng5+"));
+        Assert.assertTrue(notations.contains("Nd6+"));
+        Assert.assertTrue(notations.contains("Nf6+"));
+        Assert.assertTrue(notations.contains("Re2"));
+        Assert.assertTrue(notations.contains("Kf2"));
+    }
+
+    @Test
+    public void enPassantDiscoveredCheckTest() {
+        // taking en passant clears both pawns off the fifth rank, which uncovers the rook
+        chessGame = new Game("white name", "black name", "8/8/8/R2pP2k/8/8/8/4K3 w - d6 0 1");
+        List<String> notations = chessGame.legalMovesAsSan();
+        Assert.assertTrue(notations.contains("exd6+"));
+        Assert.assertTrue(notations.contains("e6"));
+    }
+
+    @Test
+    public void promotionCheckTest() {
+        chessGame = new Game("white name", "black name", "k7/4P3/8/8/8/8/8/4K3 w - - 0 1");
+        List<String> notations = chessGame.legalMovesAsSan();
+        Assert.assertTrue(notations.contains("e8=Q+"));
+        Assert.assertTrue(notations.contains("e8=R+"));
+        Assert.assertTrue(notations.contains("e8=B"));
+        Assert.assertTrue(notations.contains("e8=N"));
+
+        chessGame = new Game("white name", "black name", "8/4P3/3k4/8/8/8/8/4K3 w - - 0 1");
+        notations = chessGame.legalMovesAsSan();
+        Assert.assertTrue(notations.contains("e8=N+"));
+        Assert.assertTrue(notations.contains("e8=Q"));
+    }
+
+    @Test
+    public void castlingCheckTest() {
+        chessGame = new Game("white name", "black name", "5k2/8/8/8/8/8/8/4K2R w K - 0 1");
+        Assert.assertTrue(chessGame.legalMovesAsSan().contains("O-O+"));
+        chessGame = new Game("white name", "black name", "3k4/8/8/8/8/8/8/R3K3 w Q - 0 1");
+        Assert.assertTrue(chessGame.legalMovesAsSan().contains("O-O-O+"));
+        chessGame = new Game("white name", "black name", "6k1/8/8/8/8/8/8/4K2R w K - 0 1");
+        Assert.assertTrue(chessGame.legalMovesAsSan().contains("O-O"));
+    }
+
+    @Test
+    public void checkmateFlagTest() {
+        chessGame = new Game("white name", "black name", "6k1/5ppp/8/8/8/8/8/R5K1 w - - 0 1");
+        List<String> notations = chessGame.legalMovesAsSan();
+        Assert.assertTrue(notations.contains("Ra8#"));
+        Assert.assertTrue(notations.contains("Ra7"));
+        Assert.assertEquals(GameStatus.CHECKMATE, chessGame.move("Ra8#").getStatus());
+
+        // the queen and the rook mate, while the bishop and the knight don't reach the king
+        chessGame = new Game("white name", "black name", "k7/2P5/1K6/8/8/8/8/8 w - - 0 1");
+        notations = chessGame.legalMovesAsSan();
+        Assert.assertTrue(notations.contains("c8=Q#"));
+        Assert.assertTrue(notations.contains("c8=R#"));
+        Assert.assertTrue(notations.contains("c8=B"));
+        Assert.assertTrue(notations.contains("c8=N"));
+    }
+
+    @Test
+    public void sanDisambiguationTest() {
+        chessGame = new Game("white name", "black name", "k7/8/8/8/1Q1Q4/8/1Q1Q4/7K w - - 0 1");
+        List<String> notations = chessGame.legalMovesAsSan();
+        Assert.assertTrue(notations.contains("Qb2c3"));
+        Assert.assertTrue(notations.contains("Q2a3#"));
+        Assert.assertTrue(notations.contains("Qbc5"));
+        Assert.assertTrue(notations.contains("Qe5"));
+        for (String notation : notations) {
+            Game copy = new Game("white name", "black name", chessGame.toFenNotation());
+            Assert.assertFalse(notation, copy.move(notation).hasErrors());
+        }
+    }
+
+    @Test
+    public void transpositionHashTest() {
+        Game otherOrder = new Game("white name", "black name");
+        chessGame.move("Nf3");
+        otherOrder.move("Nc3");
+        Assert.assertNotEquals(chessGame.getPositionHash(), otherOrder.getPositionHash());
+
+        chessGame.move("Nf6");
+        chessGame.move("Nc3");
+        otherOrder.move("Nf6");
+        otherOrder.move("Nf3");
+        Assert.assertEquals(chessGame.getPositionHash(), otherOrder.getPositionHash());
+    }
+
+    @Test
+    public void evaluateTest() {
+        Assert.assertEquals(0, chessGame.evaluate());
+        chessGame.move("e4");
+        int blackScore = chessGame.evaluate();
+        Assert.assertTrue(blackScore < 0);
+
+        Game mirrored = new Game("white name", "black name",
+            "rnbqkbnr/pppp1ppp/8/4p3/8/8/PPPPPPPP/RNBQKBNR w KQkq e6 0 1");
+        Assert.assertEquals(blackScore, mirrored.evaluate());
+    }
+
+    @Test
+    public void legalCaptureTest() {
+        Assert.assertFalse(chessGame.hasLegalCapture());
+        chessGame.move("e4");
+        chessGame.move("d5");
+        Assert.assertTrue(chessGame.hasLegalCapture());
+
+        // the only capture would leave the king in check
+        chessGame = new Game("white name", "black name", "4r2k/8/8/2p5/8/4B3/8/4K3 w - - 0 1");
+        Assert.assertFalse(chessGame.hasLegalCapture());
+    }
+
+    @Test
+    public void staticExchangeTest() {
+        // the rook behind the capturing rook recaptures through it
+        chessGame = new Game("white name", "black name", "4k3/8/4p3/3q4/8/8/3R4/3RK3 w - - 0 1");
+        Move winsQueenForRook = new NormalMove(Piece.WHITE_ROOK, Square.of(3, 1), Square.of(3, 4), Piece.BLACK_QUEEN,
+            false, false);
+        Assert.assertEquals(500, chessGame.staticExchange(winsQueenForRook));
+
+        chessGame = new Game("white name", "black name", "4k3/2p5/3p4/8/8/8/8/3RK3 w - - 0 1");
+        Move losesRookForPawn = new NormalMove(Piece.WHITE_ROOK, Square.of(3, 0), Square.of(3, 5), Piece.BLACK_PAWN,
+            false, false);
+        Assert.assertEquals(-400, chessGame.staticExchange(losesRookForPawn));
+    }
+
+    @Test
+    public void adjudicationTest() {
+        Assert.assertEquals(Adjudication.UNKNOWN, chessGame.adjudicate());
+
+        chessGame = new Game("white name", "black name", "4k3/8/4K3/4P3/8/8/8/8 w - - 0 1");
+        Assert.assertEquals(Adjudication.WIN, chessGame.adjudicate());
+        chessGame = new Game("white name", "black name", "4k3/8/4K3/4P3/8/8/8/8 b - - 0 1");
+        Assert.assertEquals(Adjudication.LOSS, chessGame.adjudicate());
+        // a rook pawn can't win against a king in the corner
+        chessGame = new Game("white name", "black name", "k7/8/8/8/8/8/P7/K7 w - - 0 1");
+        Assert.assertEquals(Adjudication.DRAW, chessGame.adjudicate());
+        // black is the strong side, which is looked up with the board flipped
+        chessGame = new Game("white name", "black name", "8/8/8/8/8/2K5/8/k2r4 w - - 0 1");
+        Assert.assertEquals(Adjudication.LOSS, chessGame.adjudicate());
+        // white captures the undefended rook
+        chessGame = new Game("white name", "black name", "8/8/8/8/8/8/1r6/K1k5 w - - 0 1");
+        Assert.assertEquals(Adjudication.DRAW, chessGame.adjudicate());
+    }
+
+    @Test
+    public void snapshotTest() {
+        Position start = chessGame.snapshot();
+        chessGame.move("e4");
+        Position afterE4 = chessGame.snapshot();
+
+        Assert.assertEquals("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - - -", start.toFenNotation());
+        Assert.assertEquals(chessGame.toFenNotation(), afterE4.toFenNotation());
+        Assert.assertEquals(20, start.getLegalMoveCount());
+        Assert.assertTrue(start.isLegal(PackedMove.parseUci("e2e4")));
+        Assert.assertFalse(afterE4.isLegal(PackedMove.parseUci("e2e4")));
+        Assert.assertEquals(Piece.WHITE_PAWN, afterE4.getPieceAt(28));
+        Assert.assertNull(afterE4.getPieceAt(12));
+        Assert.assertFalse(afterE4.isWhiteToMove());
+        Assert.assertEquals(chessGame.getPositionHash(), afterE4.getHash());
+    }
+
+    @Test
+    public void eventStreamTest() {
+        GameEventStream events = new GameEventStream(16);
+        chessGame.setEventStream(events);
+        List<GameEventType> types = new ArrayList<>();
+        GameEventStream.Subscription subscription = events.subscribe(
+            (type, packedMove, positionHash, status, sequence, isEndOfBatch) -> types.add(type));
+
+        chessGame.moveUci("f2f3");
+        chessGame.moveUci("e7e5");
+        chessGame.moveUci("g2g4");
+        chessGame.moveUci("d8h4");
+        Assert.assertEquals(6, subscription.poll());
+        Assert.assertEquals(Arrays.asList(GameEventType.MOVE_APPLIED, GameEventType.MOVE_APPLIED,
+            GameEventType.MOVE_APPLIED, GameEventType.MOVE_APPLIED, GameEventType.CHECK, GameEventType.GAME_OVER),
+            types);
+    }
+
+    @Test
+    public void drawClaimTest() {
+        GameEventStream events = new GameEventStream(16);
+        chessGame.setEventStream(events);
+        long[] claimedHash = new long[1];
+        GameEventStream.Subscription subscription = events.subscribe(
+            (type, packedMove, positionHash, status, sequence, isEndOfBatch) -> claimedHash[0] = positionHash);
+
+        for (int i = 0; i < 2; i++) {
+            Assert.assertFalse(chessGame.claimDraw());
+            chessGame.moveUci("g1f3");
+            chessGame.moveUci("g8f6");
+            chessGame.moveUci("f3g1");
+            chessGame.moveUci("f6g8");
+        }
+        subscription.poll();
+        Assert.assertTrue(chessGame.claimDraw());
+        Assert.assertEquals(1, subscription.poll());
+        Assert.assertEquals(chessGame.getPositionHash(), claimedHash[0]);
+    }
+
+    @Test
+    public void metricsTest() {
+        HistogramMetricsSink metrics = new HistogramMetricsSink();
+        Game.setMetricsSink(metrics);
+        try {
+            chessGame.move("e4");
+            chessGame.move("e4");
+            chessGame.move("Zz9");
+            chessGame.moveUci("e7e5");
+        }
+        finally {
+            Game.setMetricsSink(MetricsSink.NONE);
+        }
+        chessGame.move("Nf3");
+
+        Assert.assertEquals(4, metrics.getMoveLatencies().getCount());
+        Assert.assertEquals(3, metrics.getParseLatencies().getCount());
+        Assert.assertEquals(1, metrics.getParseFailureCount());
+        Assert.assertEquals(1, metrics.getIllegalMoveCount());
+        // the moves of the starting position and after e4
+        Assert.assertEquals(40, metrics.getLegalMoveCount());
+        Assert.assertEquals(2, metrics.getGenerationLatencies().getCount());
+        Assert.assertTrue(metrics.getMoveLatencies().getPercentileNanos(0.5) > 0);
+    }
+
+    @Test
+    public void traceTest() {
+        long startHash = chessGame.getPositionHash();
+        long[] traced = new long[4];
+        Game.setMetricsSink(new MetricsSink() {
+            @Override
+            public void recordMove(long positionHash, int packedMove, long nanos) {
+                traced[0] = positionHash;
+                traced[1] = packedMove;
+            }
+
+            @Override
+            public void recordGeneration(long positionHash, int pseudoLegalCount, int legalCount,
+                long generationNanos, long filteringNanos) {
+                traced[2] = positionHash;
+                traced[3] = legalCount;
+            }
+        });
+        try {
+            chessGame.move("e4");
+        }
+        finally {
+            Game.setMetricsSink(MetricsSink.NONE);
+        }
+
+        Assert.assertEquals(startHash, traced[0]);
+        Assert.assertEquals(PackedMove.parseUci("e2e4"), traced[1]);
+        Assert.assertEquals(startHash, traced[2]);
+        Assert.assertEquals(20, traced[3]);
+    }
+
+    @Test
+    public void allocationFreeMoveTest() {
+        ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if (!threads.isThreadAllocatedMemorySupported()) {
+            return;
+        }
+        threads.setThreadAllocatedMemoryEnabled(true);
+        int[] knightMoves = new int[]{PackedMove.parseUci("g1f3"), PackedMove.parseUci("g8f6"),
+            PackedMove.parseUci("f3g1"), PackedMove.parseUci("f6g8")};
+        chessGame.setAllocationFree(true);
+        for (int i = 0; i < 5000; i++) {
+            chessGame.moveUci(knightMoves[i % knightMoves.length]);
+        }
+
+        long threadId = Thread.currentThread().getId();
+        long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < 2000; i++) {
+            Assert.assertFalse(chessGame.moveUci(knightMoves[i % knightMoves.length]).hasErrors());
+        }
+        long allocated = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+        // leaves room for the measurement itself, but not for anything allocated per move
+        Assert.assertTrue("Allocated " + allocated + " bytes in 2000 moves", allocated < 2000);
+        Assert.assertEquals("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - - -", chessGame.toFenNotation());
+    }
+
+    @Test
+    public void allocationFreeReversibleMovesTest() {
+        ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if (!threads.isThreadAllocatedMemorySupported()) {
+            return;
+        }
+        threads.setThreadAllocatedMemoryEnabled(true);
+        int[] knightMoves = new int[]{PackedMove.parseUci("g1f3"), PackedMove.parseUci("g8f6"),
+            PackedMove.parseUci("f3g1"), PackedMove.parseUci("f6g8")};
+        chessGame.setAllocationFree(true);
+        // a short warm-up, so the repetition history has to hold the measured moves as well
+        for (int i = 0; i < 40; i++) {
+            chessGame.moveUci(knightMoves[i % knightMoves.length]);
+        }
+
+        long threadId = Thread.currentThread().getId();
+        long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < 1000; i++) {
+            Assert.assertFalse(chessGame.moveUci(knightMoves[i % knightMoves.length]).hasErrors());
+        }
+        long allocated = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+        Assert.assertTrue("Allocated " + allocated + " bytes in 1000 reversible moves", allocated < 2000);
+        Assert.assertTrue(chessGame.claimDraw());
+    }
+
+    @Test
+    public void fiftyMoveClaimTest() {
+        chessGame = new Game("white name", "black name", "k7/8/8/8/8/8/8/7K w - - 0 1");
+        // white's king snakes through the first six ranks and on to f7 without visiting a square twice, so no
+        // position repeats while black's king steps between a8 and b8
+        List<String> path = new ArrayList<>();
+        for (int rank = 1; rank <= 6; rank++) {
+            for (int i = 0; i < 8; i++) {
+                char file = (char) (rank % 2 == 1 ? 'h' - i : 'a' + i);
+                path.add("" + file + rank);
+            }
+        }
+        path.add("h7");
+        path.add("g7");
+        path.add("f7");
+        for (int i = 1; i < path.size(); i++) {
+            Assert.assertFalse(chessGame.claimDraw());
+            Assert.assertFalse(chessGame.moveUci(path.get(i - 1) + path.get(i)).hasErrors());
+            Assert.assertFalse(chessGame.moveUci(i % 2 == 1 ? "a8b8" : "b8a8").hasErrors());
+        }
+        Assert.assertEquals(51, path.size());
+        Assert.assertTrue(chessGame.claimDraw());
+    }
+
+    @Test
+    public void incrementalMoveGenerationTest() {
+        IncrementalMoveGenerator generator = new IncrementalMoveGenerator();
+        Random random = new Random(42);
+        int plyCount = 0;
+        for (int gameNumber = 0; gameNumber < 20; gameNumber++) {
+            Game game = new Game("white", "black");
+            while (!game.getStatus().isGameOver() && plyCount < 100 * (gameNumber + 1)) {
+                Board board = game.getBoard();
+                List<Move> expected = new ArrayList<>();
+                Game.generateLegalMoves(game.getPlayerToMove(), board, game.getEnPassantTarget(),
+                    game.getAvailableCastles(), new Board("8/8/8/8/8/8/8/8"), expected);
+                List<Move> actual = new ArrayList<>();
+                generator.update(board);
+                generator.addLegalMoves(game.getPlayerToMove(), board, game.getEnPassantTarget(),
+                    game.getAvailableCastles(), actual);
+                Assert.assertEquals(game.toFenNotation(), toPackedMoves(expected), toPackedMoves(actual));
+
+                game.moveUci(PackedMove.of(expected.get(random.nextInt(expected.size()))));
+                plyCount++;
+            }
+        }
+        // far fewer than the 32 pieces a full regeneration would work out every ply
+        Assert.assertTrue(generator.getRecomputedCount() < plyCount * 16L);
+    }
+
+    @Test
+    public void attackMapTest() {
+        Assert.assertEquals(0xFFL << 16, chessGame.attackMap(Color.WHITE) & 0xFFL << 16);
+        Assert.assertEquals(0, chessGame.attackMap(Color.WHITE) & 0xFFL << 24);
+        chessGame.move("e4");
+        chessGame.move("e5");
+        chessGame.move("Nf3");
+        Assert.assertEquals(1L << Square.F3.ordinal(), chessGame.attackersOf(Square.E5, Color.WHITE));
+        Assert.assertEquals(1L << Square.E5.ordinal(), chessGame.hangingPieces(Color.BLACK));
+        chessGame.move("Nc6");
+        Assert.assertEquals(1L << Square.C6.ordinal(), chessGame.attackersOf(Square.E5, Color.BLACK));
+        Assert.assertEquals(0, chessGame.hangingPieces(Color.BLACK));
+        Assert.assertEquals(0, chessGame.hangingPieces(Color.WHITE));
+    }
+
+    @Test
+    public void legalMoveQueryTest() {
+        Assert.assertEquals(20, chessGame.legalMoves().size());
+        Assert.assertEquals(1L << Square.E3.ordinal() | 1L << Square.E4.ordinal(), chessGame.legalMovesFrom(Square.E2));
+        Assert.assertEquals(0, chessGame.legalMovesFrom(Square.E7));
+        Assert.assertTrue(chessGame.isLegal(Square.G1, Square.F3));
+        Assert.assertFalse(chessGame.isLegal(Square.E2, Square.E5));
+        Assert.assertTrue(chessGame.isLegal(PackedMove.parseUci("e2e4")));
+        try {
+            chessGame.legalMoves().clear();
+            Assert.fail("Legal moves should be read-only");
+        }
+        catch (UnsupportedOperationException e) {
+            // expected
+        }
+
+        Game castling = new Game("white", "black", "r3k2r/8/8/8/8/8/8/R3K2R w KQkq - 0 1");
+        Assert.assertTrue(castling.isLegal(Square.E1, Square.G1));
+        Assert.assertTrue(castling.isLegal(Square.E1, Square.C1));
+        Game promoting = new Game("white", "black", "8/P6k/8/8/8/8/8/K7 w - - 0 1");
+        Assert.assertTrue(promoting.isLegal(PackedMove.parseUci("a7a8q")));
+        Assert.assertFalse(promoting.isLegal(PackedMove.of(Square.A7.ordinal(), Square.A8.ordinal())));
+    }
+
+    private static Set<Integer> toPackedMoves(List<Move> moves) {
+        Set<Integer> packedMoves = new HashSet<>();
+        for (Move move : moves) {
+            Assert.assertTrue(packedMoves.add(PackedMove.of(move)));
+        }
+        return packedMoves;
+    }
+
+    @Test
+    public void uciMoveTest() {
+        Assert.assertFalse(chessGame.moveUci("e2e4").hasErrors());
+        Assert.assertFalse(chessGame.moveUci("d7d5").hasErrors());
+        Assert.assertFalse(chessGame.moveUci("g1f3").hasErrors());
+        // c8e6
+        Assert.assertFalse(chessGame.moveUci(PackedMove.of(58, 44)).hasErrors());
+        Assert.assertFalse(chessGame.moveUci("f1e2").hasErrors());
+        Assert.assertFalse(chessGame.moveUci("g8f6").hasErrors());
+        Assert.assertFalse(chessGame.moveUci("e1g1").hasErrors());
+        Assert.assertTrue(chessGame.moveUci("e8c8").hasErrors());
+        Assert.assertTrue(chessGame.moveUci("e7").hasErrors());
+        String expectedFenNotation = "rn1qkb1r/ppp1pppp/4bn2/3p4/4P3/5N2/PPPPBPPP/RNBQ1RK1 b kq - - -";
+        Assert.assertEquals(expectedFenNotation, chessGame.toFenNotation());
+    }
+
+    @Test
+    public void uciPromotionTest() {
+        chessGame = new Game("white name", "black name", "1r5k/P7/8/8/8/8/8/K7 w - - 0 1");
+        Assert.assertTrue(chessGame.moveUci("a7a8").hasErrors());
+        Assert.assertFalse(chessGame.moveUci("a7b8n").hasErrors());
+        Assert.assertEquals("1N5k/8/8/8/8/8/8/K7 b - - - -", chessGame.toFenNotation());
+    }
+
+    @Test
+    public void invalidPackedMoveTest() {
+        // a promotion to the king and promotion bits past any role
+        int[] invalidMoves = new int[]{PackedMove.NONE, 12 | 28 << 6 | 5 << 12, 12 | 28 << 6 | 6 << 12,
+            12 | 28 << 6 | 7 << 12};
+        for (int invalidMove : invalidMoves) {
+            Assert.assertEquals("0000", PackedMove.toUci(invalidMove));
+            Assert.assertTrue(chessGame.moveUci(invalidMove).hasErrors());
+        }
+        String startingFenNotation = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - - -";
+        Assert.assertEquals(startingFenNotation, chessGame.toFenNotation());
+    }
+
     @Test
     public void validGamesTest() throws Exception {
 
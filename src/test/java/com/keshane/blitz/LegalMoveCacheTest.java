@@ -0,0 +1,95 @@
+package com.keshane.blitz;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class LegalMoveCacheTest {
+    private static final String[] SCHOLARS_MATE = new String[]{"e4", "e5", "Qh5", "Nc6", "Bc4", "Nf6", "Qxf7#"};
+
+    @After
+    public void tearDown() {
+        Game.setLegalMoveCache(null);
+    }
+
+    @Test
+    public void sharedBetweenGamesTest() {
+        LegalMoveCache cache = new LegalMoveCache(1024);
+        Game.setLegalMoveCache(cache);
+        Game first = new Game("white", "black");
+        for (String move : SCHOLARS_MATE) {
+            Assert.assertFalse(first.move(move).hasErrors());
+        }
+        long missCount = cache.getMissCount();
+        Assert.assertEquals(0, cache.getHitCount());
+
+        Game second = new Game("white", "black");
+        for (int i = 0; i < SCHOLARS_MATE.length - 1; i++) {
+            second.move(SCHOLARS_MATE[i]);
+        }
+        List<String> cached = sorted(second.legalMovesAsSan());
+        Assert.assertEquals(SCHOLARS_MATE.length, cache.getHitCount());
+        Assert.assertEquals(missCount, cache.getMissCount());
+        Assert.assertTrue(cached.contains("Qxf7#"));
+
+        Game.setLegalMoveCache(null);
+        Game uncached = new Game("white", "black");
+        for (int i = 0; i < SCHOLARS_MATE.length - 1; i++) {
+            uncached.move(SCHOLARS_MATE[i]);
+        }
+        Assert.assertEquals(sorted(uncached.legalMovesAsSan()), cached);
+    }
+
+    @Test
+    public void keepHotPositionTest() {
+        // a single bucket, so every position competes for the same four entries
+        LegalMoveCache cache = new LegalMoveCache(4);
+        Game hot = new Game("white", "black");
+        put(cache, hot);
+        for (int i = 0; i < 10; i++) {
+            Assert.assertNotNull(get(cache, hot));
+        }
+
+        String[] firstMoves = new String[]{"a3", "b3", "c3", "d3", "e3", "f3", "g3", "h3"};
+        for (String move : firstMoves) {
+            Game cold = new Game("white", "black");
+            cold.move(move);
+            put(cache, cold);
+        }
+        Assert.assertNotNull(get(cache, hot));
+        Assert.assertEquals(5, cache.getEvictionCount());
+    }
+
+    @Test
+    public void verifyPositionTest() {
+        LegalMoveCache cache = new LegalMoveCache(16);
+        Game stored = new Game("white", "black");
+        put(cache, stored);
+        Game other = new Game("white", "black");
+        other.move("e4");
+        // a different position under the same hash isn't taken for the stored one
+        Assert.assertNull(cache.get(stored.getPositionHash(), other.getPlayerToMove(), other.getBoard(),
+            other.getEnPassantTarget(), other.getAvailableCastles()));
+        Assert.assertEquals(1, cache.getMissCount());
+    }
+
+    private static void put(LegalMoveCache cache, Game game) {
+        cache.put(game.getPositionHash(), game.getPlayerToMove(), game.getBoard(), game.getEnPassantTarget(),
+            game.getAvailableCastles(), new int[0]);
+    }
+
+    private static int[] get(LegalMoveCache cache, Game game) {
+        return cache.get(game.getPositionHash(), game.getPlayerToMove(), game.getBoard(), game.getEnPassantTarget(),
+            game.getAvailableCastles());
+    }
+
+    private static List<String> sorted(List<String> notations) {
+        List<String> sortedNotations = new ArrayList<>(notations);
+        Collections.sort(sortedNotations);
+        return sortedNotations;
+    }
+}
@@ -0,0 +1,87 @@
+package com.keshane.blitz;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+public class MateSolverTest {
+    private MateSolver solver;
+
+    @Before
+    public void setupTest() {
+        solver = new MateSolver(1024 * 1024);
+    }
+
+    @Test
+    public void mateInOneTest() {
+        Game chessGame = new Game("white name", "black name", "6k1/5ppp/8/8/8/8/8/R5K1 w - - 0 1");
+        MateSolution solution = solver.solve(chessGame, 3, 1_000_000);
+        Assert.assertTrue(solution.isComplete());
+        Assert.assertEquals(1, solution.getMateLength());
+        Assert.assertEquals("a1a8", solution.getKeyMoveUci());
+        Assert.assertTrue(solution.isUnique());
+        Assert.assertEquals(2, solution.getTreeSize());
+    }
+
+    @Test
+    public void mateInTwoTest() {
+        // 1. Kg6 Kg8 2. Ra8# and 1. Kf7 Kh7 2. Rh1# both mate in two
+        Game chessGame = new Game("white name", "black name", "7k/8/5K2/8/8/8/8/R7 w - - 0 1");
+        MateSolution solution = solver.solve(chessGame, 3, 1_000_000);
+        Assert.assertTrue(solution.isComplete());
+        Assert.assertEquals(2, solution.getMateLength());
+        Assert.assertFalse(solution.isUnique());
+        Assert.assertTrue(solution.getTreeSize() >= 4);
+    }
+
+    @Test
+    public void uniqueTest() {
+        // both rooks can mate on the back rank
+        Game ambiguous = new Game("white name", "black name", "6k1/5ppp/8/8/8/8/8/R3R1K1 w - - 0 1");
+        MateSolution solution = solver.solve(ambiguous, 2, 1_000_000);
+        Assert.assertEquals(1, solution.getMateLength());
+        Assert.assertFalse(solution.isUnique());
+    }
+
+    @Test
+    public void noMateTest() {
+        Game chessGame = new Game("white name", "black name", "7k/8/6K1/8/8/8/8/8 w - - 0 1");
+        MateSolution solution = solver.solve(chessGame, 3, 1_000_000);
+        Assert.assertTrue(solution.isComplete());
+        Assert.assertFalse(solution.isMate());
+        Assert.assertEquals(0, solution.getTreeSize());
+
+        MateSolution unfinished = solver.solve(new Game("white name", "black name"), 3, 100);
+        Assert.assertFalse(unfinished.isComplete());
+    }
+
+    @Test
+    public void reuseAcrossAttackersTest() {
+        String fen = "rnbqkbnr/pppp1ppp/8/4p3/4P3/5N2/PPPP1PPP/RNBQKB1R b KQkq - 1 2";
+        Game blackToMove = new Game("white name", "black name", fen);
+        Assert.assertFalse(solver.solve(blackToMove, 2, 1_000_000).isMate());
+
+        // with white attacking, the position after 2... Nc6 is settled for white; black mustn't read it as its own
+        Game whiteToMove = new Game("white name", "black name", fen);
+        whiteToMove.move("Nc6");
+        Assert.assertFalse(solver.solve(whiteToMove, 1, 1_000_000).isMate());
+        MateSolution solution = solver.solve(new Game("white name", "black name", fen), 2, 1_000_000);
+        Assert.assertTrue(solution.isComplete());
+        Assert.assertFalse(solution.isMate());
+    }
+
+    @Test
+    public void solveAllTest() throws InterruptedException {
+        List<Game> puzzles = Arrays.asList(
+            new Game("white name", "black name", "6k1/5ppp/8/8/8/8/8/R5K1 w - - 0 1"),
+            new Game("white name", "black name", "r5k1/8/8/8/8/8/5PPP/6K1 b - - 0 1"),
+            new Game("white name", "black name", "7k/8/6K1/8/8/8/8/8 w - - 0 1"));
+        List<MateSolution> solutions = MateSolver.solveAll(puzzles, 2, 1_000_000, 2);
+        Assert.assertEquals("a1a8", solutions.get(0).getKeyMoveUci());
+        Assert.assertEquals("a8a1", solutions.get(1).getKeyMoveUci());
+        Assert.assertFalse(solutions.get(2).isMate());
+    }
+}
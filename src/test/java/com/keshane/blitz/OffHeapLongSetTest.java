@@ -0,0 +1,88 @@
+package com.keshane.blitz;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+public class OffHeapLongSetTest {
+    @Test
+    public void addTest() {
+        try (OffHeapLongSet set = new OffHeapLongSet(1 << 20)) {
+            Assert.assertTrue(set.add(0));
+            Assert.assertFalse(set.add(0));
+            Assert.assertTrue(set.add(42));
+            Assert.assertFalse(set.add(42));
+            Assert.assertTrue(set.contains(42));
+            Assert.assertFalse(set.contains(43));
+            Assert.assertEquals(2, set.getUniqueCount());
+            Assert.assertEquals(4, set.getAddCount());
+        }
+    }
+
+    @Test
+    public void growTest() {
+        try (OffHeapLongSet set = new OffHeapLongSet(8 << 20)) {
+            long initialCapacity = set.getCapacity();
+            for (long value = 1; value <= initialCapacity; value++) {
+                set.add(value);
+                set.add(value);
+            }
+            Assert.assertTrue(set.getCapacity() > initialCapacity);
+            Assert.assertEquals(initialCapacity, set.getUniqueCount());
+            Assert.assertTrue(set.contains(initialCapacity));
+        }
+    }
+
+    @Test
+    public void growthLimitTest() throws IOException {
+        Path spillDirectory = Files.createTempDirectory("spill");
+        // room for twice the initial table but not for the initial and the doubled table at once
+        long maxMemoryBytes = 3L * (1 << 16) * Long.BYTES - 1;
+        try (OffHeapLongSet set = new OffHeapLongSet(maxMemoryBytes, spillDirectory)) {
+            long initialCapacity = set.getCapacity();
+            for (long value = 1; value <= initialCapacity; value++) {
+                set.add(value);
+            }
+            Assert.assertEquals(initialCapacity, set.getCapacity());
+            Assert.assertTrue(set.getSpillCount() > 0);
+            Assert.assertEquals(initialCapacity, set.getUniqueCount());
+        }
+        finally {
+            Files.delete(spillDirectory);
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void fullTest() {
+        try (OffHeapLongSet set = new OffHeapLongSet(1024)) {
+            for (long value = 1; value <= 128; value++) {
+                set.add(value);
+            }
+        }
+    }
+
+    @Test
+    public void spillTest() throws IOException {
+        Path spillDirectory = Files.createTempDirectory("spill");
+        Random random = new Random(7);
+        Set<Long> expected = new HashSet<>();
+        try (OffHeapLongSet set = new OffHeapLongSet(4096, spillDirectory)) {
+            for (int i = 0; i < 20000; i++) {
+                long value = random.nextInt(5000) - 2500;
+                expected.add(value);
+                set.add(value);
+            }
+            Assert.assertTrue(set.getSpillCount() > 1);
+            Assert.assertEquals(expected.size(), set.getUniqueCount());
+        }
+        finally {
+            Files.delete(spillDirectory);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.keshane.blitz;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SearchTest {
+    private Search search;
+
+    @Before
+    public void setupTest() {
+        search = new Search();
+    }
+
+    @Test
+    public void mateInOneTest() {
+        Game chessGame = new Game("white name", "black name", "6k1/5ppp/8/8/8/8/8/R5K1 w - - 0 1");
+        SearchResult result = search.searchToDepth(chessGame, 3);
+        Assert.assertEquals("a1a8", result.getBestMoveUci());
+        Assert.assertTrue(result.isMateScore());
+        Assert.assertEquals(Search.MATE_SCORE - 1, result.getScore());
+    }
+
+    @Test
+    public void captureHangingPieceTest() {
+        Game chessGame = new Game("white name", "black name", "4k3/8/8/3q4/8/8/3R4/4K3 w - - 0 1");
+        SearchResult result = search.searchToDepth(chessGame, 3);
+        Assert.assertEquals("d2d5", result.getBestMoveUci());
+    }
+
+    @Test
+    public void nodeBudgetTest() {
+        Game chessGame = new Game("white name", "black name");
+        SearchResult result = search.search(chessGame, 60_000, 5_000);
+        Assert.assertNotNull(result.getBestMoveUci());
+        Assert.assertTrue(result.getDepth() >= 1);
+        Assert.assertTrue(result.getNodes() <= 5_000 || result.getDepth() == 1);
+    }
+
+    @Test
+    public void noLegalMovesTest() {
+        Game chessGame = new Game("white name", "black name", "7k/5Q2/6K1/8/8/8/8/8 b - - 0 1");
+        SearchResult result = search.searchToDepth(chessGame, 2);
+        Assert.assertNull(result.getBestMoveUci());
+        Assert.assertEquals(0, result.getScore());
+    }
+}
@@ -0,0 +1,48 @@
+package com.keshane.blitz;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TranspositionTableTest {
+    @Test
+    public void storeAndProbeTest() {
+        TranspositionTable table = new TranspositionTable(1024);
+        int move = PackedMove.of(12, 28);
+        table.store(42L, move, -1234, 7, TranspositionTable.LOWER_BOUND);
+
+        long entry = table.probe(42L);
+        Assert.assertNotEquals(TranspositionTable.NO_ENTRY, entry);
+        Assert.assertEquals(move, TranspositionTable.move(entry));
+        Assert.assertEquals(-1234, TranspositionTable.score(entry));
+        Assert.assertEquals(7, TranspositionTable.depth(entry));
+        Assert.assertEquals(TranspositionTable.LOWER_BOUND, TranspositionTable.bound(entry));
+        Assert.assertEquals(TranspositionTable.NO_ENTRY, table.probe(43L));
+    }
+
+    @Test
+    public void replaceShallowestEntryTest() {
+        // a single bucket, so every position competes for the same four entries
+        TranspositionTable table = new TranspositionTable(64);
+        Assert.assertEquals(4, table.getCapacity());
+        for (int i = 0; i < 4; i++) {
+            table.store(i, PackedMove.NONE, 0, 10 + i, TranspositionTable.EXACT);
+        }
+        table.store(100L, PackedMove.NONE, 0, 1, TranspositionTable.EXACT);
+
+        Assert.assertEquals(TranspositionTable.NO_ENTRY, table.probe(0L));
+        Assert.assertNotEquals(TranspositionTable.NO_ENTRY, table.probe(100L));
+        Assert.assertNotEquals(TranspositionTable.NO_ENTRY, table.probe(3L));
+    }
+
+    @Test
+    public void keepMoveOfSamePositionTest() {
+        TranspositionTable table = new TranspositionTable(1024);
+        int move = PackedMove.of(6, 21);
+        table.store(7L, move, 10, 3, TranspositionTable.EXACT);
+        table.store(7L, PackedMove.NONE, -5, 4, TranspositionTable.UPPER_BOUND);
+
+        long entry = table.probe(7L);
+        Assert.assertEquals(move, TranspositionTable.move(entry));
+        Assert.assertEquals(-5, TranspositionTable.score(entry));
+    }
+}
@@ -0,0 +1,58 @@
+package com.keshane.blitz;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+public class UniquePositionCounterTest {
+    // 1. Nf3 Nf6 2. Nc3 Nc6 and 1. Nc3 Nc6 2. Nf3 Nf6 meet in the same position
+    private static final String FIRST_FILE = "1. e4 e5 2. Nf3 Nc6 3. Bb5 a6 1-0\n"
+        + "\n"
+        + "1. Nf3 Nf6 2. Nc3 Nc6 3. Ng1 Ng8 *\n";
+    private static final String SECOND_FILE = "1. Nc3 Nc6 2. Nf3 Nf6 3. e4 *\n"
+        + "\n"
+        + "1. e4 e5 2. Ke3 *\n";
+
+    @Test
+    public void countTest() throws IOException {
+        Path directory = Files.createTempDirectory("games");
+        Path first = Files.write(directory.resolve("a.pgn"), FIRST_FILE.getBytes(StandardCharsets.ISO_8859_1));
+        Path second = Files.write(directory.resolve("b.pgn"), SECOND_FILE.getBytes(StandardCharsets.ISO_8859_1));
+        try (OffHeapLongSet positions = new OffHeapLongSet(1 << 20)) {
+            UniquePositionCounter.Report report = UniquePositionCounter.count(directory, positions);
+
+            Set<Long> expected = new HashSet<>();
+            long positionCount = 0;
+            for (List<String> moves : CorpusReplay.readGames(directory)) {
+                Game game = new Game("white", "black");
+                expected.add(game.getPositionHash());
+                positionCount++;
+                for (String move : moves) {
+                    if (game.move(move).hasErrors()) {
+                        break;
+                    }
+                    expected.add(game.getPositionHash());
+                    positionCount++;
+                }
+            }
+            Assert.assertEquals(4, report.gameCount);
+            // the last game stops at its illegal third move
+            Assert.assertEquals(1, report.failedGameCount);
+            Assert.assertEquals(positionCount, report.positionCount);
+            Assert.assertEquals(expected.size(), report.uniqueCount);
+            Assert.assertTrue(report.uniqueCount < report.positionCount);
+        }
+        finally {
+            Files.delete(first);
+            Files.delete(second);
+            Files.delete(directory);
+        }
+    }
+}